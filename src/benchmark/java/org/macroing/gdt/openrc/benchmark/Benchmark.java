@@ -0,0 +1,250 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * A {@code Benchmark} measures the time per operation of a set of named operations.
+ * <p>
+ * Each operation is first calibrated, so that one sample takes at least {@code benchmark.sample.millis} milliseconds. It is then warmed up for {@code benchmark.warmup} samples and measured for {@code benchmark.samples} samples.
+ * <p>
+ * The results can be written to a file and compared to a baseline written by a previous run, in order to detect performance regressions.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class Benchmark {
+	private final List<Result> results = new ArrayList<>();
+	private final int measurementSamples;
+	private final int warmupSamples;
+	private final long sampleNanos;
+	private volatile float sink;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public Benchmark() {
+		this(Long.getLong("benchmark.sample.millis", 50L).longValue() * 1000000L, Integer.getInteger("benchmark.samples", 10).intValue(), Integer.getInteger("benchmark.warmup", 5).intValue());
+	}
+	
+	public Benchmark(final long sampleNanos, final int measurementSamples, final int warmupSamples) {
+		this.sampleNanos = Math.max(sampleNanos, 1L);
+		this.measurementSamples = Math.max(measurementSamples, 1);
+		this.warmupSamples = Math.max(warmupSamples, 0);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Compares the results of this {@code Benchmark} to the results found in {@code baseline}.
+	 * <p>
+	 * Returns {@code true} if, and only if, no result is slower than its baseline by more than {@code tolerance}, where {@code 0.1F} means 10%.
+	 * 
+	 * @param baseline the file with the baseline results
+	 * @param tolerance the tolerance
+	 * @return {@code true} if, and only if, no result is slower than its baseline by more than {@code tolerance}
+	 * @throws UncheckedIOException thrown if, and only if, an I/O-error occurs
+	 */
+	public boolean compareTo(final File baseline, final float tolerance) {
+		final Properties properties = doLoad(baseline);
+		
+		boolean isWithinTolerance = true;
+		
+		for(final Result result : this.results) {
+			final String value = properties.getProperty(result.getName());
+			
+			if(value != null) {
+				final double baselineNanosPerOperation = Double.parseDouble(value);
+				final double ratio = result.getMedianNanosPerOperation() / baselineNanosPerOperation;
+				
+				if(ratio > 1.0D + tolerance) {
+					isWithinTolerance = false;
+					
+					System.out.printf("REGRESSION %-64s %12.2f ns/op, baseline %12.2f ns/op (%+.1f%%)%n", result.getName(), Double.valueOf(result.getMedianNanosPerOperation()), Double.valueOf(baselineNanosPerOperation), Double.valueOf((ratio - 1.0D) * 100.0D));
+				}
+			}
+		}
+		
+		return isWithinTolerance;
+	}
+	
+	/**
+	 * Returns the results measured so far.
+	 * 
+	 * @return the results measured so far
+	 */
+	public List<Result> getResults() {
+		return new ArrayList<>(this.results);
+	}
+	
+	/**
+	 * Measures {@code operation} and prints the result to standard output.
+	 * 
+	 * @param name the name of the operation
+	 * @param operation the {@code Operation} to measure
+	 * @return the {@code Result}
+	 * @throws NullPointerException thrown if, and only if, either {@code name} or {@code operation} are {@code null}
+	 */
+	public Result measure(final String name, final Operation operation) {
+		Objects.requireNonNull(name, "name == null");
+		Objects.requireNonNull(operation, "operation == null");
+		
+		int operationsPerSample = 1;
+		
+		while(doSample(operation, operationsPerSample) < this.sampleNanos && operationsPerSample < Integer.MAX_VALUE / 2) {
+			operationsPerSample *= 2;
+		}
+		
+		for(int i = 0; i < this.warmupSamples; i++) {
+			doSample(operation, operationsPerSample);
+		}
+		
+		final double[] nanosPerOperation = new double[this.measurementSamples];
+		
+		for(int i = 0; i < nanosPerOperation.length; i++) {
+			nanosPerOperation[i] = (double)(doSample(operation, operationsPerSample)) / operationsPerSample;
+		}
+		
+		final Result result = new Result(name, nanosPerOperation);
+		
+		this.results.add(result);
+		
+		System.out.printf("%-64s %12.2f ns/op (min %12.2f, max %12.2f)%n", name, Double.valueOf(result.getMedianNanosPerOperation()), Double.valueOf(result.getMinimumNanosPerOperation()), Double.valueOf(result.getMaximumNanosPerOperation()));
+		
+		return result;
+	}
+	
+	/**
+	 * Writes the median time per operation of all results to {@code file}, such that it can be used as a baseline later on.
+	 * 
+	 * @param file the file to write to
+	 * @throws UncheckedIOException thrown if, and only if, an I/O-error occurs
+	 */
+	public void write(final File file) {
+		final Properties properties = new Properties();
+		
+		for(final Result result : this.results) {
+			properties.setProperty(result.getName(), Double.toString(result.getMedianNanosPerOperation()));
+		}
+		
+		try(final OutputStream outputStream = new FileOutputStream(file)) {
+			properties.store(outputStream, "Median nanoseconds per operation");
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * An {@code Operation} is the unit of work measured by a {@code Benchmark}.
+	 * <p>
+	 * The value returned is consumed by the {@code Benchmark}, so the JIT-compiler cannot eliminate the work.
+	 * 
+	 * @since 1.0.0
+	 * @author J&#246;rgen Lundgren
+	 */
+	@FunctionalInterface
+	public static interface Operation {
+		float run(final int iteration);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * A {@code Result} holds the time per operation of each sample of a measured {@code Operation}.
+	 * 
+	 * @since 1.0.0
+	 * @author J&#246;rgen Lundgren
+	 */
+	public static final class Result {
+		private final String name;
+		private final double[] nanosPerOperation;
+		
+		////////////////////////////////////////////////////////////////////////////////////////////////////
+		
+		Result(final String name, final double[] nanosPerOperation) {
+			this.name = name;
+			this.nanosPerOperation = nanosPerOperation.clone();
+			
+			Arrays.sort(this.nanosPerOperation);
+		}
+		
+		////////////////////////////////////////////////////////////////////////////////////////////////////
+		
+		public String getName() {
+			return this.name;
+		}
+		
+		public double getMaximumNanosPerOperation() {
+			return this.nanosPerOperation[this.nanosPerOperation.length - 1];
+		}
+		
+		public double getMedianNanosPerOperation() {
+			return this.nanosPerOperation[this.nanosPerOperation.length / 2];
+		}
+		
+		public double getMinimumNanosPerOperation() {
+			return this.nanosPerOperation[0];
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private long doSample(final Operation operation, final int operationsPerSample) {
+		float value = 0.0F;
+		
+		final long startNanos = System.nanoTime();
+		
+		for(int i = 0; i < operationsPerSample; i++) {
+			value += operation.run(i);
+		}
+		
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		
+		this.sink += value;
+		
+		return elapsedNanos;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static Properties doLoad(final File file) {
+		final Properties properties = new Properties();
+		
+		try(final InputStream inputStream = new FileInputStream(file)) {
+			properties.load(inputStream);
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return properties;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.benchmark;
+
+import org.macroing.gdt.openrc.AbstractRayCasterKernel;
+
+/**
+ * A {@code BenchmarkKernel} is never executed. It only exposes the functions of {@link AbstractRayCasterKernel}, so they can be measured in the CPU one call at a time.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+final class BenchmarkKernel extends AbstractRayCasterKernel {
+	public BenchmarkKernel() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	@Override
+	public void run() {
+//		Do nothing here.
+	}
+}
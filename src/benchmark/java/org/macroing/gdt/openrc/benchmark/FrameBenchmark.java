@@ -0,0 +1,147 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.benchmark;
+
+import java.util.Arrays;
+
+import org.macroing.gdt.openrc.Constants;
+import org.macroing.gdt.openrc.RayCasterKernel;
+import org.macroing.gdt.openrc.geometry.Camera;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.geometry.Texture;
+
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
+import com.amd.aparapi.Range;
+
+/**
+ * The {@code FrameBenchmark} renders complete frames without a window and reports the frame time percentiles.
+ * <p>
+ * Each run builds a reproducible {@link Scene} with {@link Scene#create(Camera, long, int, int)} and replays a scripted camera path, so two runs with the same configuration render the exact same frames. A checksum of the last frame is reported, so this can be verified.
+ * <p>
+ * The following system properties are supported:
+ * <ul>
+ * <li>{@code benchmark.frame.count} - the number of frames measured per run.</li>
+ * <li>{@code benchmark.frame.filter} - the filter of the textures, which is either {@code NEAREST} or {@code BILINEAR}. The default is {@code NEAREST}.</li>
+ * <li>{@code benchmark.frame.modes} - a comma separated list of execution modes, such as {@code GPU,JTP}.</li>
+ * <li>{@code benchmark.frame.seed} - the seed used when creating the scenes.</li>
+ * <li>{@code benchmark.frame.spheres} - a comma separated list of sphere counts, one run per count and execution mode.</li>
+ * <li>{@code benchmark.frame.warmup} - the number of frames rendered before measuring.</li>
+ * </ul>
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class FrameBenchmark {
+	private FrameBenchmark() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public static void main(final String[] args) {
+		final int filter = System.getProperty("benchmark.frame.filter", "NEAREST").equalsIgnoreCase("BILINEAR") ? Texture.FILTER_BILINEAR : Texture.FILTER_NEAREST;
+		final int frameCount = Integer.getInteger("benchmark.frame.count", 100).intValue();
+		final int warmupCount = Integer.getInteger("benchmark.frame.warmup", 10).intValue();
+		
+		final long seed = Long.getLong("benchmark.frame.seed", 1L).longValue();
+		
+		final String[] modes = System.getProperty("benchmark.frame.modes", "GPU,JTP").split(",");
+		final String[] sphereCounts = System.getProperty("benchmark.frame.spheres", "10,100,1000").split(",");
+		
+		System.out.printf("%-40s %10s %10s %10s %10s %10s %10s %10s %10s%n", "Run", "Mean ms", "P50 ms", "P90 ms", "P99 ms", "Max ms", "FPS", "Mrays/s", "Checksum");
+		
+		for(final String sphereCount : sphereCounts) {
+			for(final String mode : modes) {
+				doRun(EXECUTION_MODE.valueOf(mode.trim()), Integer.parseInt(sphereCount.trim()), seed, filter, frameCount, warmupCount);
+			}
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static double doPercentile(final long[] sortedFrameTimes, final double percentile) {
+		final int index = (int)(Math.ceil(percentile / 100.0D * sortedFrameTimes.length)) - 1;
+		
+		return sortedFrameTimes[Math.max(Math.min(index, sortedFrameTimes.length - 1), 0)] / 1000000.0D;
+	}
+	
+	private static void doRenderFrame(final RayCasterKernel rayCasterKernel, final Range range, final Scene scene, final int[] rGB, final int frame) {
+		final Camera camera = scene.getCamera();
+		
+//		Walk back and forth while turning, so the path stays within the scene and covers different views:
+		camera.moveBackward((frame / 50) % 2 == 0 ? 2.0F : -2.0F);
+		camera.rotateY(0.01F);
+		
+		rayCasterKernel.put(camera.getArray());
+		rayCasterKernel.put(scene.getShapeIndices());
+		rayCasterKernel.executeAndPostProcess(range);
+		rayCasterKernel.get(rGB);
+	}
+	
+	private static void doRun(final EXECUTION_MODE executionMode, final int sphereCount, final long seed, final int filter, final int frameCount, final int warmupCount) {
+		final Scene scene = Scene.create(new Camera(), seed, sphereCount, filter);
+		
+		final float[] pick = new float[Constants.SIZE_OF_PICK];
+		
+		final int[] rGB = new int[(Constants.WIDTH / Constants.WIDTH_SCALE) * (Constants.HEIGHT / Constants.HEIGHT_SCALE)];
+		
+		final long[] frameTimes = new long[Math.max(frameCount, 1)];
+		
+		final Range range = Range.create(rGB.length);
+		
+		final RayCasterKernel rayCasterKernel = new RayCasterKernel(pick, rGB, scene);
+		
+		rayCasterKernel.setExecutionMode(executionMode);
+		
+		try {
+			for(int i = 0; i < warmupCount; i++) {
+				doRenderFrame(rayCasterKernel, range, scene, rGB, i);
+			}
+			
+			for(int i = 0; i < frameTimes.length; i++) {
+				final long startNanos = System.nanoTime();
+				
+				doRenderFrame(rayCasterKernel, range, scene, rGB, warmupCount + i);
+				
+				frameTimes[i] = System.nanoTime() - startNanos;
+			}
+			
+//			Aparapi falls back to JTP if the GPU is not available, so the actual execution mode is reported:
+			final String name = String.format("%d spheres, %s", Integer.valueOf(sphereCount), executionMode == rayCasterKernel.getExecutionMode() ? executionMode : executionMode + " (ran as " + rayCasterKernel.getExecutionMode() + ")");
+			final double mean = Arrays.stream(frameTimes).average().orElse(0.0D) / 1000000.0D;
+			
+			Arrays.sort(frameTimes);
+			
+//			The checksum of the last frame is the same for every run with the same configuration, unless the rendering itself has changed:
+			final int checksum = Arrays.hashCode(rGB);
+			
+//			The counters are fetched for one additional frame only, so that counting does not affect the frame times. The ray throughput is therefore an approximation based on the mean frame time:
+			rayCasterKernel.setCounting(true);
+			
+			doRenderFrame(rayCasterKernel, range, scene, rGB, warmupCount + frameTimes.length);
+			
+			final long rays = rayCasterKernel.getCounter(RayCasterKernel.COUNTER_PRIMARY_RAYS) + rayCasterKernel.getCounter(RayCasterKernel.COUNTER_SHADOW_RAYS);
+			
+			System.out.printf("%-40s %10.2f %10.2f %10.2f %10.2f %10.2f %10.1f %10.2f %10s%n", name, Double.valueOf(mean), Double.valueOf(doPercentile(frameTimes, 50.0D)), Double.valueOf(doPercentile(frameTimes, 90.0D)), Double.valueOf(doPercentile(frameTimes, 99.0D)), Double.valueOf(doPercentile(frameTimes, 100.0D)), Double.valueOf(mean > 0.0D ? 1000.0D / mean : 0.0D), Double.valueOf(mean > 0.0D ? rays / mean / 1000.0D : 0.0D), Integer.toHexString(checksum));
+			System.out.printf("%-40s primary rays %d, shadow rays %d, intersection tests %d, texture samples %d, pixels shaded %d%n", "", Long.valueOf(rayCasterKernel.getCounter(RayCasterKernel.COUNTER_PRIMARY_RAYS)), Long.valueOf(rayCasterKernel.getCounter(RayCasterKernel.COUNTER_SHADOW_RAYS)), Long.valueOf(rayCasterKernel.getCounter(RayCasterKernel.COUNTER_INTERSECTION_TESTS)), Long.valueOf(rayCasterKernel.getCounter(RayCasterKernel.COUNTER_TEXTURE_SAMPLES)), Long.valueOf(rayCasterKernel.getCounter(RayCasterKernel.COUNTER_PIXELS_SHADED)));
+		} finally {
+			rayCasterKernel.dispose();
+		}
+	}
+}
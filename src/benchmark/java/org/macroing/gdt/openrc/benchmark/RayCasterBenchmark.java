@@ -0,0 +1,354 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.benchmark;
+
+import java.io.File;
+import java.util.Random;
+
+import org.macroing.gdt.openrc.AbstractRayCasterKernel;
+import org.macroing.gdt.openrc.Constants;
+import org.macroing.gdt.openrc.geometry.Camera;
+import org.macroing.gdt.openrc.geometry.Intersection;
+import org.macroing.gdt.openrc.geometry.Material;
+import org.macroing.gdt.openrc.geometry.Plane;
+import org.macroing.gdt.openrc.geometry.PointLight;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.geometry.Shape;
+import org.macroing.gdt.openrc.geometry.Sphere;
+import org.macroing.gdt.openrc.geometry.Texture;
+import org.macroing.gdt.openrc.geometry.Triangle;
+
+/**
+ * The {@code RayCasterBenchmark} measures the intersection and shading primitives of {@link AbstractRayCasterKernel} in the CPU.
+ * <p>
+ * The following system properties are supported:
+ * <ul>
+ * <li>{@code benchmark.baseline} - a file written by a previous run to compare against. The exit status is {@code 1} if any primitive is slower than its baseline by more than the tolerance.</li>
+ * <li>{@code benchmark.output} - a file to write the results to, so it can be used as a baseline later on.</li>
+ * <li>{@code benchmark.samples} - the number of samples measured per primitive.</li>
+ * <li>{@code benchmark.sample.millis} - the minimum duration of a sample in milliseconds.</li>
+ * <li>{@code benchmark.tolerance} - the tolerance when comparing against a baseline, where {@code 0.1} means 10%.</li>
+ * <li>{@code benchmark.warmup} - the number of warmup samples per primitive.</li>
+ * </ul>
+ * In addition to the timings, the accuracy of the gamma correction modes is verified against the exact {@code pow(x, 1.0 / 2.2)}. The exit status is {@code 1} if they differ by more than one 8-bit level.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class RayCasterBenchmark {
+	private static final int COUNT = 4096;
+	private static final long SEED = 1L;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private RayCasterBenchmark() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public static void main(final String[] args) {
+		final Benchmark benchmark = new Benchmark();
+		
+		final BenchmarkKernel benchmarkKernel = new BenchmarkKernel();
+		
+		doBenchmarkIntersectionPrimitives(benchmark, benchmarkKernel);
+		doBenchmarkIntersection(benchmark, benchmarkKernel, 10);
+		doBenchmarkIntersection(benchmark, benchmarkKernel, 1000);
+		doBenchmarkIntersection(benchmark, benchmarkKernel, 100000);
+		doBenchmarkUpdatePixel(benchmark, benchmarkKernel);
+		doBenchmarkPostProcessPixels(benchmark, benchmarkKernel);
+		
+		for(final int layout : new int[] {Texture.LAYOUT_LINEAR, Texture.LAYOUT_TILED, Texture.LAYOUT_BLOCK_COMPRESSED}) {
+			for(final int filter : new int[] {Texture.FILTER_NEAREST, Texture.FILTER_BILINEAR}) {
+				doBenchmarkTextureMapping(benchmark, benchmarkKernel, layout, filter);
+			}
+		}
+		
+		final boolean isGammaCorrectionAccurate = doVerifyGammaCorrection(benchmarkKernel);
+		
+		final String output = System.getProperty("benchmark.output");
+		final String baseline = System.getProperty("benchmark.baseline");
+		
+		if(output != null) {
+			benchmark.write(new File(output));
+		}
+		
+		final boolean isWithinTolerance = baseline == null || benchmark.compareTo(new File(baseline), Float.parseFloat(System.getProperty("benchmark.tolerance", "0.1")));
+		
+		if(!isGammaCorrectionAccurate || !isWithinTolerance) {
+			System.exit(1);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static boolean doVerifyGammaCorrection(final BenchmarkKernel benchmarkKernel) {
+		final int[] gammaCorrectionTable = AbstractRayCasterKernel.createGammaCorrectionTable();
+		
+		boolean isAccurate = true;
+		
+		for(final int gammaCorrectionMode : new int[] {AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_APPROXIMATION}) {
+			final int count = 1000000;
+			
+			int maximumError = 0;
+			int mismatches = 0;
+			
+			for(int i = 0; i <= count; i++) {
+				final float value = (float)(i) / count;
+				
+				final int expected = benchmarkKernel.correctGamma(value, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_EXACT, gammaCorrectionTable);
+				final int actual = benchmarkKernel.correctGamma(value, gammaCorrectionMode, gammaCorrectionTable);
+				final int error = Math.abs(actual - expected);
+				
+				maximumError = Math.max(maximumError, error);
+				mismatches += error > 0 ? 1 : 0;
+			}
+			
+			isAccurate &= maximumError <= 1;
+			
+			System.out.printf("%-64s %12d levels (%.2f%% of values differ)%n", "correctGamma " + doToGammaCorrectionModeName(gammaCorrectionMode) + " maximum error", Integer.valueOf(maximumError), Double.valueOf(mismatches * 100.0D / (count + 1)));
+		}
+		
+		return isAccurate;
+	}
+	
+	private static float[] doCreateIntersections(final BenchmarkKernel benchmarkKernel, final float[] rays, final float[] shapes, final int shapeIndicesLength, final int[] shapeIndices) {
+		final float[] intersections = Intersection.create(COUNT);
+		final float[] intersection = Intersection.create(1);
+		final float[] pick = new float[Constants.SIZE_OF_PICK];
+		final float[] ray = new float[Constants.SIZE_OF_RAY];
+		
+		final int[] counters = new int[AbstractRayCasterKernel.COUNTER_COUNT];
+		
+		for(int i = 0; i < COUNT; i++) {
+			System.arraycopy(rays, i * Constants.SIZE_OF_RAY, ray, 0, Constants.SIZE_OF_RAY);
+			
+			final float distance = benchmarkKernel.findIntersection(false, true, false, intersection, pick, ray, shapes, shapeIndicesLength, counters, shapeIndices);
+			
+//			Use a pixel footprint that selects one of the first few mip map levels:
+			intersection[Intersection.RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] = distance * 0.002F;
+			
+			System.arraycopy(intersection, 0, intersections, i * Intersection.SIZE, Intersection.SIZE);
+		}
+		
+		return intersections;
+	}
+	
+	private static float[] doCreateRays(final Random random, final float originX, final float originY, final float originZ, final float targetX, final float targetY, final float targetZ, final float spread) {
+		final float[] rays = new float[COUNT * Constants.SIZE_OF_RAY];
+		
+		for(int i = 0; i < COUNT; i++) {
+			final float directionX = targetX + (random.nextFloat() - 0.5F) * spread - originX;
+			final float directionY = targetY + (random.nextFloat() - 0.5F) * spread - originY;
+			final float directionZ = targetZ + (random.nextFloat() - 0.5F) * spread - originZ;
+			final float lengthReciprocal = 1.0F / (float)(Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ));
+			
+			rays[i * Constants.SIZE_OF_RAY + Constants.RELATIVE_OFFSET_OF_RAY_ORIGIN_0 + 0] = originX;
+			rays[i * Constants.SIZE_OF_RAY + Constants.RELATIVE_OFFSET_OF_RAY_ORIGIN_0 + 1] = originY;
+			rays[i * Constants.SIZE_OF_RAY + Constants.RELATIVE_OFFSET_OF_RAY_ORIGIN_0 + 2] = originZ;
+			rays[i * Constants.SIZE_OF_RAY + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 0] = directionX * lengthReciprocal;
+			rays[i * Constants.SIZE_OF_RAY + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 1] = directionY * lengthReciprocal;
+			rays[i * Constants.SIZE_OF_RAY + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 2] = directionZ * lengthReciprocal;
+		}
+		
+		return rays;
+	}
+	
+	private static String doToGammaCorrectionModeName(final int gammaCorrectionMode) {
+		switch(gammaCorrectionMode) {
+			case AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_APPROXIMATION:
+				return "APPROXIMATION";
+			case AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE:
+				return "LOOKUP_TABLE";
+			default:
+				return "EXACT";
+		}
+	}
+	
+	private static String doToLayoutName(final int layout) {
+		switch(layout) {
+			case Texture.LAYOUT_BLOCK_COMPRESSED:
+				return "BLOCK_COMPRESSED";
+			case Texture.LAYOUT_TILED:
+				return "TILED";
+			default:
+				return "LINEAR";
+		}
+	}
+	
+	private static void doBenchmarkIntersection(final Benchmark benchmark, final BenchmarkKernel benchmarkKernel, final int shapeCount) {
+		final Random random = new Random(SEED);
+		
+		final Scene.Builder builder = new Scene.Builder(new Camera());
+		
+		builder.addMaterial(Material.red());
+		builder.addLight(new PointLight(0.0F, 0.0F, 0.0F, 100.0F));
+		
+		final float materialOffset = builder.getMaterialOffset(0);
+		
+		for(int i = 0; i < shapeCount; i++) {
+			builder.addShape(new Sphere(materialOffset, (random.nextFloat() - 0.5F) * 2000.0F, (random.nextFloat() - 0.5F) * 2000.0F, 500.0F + random.nextFloat() * 2000.0F, 5.0F + random.nextFloat() * 20.0F));
+		}
+		
+		final Scene scene = builder.build();
+		
+		final float[] intersections = Intersection.create(1);
+		final float[] pick = new float[Constants.SIZE_OF_PICK];
+		final float[] rays = doCreateRays(random, 0.0F, 0.0F, 0.0F, 0.0F, 0.0F, 1000.0F, 2000.0F);
+		final float[] ray = new float[Constants.SIZE_OF_RAY];
+		final float[] shapes = scene.getShapesAsArray();
+		
+		final int shapeIndicesLength = scene.getShapeCount();
+		
+		final int[] counters = new int[AbstractRayCasterKernel.COUNTER_COUNT];
+		final int[] shapeIndices = scene.getShapeIndices();
+		
+		benchmark.measure(String.format("findIntersection %d shapes", Integer.valueOf(shapeCount)), iteration -> {
+			System.arraycopy(rays, (iteration % COUNT) * Constants.SIZE_OF_RAY, ray, 0, Constants.SIZE_OF_RAY);
+			
+			return benchmarkKernel.findIntersection(false, true, false, intersections, pick, ray, shapes, shapeIndicesLength, counters, shapeIndices);
+		});
+	}
+	
+	private static void doBenchmarkIntersectionPrimitives(final Benchmark benchmark, final BenchmarkKernel benchmarkKernel) {
+		final Random random = new Random(SEED);
+		
+		final float[] plane = new Plane(0.0F, 0.0F, 1.0F, 0.0F).toFloatArray();
+		final float[] sphere = new Sphere(0.0F, 0.0F, 0.0F, 100.0F, 50.0F).toFloatArray();
+		final float[] triangle = new Triangle(0.0F, -50.0F, -50.0F, 100.0F, 50.0F, -50.0F, 100.0F, 0.0F, 50.0F, 100.0F).toFloatArray();
+		final float[] rays = doCreateRays(random, 0.0F, 0.0F, 0.0F, 0.0F, 0.0F, 100.0F, 150.0F);
+		
+		benchmark.measure("findIntersectionForPlane", iteration -> {
+			final int rayOffset = (iteration % COUNT) * Constants.SIZE_OF_RAY;
+			
+			return benchmarkKernel.findIntersectionForPlane(rays[rayOffset + 0], rays[rayOffset + 1], rays[rayOffset + 2], rays[rayOffset + 3], rays[rayOffset + 4], rays[rayOffset + 5], plane, 0);
+		});
+		
+		benchmark.measure("findIntersectionForSphere", iteration -> {
+			final int rayOffset = (iteration % COUNT) * Constants.SIZE_OF_RAY;
+			
+			return benchmarkKernel.findIntersectionForSphere(rays[rayOffset + 0], rays[rayOffset + 1], rays[rayOffset + 2], rays[rayOffset + 3], rays[rayOffset + 4], rays[rayOffset + 5], sphere, 0);
+		});
+		
+		benchmark.measure("findIntersectionForTriangle", iteration -> {
+			final int rayOffset = (iteration % COUNT) * Constants.SIZE_OF_RAY;
+			
+			return AbstractRayCasterKernel.findIntersectionForTriangle(rays[rayOffset + 0], rays[rayOffset + 1], rays[rayOffset + 2], rays[rayOffset + 3], rays[rayOffset + 4], rays[rayOffset + 5], triangle, 0);
+		});
+	}
+	
+	private static void doBenchmarkPostProcessPixels(final Benchmark benchmark, final BenchmarkKernel benchmarkKernel) {
+		final Random random = new Random(SEED);
+		
+		final int width = 64;
+		final int height = 64;
+		
+		final float[] pixels = new float[width * height * Constants.SIZE_OF_PIXEL];
+		
+		for(int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextFloat() * 2.0F;
+		}
+		
+		final int[] gammaCorrectionTable = AbstractRayCasterKernel.createGammaCorrectionTable();
+		final int[] rGB = new int[width * height];
+		
+		for(final int scale : new int[] {1, 4}) {
+			final int blocks = (width / scale) * (height / scale);
+			
+			benchmark.measure(String.format("postProcessPixels ACES with bloom, scale %d (per work-item)", Integer.valueOf(scale)), iteration -> {
+				benchmarkKernel.postProcessPixels(0.5F, 1.0F, 1.0F, pixels, iteration % blocks, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE, height, scale, AbstractRayCasterKernel.TONE_MAPPING_OPERATOR_ACES, width, gammaCorrectionTable, rGB);
+				
+				return rGB[0];
+			});
+		}
+	}
+	
+	private static void doBenchmarkTextureMapping(final Benchmark benchmark, final BenchmarkKernel benchmarkKernel, final int layout, final int filter) {
+		final Random random = new Random(SEED);
+		
+		final Scene.Builder builder = new Scene.Builder(new Camera());
+		
+		builder.addTexture(Texture.createSolidTexture("154.JPG").toPowerOfTwo().toLayout(layout).toFilter(filter));
+		
+		builder.addMaterial(Material.blackPlastic().setTextureOffsets(builder.getTextureOffset(0)));
+		builder.addLight(new PointLight(0.0F, 0.0F, 0.0F, 100.0F));
+		
+		final float materialOffset = builder.getMaterialOffset(0);
+		
+		builder.addShape(new Sphere(materialOffset, 0.0F, 0.0F, 200.0F, 50.0F));
+		builder.addShape(new Triangle(materialOffset, -500.0F, 40.0F, -500.0F, 500.0F, 40.0F, -500.0F, 0.0F, 40.0F, 500.0F));
+		
+		final Scene scene = builder.build();
+		
+		final float[] materials = scene.getMaterialsAsArray();
+		final float[] pick = new float[Constants.SIZE_OF_PICK];
+		final float[] pixels = new float[Constants.SIZE_OF_PIXEL];
+		final float[] shapes = scene.getShapesAsArray();
+		final float[] texels = scene.getTexelsAsArray();
+		
+		final int[] counters = new int[AbstractRayCasterKernel.COUNTER_COUNT];
+		final int[] shapeIndices = scene.getShapeIndices();
+		final int[] textures = scene.getTexturesAsArray();
+		
+		final String[] names = {"performSphericalTextureMapping", "performPlanarTriangleTextureMapping"};
+		
+		final float[][] targets = {{0.0F, 0.0F, 200.0F, 80.0F}, {0.0F, 40.0F, 100.0F, 150.0F}};
+		
+		for(int i = 0; i < names.length; i++) {
+			final float[] intersections = doCreateIntersections(benchmarkKernel, doCreateRays(random, 0.0F, 0.0F, 0.0F, targets[i][0], targets[i][1], targets[i][2], targets[i][3]), shapes, scene.getShapeCount(), shapeIndices);
+			final float[] intersection = Intersection.create(1);
+			
+			benchmark.measure(String.format("%s %s %s", names[i], doToLayoutName(layout), filter == Texture.FILTER_BILINEAR ? "BILINEAR" : "NEAREST"), iteration -> {
+				System.arraycopy(intersections, (iteration % COUNT) * Intersection.SIZE, intersection, 0, Intersection.SIZE);
+				
+				final int shapeOffset = (int)(intersection[Intersection.RELATIVE_OFFSET_OF_SHAPE_OFFSET]);
+				
+				if(shapeOffset >= 0) {
+					benchmarkKernel.performTextureMapping(false, false, intersection, materials, pick, pixels, shapes, texels, 0, (int)(shapes[shapeOffset + Shape.RELATIVE_OFFSET_OF_MATERIAL_OFFSET]), 0, shapeOffset, counters, textures);
+				}
+				
+				return pixels[0];
+			});
+		}
+	}
+	
+	private static void doBenchmarkUpdatePixel(final Benchmark benchmark, final BenchmarkKernel benchmarkKernel) {
+		final Random random = new Random(SEED);
+		
+		final float[] pixels = new float[COUNT * Constants.SIZE_OF_PIXEL];
+		
+		for(int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextFloat() * 2.0F;
+		}
+		
+		final int[] gammaCorrectionTable = AbstractRayCasterKernel.createGammaCorrectionTable();
+		final int[] rGB = new int[COUNT];
+		
+		for(final int gammaCorrectionMode : new int[] {AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_EXACT, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_APPROXIMATION}) {
+			benchmark.measure("updatePixel " + doToGammaCorrectionModeName(gammaCorrectionMode), iteration -> {
+				final int index = iteration % COUNT;
+				
+				benchmarkKernel.updatePixel(1.0F, pixels, gammaCorrectionMode, index * Constants.SIZE_OF_PIXEL, index, gammaCorrectionTable, rGB);
+				
+				return rGB[index];
+			});
+		}
+	}
+}
@@ -33,8 +33,27 @@ import org.macroing.gdt.openrc.geometry.Triangle;
 import com.amd.aparapi.Kernel;
 
 public abstract class AbstractRayCasterKernel extends Kernel {
+	public static final float GAMMA_APPROXIMATION_COEFFICIENT_0 = 0.8298665F;
+	public static final float GAMMA_APPROXIMATION_COEFFICIENT_1 = 0.2215798F;
+	public static final float GAMMA_APPROXIMATION_COEFFICIENT_2 = -0.0491329F;
+	public static final float GAMMA_RECIPROCAL = 1.0F / 2.2F;
+	public static final float LOG_2_RECIPROCAL = (float)(1.0D / Math.log(2.0D));
+	public static final float OCTAHEDRAL_RECIPROCAL = 2.0F / 65535.0F;
 	public static final float PI_RECIPROCAL = 1.0F / PI;
 	public static final float RGB_RECIPROCAL = 1.0F / 255.0F;
+	public static final int COUNTER_COUNT = 5;
+	public static final int COUNTER_INTERSECTION_TESTS = 0;
+	public static final int COUNTER_PIXELS_SHADED = 1;
+	public static final int COUNTER_PRIMARY_RAYS = 2;
+	public static final int COUNTER_SHADOW_RAYS = 3;
+	public static final int COUNTER_TEXTURE_SAMPLES = 4;
+	public static final int GAMMA_CORRECTION_MODE_APPROXIMATION = 2;
+	public static final int GAMMA_CORRECTION_MODE_EXACT = 0;
+	public static final int GAMMA_CORRECTION_MODE_LOOKUP_TABLE = 1;
+	public static final int GAMMA_CORRECTION_TABLE_SIZE = 4096;
+	public static final int TONE_MAPPING_OPERATOR_ACES = 2;
+	public static final int TONE_MAPPING_OPERATOR_MAXIMUM_COMPONENT = 0;
+	public static final int TONE_MAPPING_OPERATOR_REINHARD = 1;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
@@ -44,7 +63,15 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
-	public float calculateShadeForPointLight(final boolean isUpdatingPick, final float[] intersections, final float[] lights, final float[] pick, final float[] rays, final float[] shapes, final int intersectionOffset, final int lightOffset, final int rayOffset, final int shapeIndicesLength, final int[] shapeIndices) {
+	public float approximateGammaCorrection(final float value) {
+		final float squareRoot = sqrt(value);
+		final float fourthRoot = sqrt(squareRoot);
+		final float eighthRoot = sqrt(fourthRoot);
+		
+		return GAMMA_APPROXIMATION_COEFFICIENT_0 * squareRoot + GAMMA_APPROXIMATION_COEFFICIENT_1 * fourthRoot + GAMMA_APPROXIMATION_COEFFICIENT_2 * eighthRoot;
+	}
+	
+	public float calculateShadeForPointLight(final boolean isCounting, final boolean isUpdatingPick, final float[] intersections, final float[] lights, final float[] pick, final float[] rays, final float[] shapes, final int intersectionOffset, final int lightOffset, final int rayOffset, final int shapeIndicesLength, final int[] counters, final int[] shapeIndices) {
 //		Get the location of the point light:
 		final float pointLightX = lights[lightOffset + PointLight.RELATIVE_OFFSET_OF_POSITION + 0];
 		final float pointLightY = lights[lightOffset + PointLight.RELATIVE_OFFSET_OF_POSITION + 1];
@@ -83,7 +110,9 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		final float distance0 = sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
 		
 //		Calculate the distance between the surface intersection point and the closest intersecting shape:
-		final float distance1 = findIntersectionFirst(intersections, pick, rays, shapes, shapeIndicesLength, shapeIndices);
+		final float distance1 = findIntersectionFirst(isCounting, intersections, pick, rays, shapes, shapeIndicesLength, counters, shapeIndices);
+		
+		incrementCounter(isCounting, counters, COUNTER_SHADOW_RAYS, 1);
 		
 //		Calculate the shade as 1.0 if, and only if, the distance between the surface intersection point and the point light is less than the distance between the surface intersection point and the closest intersecting shape, 0.0 otherwise:
 		final float shade = distance0 < distance1 ? 1.0F : 0.0F;
@@ -91,7 +120,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		return shade;
 	}
 	
-	public float findIntersection(final boolean isPrimaryIntersection, final boolean isUpdatingPick, final float[] intersections, final float[] pick, final float[] rays, final float[] shapes, final int shapeIndicesLength, final int[] shapeIndices) {
+	public float findIntersection(final boolean isCounting, final boolean isPrimaryIntersection, final boolean isUpdatingPick, final float[] intersections, final float[] pick, final float[] rays, final float[] shapes, final int shapeIndicesLength, final int[] counters, final int[] shapeIndices) {
 //		Initialize the index and offset values:
 		final int index = getGlobalId();
 		final int intersectionOffset = index * Intersection.SIZE;
@@ -103,6 +132,9 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 //		Initialize distance to closest shape:
 		float shapeClosestDistance = Constants.MAXIMUM_DISTANCE;
 		
+//		Initialize the number of intersection tests performed:
+		int intersectionTests = 0;
+		
 		final int rayOriginOffset = isPrimaryIntersection ? Constants.RELATIVE_OFFSET_OF_RAY_ORIGIN_0 : Constants.RELATIVE_OFFSET_OF_RAY_ORIGIN_1;
 		final int rayDirectionOffset = isPrimaryIntersection ? Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 : Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_1;
 		
@@ -126,6 +158,8 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 //			Initialize the shape distance to the maximum value:
 			float shapeDistance = Constants.MAXIMUM_DISTANCE;
 			
+			intersectionTests++;
+			
 			if(shapeType == Plane.TYPE) {
 //				Update the shape distance based on the intersected plane:
 				shapeDistance = findIntersectionForPlane(rayOriginX, rayOriginY, rayOriginZ, rayDirectionX, rayDirectionY, rayDirectionZ, shapes, shapeOffset);
@@ -148,6 +182,8 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			}
 		}
 		
+		incrementCounter(isCounting, counters, COUNTER_INTERSECTION_TESTS, intersectionTests);
+		
 		if(shapeClosestOffset > -1) {
 //			Update the intersections array with values found:
 			intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_SHAPE_OFFSET] = shapeClosestOffset;
@@ -175,7 +211,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		return shapeClosestDistance;
 	}
 	
-	public float findIntersectionFirst(final float[] intersections, final float[] pick, final float[] rays, final float[] shapes, final int shapeIndicesLength, final int[] shapeIndices) {
+	public float findIntersectionFirst(final boolean isCounting, final float[] intersections, final float[] pick, final float[] rays, final float[] shapes, final int shapeIndicesLength, final int[] counters, final int[] shapeIndices) {
 //		Initialize the index and offset values:
 		final int index = getGlobalId();
 		final int rayOffset = index * Constants.SIZE_OF_RAY;
@@ -186,6 +222,9 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 //		Initialize distance to closest shape:
 		float shapeClosestDistance = Constants.MAXIMUM_DISTANCE;
 		
+//		Initialize the number of intersection tests performed:
+		int intersectionTests = 0;
+		
 		final int rayOriginOffset = Constants.RELATIVE_OFFSET_OF_RAY_ORIGIN_1;
 		final int rayDirectionOffset = Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_1;
 		
@@ -205,6 +244,8 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 //			Initialize the shape distance to the maximum value:
 			float shapeDistance = Constants.MAXIMUM_DISTANCE;
 			
+			intersectionTests++;
+			
 			if(shapeType == Plane.TYPE) {
 //				Update the shape distance based on the intersected plane:
 				shapeDistance = findIntersectionForPlane(rayOriginX, rayOriginY, rayOriginZ, rayDirectionX, rayDirectionY, rayDirectionZ, shapes, shapeOffset);
@@ -227,6 +268,8 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			}
 		}
 		
+		incrementCounter(isCounting, counters, COUNTER_INTERSECTION_TESTS, intersectionTests);
+		
 		return shapeClosestDistance;
 	}
 	
@@ -296,11 +339,103 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		return shapeDistance;
 	}
 	
+	public int correctGamma(final float value, final int gammaCorrectionMode, final int[] gammaCorrectionTable) {
+		final float clampedValue = value < 0.0F ? 0.0F : value > 1.0F ? 1.0F : value;
+		
+		if(gammaCorrectionMode == GAMMA_CORRECTION_MODE_LOOKUP_TABLE) {
+//			Perform gamma correction, clamping and scaling with a single lookup (the table is indexed by the square root, which keeps the curve close to linear near black):
+			return gammaCorrectionTable[(int)(sqrt(clampedValue) * (GAMMA_CORRECTION_TABLE_SIZE - 1) + 0.5F)];
+		}
+		
+//		Perform gamma correction, either by approximating pow(x, 1.0 / 2.2) with the square root, the fourth root and the eighth root of x, or by using pow(x, 1.0 / 2.2) itself:
+		final float gammaCorrectedValue = gammaCorrectionMode == GAMMA_CORRECTION_MODE_APPROXIMATION ? approximateGammaCorrection(clampedValue) : pow(clampedValue, GAMMA_RECIPROCAL);
+		
+//		Clamp the value to the range [0.0, 1.0], scale it to the range [0.0, 255.0] and convert it to an integer:
+		return (int)((gammaCorrectedValue < 0.0F ? 0.0F : gammaCorrectedValue > 1.0F ? 1.0F : gammaCorrectedValue) * 255.0F);
+	}
+	
+	public int calculateMipMapLevel(final float texelsPerPixel, final int textureOffset, final int[] textures) {
+//		Initialize the mip map level count of the texture:
+		final int mipMapLevelCount = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_MIP_MAP_LEVEL_COUNT];
+		
+//		Calculate the mip map level as the binary logarithm of the number of texels covered by a pixel, so a texel in the selected level covers roughly one pixel:
+		final int mipMapLevel = texelsPerPixel > 1.0F ? (int)(log(texelsPerPixel) * LOG_2_RECIPROCAL) : 0;
+		
+		return min(mipMapLevel, mipMapLevelCount - 1);
+	}
+	
+	public int calculateTexelOffset(final int mipMapLevel, final int textureOffset, final int textureX, final int textureY, final int[] textures) {
+//		Initialize the layout of the texture and the offset and width of the mip map level:
+		final int layout = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_LAYOUT];
+		final int mipMapOffset = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_MIP_MAP_OFFSETS + mipMapLevel];
+		final int mipMapWidth = max(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_WIDTH] >> mipMapLevel, 1);
+		
+//		Initialize the texel index using the linear (row-major) layout:
+		int texelIndex = textureY * mipMapWidth + textureX;
+		
+		if(layout == Texture.LAYOUT_TILED) {
+//			Calculate the number of tiles per row, where each tile consists of 4x4 (Texture.TILE_SIZE * Texture.TILE_SIZE) texels:
+			final int tilesPerRow = (mipMapWidth + 3) >> 2;
+			
+//			Update the texel index using the tiled layout:
+			texelIndex = (((textureY >> 2) * tilesPerRow + (textureX >> 2)) << 4) + ((textureY & 3) << 2) + (textureX & 3);
+		} else if(layout == Texture.LAYOUT_BLOCK_COMPRESSED) {
+//			Calculate the number of blocks per row, where each block consists of 4x4 texels compressed into two ints:
+			final int blocksPerRow = (mipMapWidth + 3) >> 2;
+			
+//			Update the texel index to the index of the first int of the block:
+			texelIndex = ((textureY >> 2) * blocksPerRow + (textureX >> 2)) << 1;
+		}
+		
+		return textureOffset + mipMapOffset + texelIndex;
+	}
+	
+	public int calculateTexelOffsetInTexels(final int mipMapLevel, final int textureOffset, final int textureX, final int textureY, final int[] textures) {
+//		Initialize the texel index relative to the data of the texture:
+		int texelIndex = calculateTexelOffset(mipMapLevel, textureOffset, textureX, textureY, textures) - textureOffset - Texture.RELATIVE_OFFSET_OF_DATA;
+		
+		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_LAYOUT] == Texture.LAYOUT_BLOCK_COMPRESSED) {
+//			The texels of a block compressed texture are stored in the tiled layout, where a tile of 16 texels corresponds to a block of two ints:
+			texelIndex = (texelIndex << 3) + ((textureY & 3) << 2) + (textureX & 3);
+		}
+		
+//		Calculate the offset of the texel in the float array texels, where each texel consists of three floats (the R-, G- and B-components):
+		return textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TEXELS_OFFSET] + texelIndex * 3;
+	}
+	
+	public int fetchTexel(final int mipMapLevel, final int textureOffset, final int textureX, final int textureY, final int[] textures) {
+//		Calculate the offset of the texel, which is the offset of its block if the texture is block compressed:
+		final int texelOffset = calculateTexelOffset(mipMapLevel, textureOffset, textureX, textureY, textures);
+		
+//		Initialize the RGB-value of the texel:
+		int rGB = textures[texelOffset];
+		
+		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_LAYOUT] == Texture.LAYOUT_BLOCK_COMPRESSED) {
+//			Update the RGB-value of the texel by decoding it from its block:
+			rGB = decodeBlockCompressedTexel(textures[texelOffset + 0], textures[texelOffset + 1], ((textureY & 3) << 2) + (textureX & 3));
+		}
+		
+		return rGB;
+	}
+	
+	public float toneMap(final float value, final int toneMappingOperator) {
+		if(toneMappingOperator == TONE_MAPPING_OPERATOR_REINHARD) {
+			return value / (1.0F + value);
+		}
+		
+		if(toneMappingOperator == TONE_MAPPING_OPERATOR_ACES) {
+//			The ACES filmic curve, as fitted by Krzysztof Narkowicz:
+			return (value * (2.51F * value + 0.03F)) / (value * (2.43F * value + 0.59F) + 0.14F);
+		}
+		
+		return value;
+	}
+	
 	public float length(final float[] vector, final int offset) {
 		return sqrt(lengthSquared(vector, offset));
 	}
 	
-	public void addAmbientLightBRDF(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] textures) {
+	public void addAmbientLightBRDF(final boolean isCounting, final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] counters, final int[] textures) {
 //		Get the ambient intensity:
 		final float ambientIntensity = materials[materialOffset + Material.RELATIVE_OFFSET_OF_AMBIENT_INTENSITY];
 		
@@ -310,7 +445,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			final float ambientColorG = materials[materialOffset + Material.RELATIVE_OFFSET_OF_AMBIENT_COLOR + 1];
 			final float ambientColorB = materials[materialOffset + Material.RELATIVE_OFFSET_OF_AMBIENT_COLOR + 2];
 			
-			performTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+			performTextureMapping(isCounting, isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 			
 //			Add the RGB-components of the specular color multiplied by the specular component, to the pixel:
 			pixels[pixelOffset + 0] = (pixels[pixelOffset + 0] + ambientColorR) * ambientIntensity;
@@ -319,7 +454,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void addDiffuseLightBRDF(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] textures) {
+	public void addDiffuseLightBRDF(final boolean isCounting, final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] counters, final int[] textures) {
 //		Get the diffuse intensity:
 		final float diffuseIntensity = materials[materialOffset + Material.RELATIVE_OFFSET_OF_DIFFUSE_INTENSITY];
 		
@@ -329,7 +464,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			final float diffuseColorG = materials[materialOffset + Material.RELATIVE_OFFSET_OF_DIFFUSE_COLOR + 1];
 			final float diffuseColorB = materials[materialOffset + Material.RELATIVE_OFFSET_OF_DIFFUSE_COLOR + 2];
 			
-			performTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+			performTextureMapping(isCounting, isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 			
 //			Add the RGB-components of the specular color multiplied by the specular component, to the pixel:
 			pixels[pixelOffset + 0] = (pixels[pixelOffset + 0] + diffuseColorR) * diffuseIntensity * PI_RECIPROCAL;
@@ -338,7 +473,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void addSpecularLightBRDF(final boolean isUpdatingPick, final float surfaceNormalX, final float surfaceNormalY, final float surfaceNormalZ, final float wiX, final float wiY, final float wiZ, final float woX, final float woY, final float woZ, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] textures) {
+	public void addSpecularLightBRDF(final boolean isCounting, final boolean isUpdatingPick, final float surfaceNormalX, final float surfaceNormalY, final float surfaceNormalZ, final float wiX, final float wiY, final float wiZ, final float woX, final float woY, final float woZ, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] counters, final int[] textures) {
 //		Get the specular intensity:
 		final float specularIntensity = materials[materialOffset + Material.RELATIVE_OFFSET_OF_SPECULAR_INTENSITY];
 		
@@ -361,7 +496,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 					final float specularColorG = materials[materialOffset + Material.RELATIVE_OFFSET_OF_SPECULAR_COLOR + 1];
 					final float specularColorB = materials[materialOffset + Material.RELATIVE_OFFSET_OF_SPECULAR_COLOR + 2];
 					
-					performTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+					performTextureMapping(isCounting, isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 					
 //					Get the specular power and intensity and calculate the specular component:
 					final float specularPower = materials[materialOffset + Material.RELATIVE_OFFSET_OF_SPECULAR_POWER];
@@ -376,15 +511,15 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void attemptToAddDirectLight(final boolean isUpdatingPick, final float[] intersections, final float[] lights, final float[] materials, final float[] pick, final float[] pixels, final float[] rays, final float[] shapes, final int intersectionOffset, final int lightsLength, final int materialOffset, final int pixelOffset, final int rayOffset, final int shapeIndicesLength, final int shapeOffset, final int[] shapeIndices, final int[] textures) {
+	public void attemptToAddDirectLight(final boolean isCounting, final boolean isUpdatingPick, final float[] intersections, final float[] lights, final float[] materials, final float[] pick, final float[] pixels, final float[] rays, final float[] shapes, final float[] texels, final int intersectionOffset, final int lightsLength, final int materialOffset, final int pixelOffset, final int rayOffset, final int shapeIndicesLength, final int shapeOffset, final int[] counters, final int[] shapeIndices, final int[] textures) {
 //		Get the outgoing direction vector:
 		final float woX = -rays[rayOffset + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 0];
 		final float woY = -rays[rayOffset + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 1];
 		final float woZ = -rays[rayOffset + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 2];
 		
-		performNormalMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+		performNormalMapping(isCounting, isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 		
-		addAmbientLightBRDF(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+		addAmbientLightBRDF(isCounting, isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 		
 		for(int i = 0, j = 0; i < lightsLength; i += j) {
 //			Initialize the temporary type and size variables of the current light:
@@ -395,7 +530,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			j = (int)(lightSize);
 			
 			if(lightType == PointLight.TYPE) {
-				final float shade = calculateShadeForPointLight(isUpdatingPick, intersections, lights, pick, rays, shapes, intersectionOffset, i, rayOffset, shapeIndicesLength, shapeIndices);
+				final float shade = calculateShadeForPointLight(isCounting, isUpdatingPick, intersections, lights, pick, rays, shapes, intersectionOffset, i, rayOffset, shapeIndicesLength, counters, shapeIndices);
 				
 				if(shade > 0.0F) {
 //					Get the location from the point light:
@@ -441,7 +576,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 						pixels[pixelOffset + 2] = 0.0F;
 						
 //						Calculate and add the diffuse color to the pixel array:
-						addDiffuseLightBRDF(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+						addDiffuseLightBRDF(isCounting, isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 						
 //						Save the diffuse color for later use:
 						final float r1 = pixels[pixelOffset + 0];
@@ -454,7 +589,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 						pixels[pixelOffset + 2] = 0.0F;
 						
 //						Calculate and add the specular color to the pixel array:
-						addSpecularLightBRDF(isUpdatingPick, surfaceNormalX, surfaceNormalY, surfaceNormalZ, wiX, wiY, wiZ, woX, woY, woZ, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textures);
+						addSpecularLightBRDF(isCounting, isUpdatingPick, surfaceNormalX, surfaceNormalY, surfaceNormalZ, wiX, wiY, wiZ, woX, woY, woZ, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, counters, textures);
 						
 //						Save the specular color for later use:
 						final float r2 = pixels[pixelOffset + 0];
@@ -471,6 +606,21 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
+	public void clearCounters(final int[] counters) {
+		final int counterOffset = getGlobalId() * COUNTER_COUNT;
+		
+		for(int i = 0; i < COUNTER_COUNT; i++) {
+			counters[counterOffset + i] = 0;
+		}
+	}
+	
+	public void incrementCounter(final boolean isCounting, final int[] counters, final int counter, final int delta) {
+//		Each work-item has its own counters, so no atomic addition is needed:
+		if(isCounting) {
+			counters[getGlobalId() * COUNTER_COUNT + counter] += delta;
+		}
+	}
+	
 	public void normalize(final float[] vector, final int offset) {
 //		Calculate the reciprocal of the length of the vector:
 		final float lengthReciprocal = 1.0F / length(vector, offset);
@@ -481,18 +631,23 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		vector[offset + 2] *= lengthReciprocal;
 	}
 	
-	public void performNormalMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] textures) {
+	public void performNormalMapping(final boolean isCounting, final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] counters, final int[] textures) {
 //		Initialize the texture count:
 		final int textureCount = (int)(materials[materialOffset + Material.RELATIVE_OFFSET_OF_TEXTURE_COUNT]);
 		
 		if(textureCount > 0) {
+//			Initialize the number of texture samples performed:
+			int textureSamples = 0;
+			
 			if(shapes[shapeOffset + Shape.RELATIVE_OFFSET_OF_TYPE] == Sphere.TYPE) {
 				for(int i = 0; i < textureCount; i++) {
 //					Initialize the texture offset:
 					final int textureOffset = (int)(materials[materialOffset + Material.RELATIVE_OFFSET_OF_TEXTURE_COUNT + i + 1]);
 					
+					textureSamples += textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_NORMAL_MAP ? 1 : 0;
+					
 //					Perform spherical normal mapping on the sphere:
-					performSphericalNormalMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
+					performSphericalNormalMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
 				}
 			}
 			
@@ -501,14 +656,18 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 //					Initialize the texture offset:
 					final int textureOffset = (int)(materials[materialOffset + Material.RELATIVE_OFFSET_OF_TEXTURE_COUNT + i + 1]);
 					
+					textureSamples += textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_NORMAL_MAP ? 1 : 0;
+					
 //					Perform normal mapping on a triangle:
-					performPlanarTriangleNormalMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
+					performPlanarTriangleNormalMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
 				}
 			}
+			
+			incrementCounter(isCounting, counters, COUNTER_TEXTURE_SAMPLES, textureSamples);
 		}
 	}
 	
-	public void performPlanarTriangleNormalMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
+	public void performPlanarTriangleNormalMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
 		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_NORMAL_MAP) {
 //			Initialize the variables with the position (the X-, Y- and Z-values) of the triangle:
 			final float triangleAX = shapes[shapeOffset + Triangle.RELATIVE_OFFSET_OF_A + 0];
@@ -583,22 +742,83 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			final float textureU = triangleAU * length1 + triangleBU * length2 + triangleCU * length3;
 			final float textureV = triangleAV * length1 + triangleBV * length2 + triangleCV * length3;
 			
-//			Initialize the width and height of the texture:
+//			Initialize the width and height of the texture and whether they're both powers of two:
 			final int textureWidth = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_WIDTH];
 			final int textureHeight = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_HEIGHT];
-			
-//			Calculate the X- and Y-values of the texture to be applied to the triangle on the surface intersection point:
-			final int textureX = (int)(IEEEremainder(textureU * factorALength + textureU * factorBLength + textureU * factorCLength, textureWidth));
-			final int textureY = (int)(IEEEremainder(textureV * factorALength + textureV * factorBLength + textureV * factorCLength, textureHeight));
-			
-//			Calculate the index of the RGB-value and fetch the RGB-value using said index:
-			final int textureIndex = textureY * textureWidth + textureX;
-			final int textureRGB = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_DATA + (int)(IEEEremainder(abs(textureIndex), textureWidth * textureHeight))];
-			
-//			Calculate the R-, G- and B-components of the RGB-value:
-			float r = toR(textureRGB) * RGB_RECIPROCAL - 0.5F;
-			float g = toG(textureRGB) * RGB_RECIPROCAL - 0.5F;
-			float b = toB(textureRGB) * RGB_RECIPROCAL - 0.5F;
+			final int textureIsPowerOfTwo = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_FLAGS] & Texture.FLAG_POWER_OF_TWO;
+			
+//			Calculate the number of texels per world unit on the surface of the triangle, using the same scale as the UV-coordinates:
+			final float texelsPerWorldUnit = 0.001F * (factorALength + factorBLength + factorCLength);
+			
+//			Select the mip map level based on the number of texels covered by the pixel footprint:
+			final int mipMapLevel = calculateMipMapLevel(intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] * texelsPerWorldUnit, textureOffset, textures);
+			final int mipMapWidth = max(textureWidth >> mipMapLevel, 1);
+			final int mipMapHeight = max(textureHeight >> mipMapLevel, 1);
+			
+//			Calculate the X- and Y-values of the texture to be applied to the triangle on the surface intersection point, where power-of-two textures are wrapped using bit masks:
+			final int textureX = textureIsPowerOfTwo != 0 ? (int)(textureU * factorALength + textureU * factorBLength + textureU * factorCLength) & (textureWidth - 1) : (int)(IEEEremainder(textureU * factorALength + textureU * factorBLength + textureU * factorCLength, textureWidth));
+			final int textureY = textureIsPowerOfTwo != 0 ? (int)(textureV * factorALength + textureV * factorBLength + textureV * factorCLength) & (textureHeight - 1) : (int)(IEEEremainder(textureV * factorALength + textureV * factorBLength + textureV * factorCLength, textureHeight));
+			
+//			Calculate the X- and Y-values of the selected mip map level, wrapped around its width and height (which is only required for textures that are not powers of two):
+			final int mipMapX = textureIsPowerOfTwo != 0 ? textureX >> mipMapLevel : wrap(textureX >> mipMapLevel, mipMapWidth);
+			final int mipMapY = textureIsPowerOfTwo != 0 ? textureY >> mipMapLevel : wrap(textureY >> mipMapLevel, mipMapHeight);
+			
+//			Initialize the R-, G- and B-components:
+			float r = 0.0F;
+			float g = 0.0F;
+			float b = 0.0F;
+			
+			if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_FILTER] == Texture.FILTER_BILINEAR) {
+//				Calculate the X- and Y-values of the selected mip map level relative to the texel centers:
+				final float mipMapScale = 1.0F / (1 << mipMapLevel);
+				final float mipMapU = (textureU * factorALength + textureU * factorBLength + textureU * factorCLength) * mipMapScale - 0.5F;
+				final float mipMapV = (textureV * factorALength + textureV * factorBLength + textureV * factorCLength) * mipMapScale - 0.5F;
+				final int mipMapX0 = (int)(floor(mipMapU));
+				final int mipMapY0 = (int)(floor(mipMapV));
+				
+//				Calculate the weights of the four closest texels:
+				final float fractionX = mipMapU - mipMapX0;
+				final float fractionY = mipMapV - mipMapY0;
+				
+//				Calculate the X- and Y-values of the four closest texels, wrapped around the width and height of the selected mip map level:
+				final int filterX0 = textureIsPowerOfTwo != 0 ? mipMapX0 & (mipMapWidth - 1) : wrap(mipMapX0, mipMapWidth);
+				final int filterX1 = textureIsPowerOfTwo != 0 ? (mipMapX0 + 1) & (mipMapWidth - 1) : wrap(mipMapX0 + 1, mipMapWidth);
+				final int filterY0 = textureIsPowerOfTwo != 0 ? mipMapY0 & (mipMapHeight - 1) : wrap(mipMapY0, mipMapHeight);
+				final int filterY1 = textureIsPowerOfTwo != 0 ? (mipMapY0 + 1) & (mipMapHeight - 1) : wrap(mipMapY0 + 1, mipMapHeight);
+				
+//				Calculate the offsets of the four closest texels in the float array texels:
+				final int texelOffset00 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY0, textures);
+				final int texelOffset01 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY0, textures);
+				final int texelOffset10 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY1, textures);
+				final int texelOffset11 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY1, textures);
+				
+//				Calculate the R-, G- and B-components by interpolating the four closest texels, which are precomputed normals scaled by 0.5:
+				r = interpolateBilinear(texels[texelOffset00 + 0], texels[texelOffset01 + 0], texels[texelOffset10 + 0], texels[texelOffset11 + 0], fractionX, fractionY);
+				g = interpolateBilinear(texels[texelOffset00 + 1], texels[texelOffset01 + 1], texels[texelOffset10 + 1], texels[texelOffset11 + 1], fractionX, fractionY);
+				b = interpolateBilinear(texels[texelOffset00 + 2], texels[texelOffset01 + 2], texels[texelOffset10 + 2], texels[texelOffset11 + 2], fractionX, fractionY);
+			} else {
+//				Calculate the offset of the octahedral-encoded normal and fetch the octahedral-encoded normal using said offset:
+				final int textureNormal = textures[calculateTexelOffset(mipMapLevel, textureOffset, mipMapX, mipMapY, textures)];
+				
+//				Decode the X- and Y-components of the octahedral-encoded normal and calculate its Z-component:
+				final float octahedralX = ((textureNormal >> 16) & 0xFFFF) * OCTAHEDRAL_RECIPROCAL - 1.0F;
+				final float octahedralY = ((textureNormal >> 0) & 0xFFFF) * OCTAHEDRAL_RECIPROCAL - 1.0F;
+				final float octahedralZ = 1.0F - abs(octahedralX) - abs(octahedralY);
+				
+//				Unfold the X- and Y-components if the normal is in the lower hemisphere:
+				final float octahedralFold = max(-octahedralZ, 0.0F);
+				
+				r = octahedralX >= 0.0F ? octahedralX - octahedralFold : octahedralX + octahedralFold;
+				g = octahedralY >= 0.0F ? octahedralY - octahedralFold : octahedralY + octahedralFold;
+				b = octahedralZ;
+				
+//				Scale the normal to a length of 0.5, which is how much it perturbs the surface normal:
+				final float octahedralLengthReciprocal = 0.5F / sqrt(r * r + g * g + b * b);
+				
+				r *= octahedralLengthReciprocal;
+				g *= octahedralLengthReciprocal;
+				b *= octahedralLengthReciprocal;
+			}
 			
 			float surfaceNormalX = intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_SURFACE_NORMAL + 0] + r;
 			float surfaceNormalY = intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_SURFACE_NORMAL + 1] + g;
@@ -617,7 +837,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void performPlanarTriangleTextureMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
+	public void performPlanarTriangleTextureMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
 		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_NORMAL_MAP) {
 			return;
 		}
@@ -695,22 +915,69 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		final float textureU = triangleAU * length1 + triangleBU * length2 + triangleCU * length3;
 		final float textureV = triangleAV * length1 + triangleBV * length2 + triangleCV * length3;
 		
-//		Initialize the width and height of the texture:
+//		Initialize the width and height of the texture and whether they're both powers of two:
 		final int textureWidth = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_WIDTH];
 		final int textureHeight = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_HEIGHT];
-		
-//		Calculate the X- and Y-values of the texture to be applied to the triangle on the surface intersection point:
-		final int textureX = (int)(IEEEremainder(textureU * factorALength + textureU * factorBLength + textureU * factorCLength, textureWidth));
-		final int textureY = (int)(IEEEremainder(textureV * factorALength + textureV * factorBLength + textureV * factorCLength, textureHeight));
-		
-//		Calculate the index of the RGB-value and fetch the RGB-value using said index:
-		final int textureIndex = textureY * textureWidth + textureX;
-		final int textureRGB = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_DATA + (int)(IEEEremainder(abs(textureIndex), textureWidth * textureHeight))];
-		
-//		Calculate the R-, G- and B-components of the RGB-value:
-		float r = toR(textureRGB) * RGB_RECIPROCAL;
-		float g = toG(textureRGB) * RGB_RECIPROCAL;
-		float b = toB(textureRGB) * RGB_RECIPROCAL;
+		final int textureIsPowerOfTwo = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_FLAGS] & Texture.FLAG_POWER_OF_TWO;
+		
+//		Calculate the number of texels per world unit on the surface of the triangle, using the same scale as the UV-coordinates:
+		final float texelsPerWorldUnit = 0.001F * (factorALength + factorBLength + factorCLength);
+		
+//		Select the mip map level based on the number of texels covered by the pixel footprint:
+		final int mipMapLevel = calculateMipMapLevel(intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] * texelsPerWorldUnit, textureOffset, textures);
+		final int mipMapWidth = max(textureWidth >> mipMapLevel, 1);
+		final int mipMapHeight = max(textureHeight >> mipMapLevel, 1);
+		
+//		Calculate the X- and Y-values of the texture to be applied to the triangle on the surface intersection point, where power-of-two textures are wrapped using bit masks:
+		final int textureX = textureIsPowerOfTwo != 0 ? (int)(textureU * factorALength + textureU * factorBLength + textureU * factorCLength) & (textureWidth - 1) : (int)(IEEEremainder(textureU * factorALength + textureU * factorBLength + textureU * factorCLength, textureWidth));
+		final int textureY = textureIsPowerOfTwo != 0 ? (int)(textureV * factorALength + textureV * factorBLength + textureV * factorCLength) & (textureHeight - 1) : (int)(IEEEremainder(textureV * factorALength + textureV * factorBLength + textureV * factorCLength, textureHeight));
+		
+//		Calculate the X- and Y-values of the selected mip map level, wrapped around its width and height (which is only required for textures that are not powers of two):
+		final int mipMapX = textureIsPowerOfTwo != 0 ? textureX >> mipMapLevel : wrap(textureX >> mipMapLevel, mipMapWidth);
+		final int mipMapY = textureIsPowerOfTwo != 0 ? textureY >> mipMapLevel : wrap(textureY >> mipMapLevel, mipMapHeight);
+		
+//		Initialize the R-, G- and B-components:
+		float r = 0.0F;
+		float g = 0.0F;
+		float b = 0.0F;
+		
+		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_FILTER] == Texture.FILTER_BILINEAR) {
+//			Calculate the X- and Y-values of the selected mip map level relative to the texel centers:
+			final float mipMapScale = 1.0F / (1 << mipMapLevel);
+			final float mipMapU = (textureU * factorALength + textureU * factorBLength + textureU * factorCLength) * mipMapScale - 0.5F;
+			final float mipMapV = (textureV * factorALength + textureV * factorBLength + textureV * factorCLength) * mipMapScale - 0.5F;
+			final int mipMapX0 = (int)(floor(mipMapU));
+			final int mipMapY0 = (int)(floor(mipMapV));
+			
+//			Calculate the weights of the four closest texels:
+			final float fractionX = mipMapU - mipMapX0;
+			final float fractionY = mipMapV - mipMapY0;
+			
+//			Calculate the X- and Y-values of the four closest texels, wrapped around the width and height of the selected mip map level:
+			final int filterX0 = textureIsPowerOfTwo != 0 ? mipMapX0 & (mipMapWidth - 1) : wrap(mipMapX0, mipMapWidth);
+			final int filterX1 = textureIsPowerOfTwo != 0 ? (mipMapX0 + 1) & (mipMapWidth - 1) : wrap(mipMapX0 + 1, mipMapWidth);
+			final int filterY0 = textureIsPowerOfTwo != 0 ? mipMapY0 & (mipMapHeight - 1) : wrap(mipMapY0, mipMapHeight);
+			final int filterY1 = textureIsPowerOfTwo != 0 ? (mipMapY0 + 1) & (mipMapHeight - 1) : wrap(mipMapY0 + 1, mipMapHeight);
+			
+//			Calculate the offsets of the four closest texels in the float array texels:
+			final int texelOffset00 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY0, textures);
+			final int texelOffset01 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY0, textures);
+			final int texelOffset10 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY1, textures);
+			final int texelOffset11 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY1, textures);
+			
+//			Calculate the R-, G- and B-components by interpolating the four closest texels:
+			r = interpolateBilinear(texels[texelOffset00 + 0], texels[texelOffset01 + 0], texels[texelOffset10 + 0], texels[texelOffset11 + 0], fractionX, fractionY);
+			g = interpolateBilinear(texels[texelOffset00 + 1], texels[texelOffset01 + 1], texels[texelOffset10 + 1], texels[texelOffset11 + 1], fractionX, fractionY);
+			b = interpolateBilinear(texels[texelOffset00 + 2], texels[texelOffset01 + 2], texels[texelOffset10 + 2], texels[texelOffset11 + 2], fractionX, fractionY);
+		} else {
+//			Fetch the RGB-value, which is decoded if the texture is block compressed:
+			final int textureRGB = fetchTexel(mipMapLevel, textureOffset, mipMapX, mipMapY, textures);
+			
+//			Calculate the R-, G- and B-components of the RGB-value:
+			r = toR(textureRGB) * RGB_RECIPROCAL;
+			g = toG(textureRGB) * RGB_RECIPROCAL;
+			b = toB(textureRGB) * RGB_RECIPROCAL;
+		}
 		
 		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_DECAL) {
 //			Update the decal RGB-components:
@@ -731,7 +998,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		pixels[pixelOffset + 2] += b;
 	}
 	
-	public void performSphericalNormalMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
+	public void performSphericalNormalMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
 		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_NORMAL_MAP) {
 //			Initialize the variables with the position (the X-, Y- and Z-values) of the sphere:
 			final float sphereX = shapes[shapeOffset + Sphere.RELATIVE_OFFSET_OF_POSITION + 0];
@@ -764,18 +1031,78 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			final float textureU = 0.5F + atan2(distanceX, distanceZ) / (2.0F * Constants.PI);
 			final float textureV = 0.5F + asin(distanceY) / Constants.PI;
 			
+//			Calculate the number of texels per world unit on the surface of the sphere, where the texture spans half its width around the sphere and half its height from pole to pole:
+			final float texelsPerWorldUnit = max(textureWidth * 0.5F, textureHeight) * 0.5F * PI_RECIPROCAL / shapes[shapeOffset + Sphere.RELATIVE_OFFSET_OF_RADIUS];
+			
+//			Select the mip map level based on the number of texels covered by the pixel footprint:
+			final int mipMapLevel = calculateMipMapLevel(intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] * texelsPerWorldUnit, textureOffset, textures);
+			final int mipMapWidth = max(textureWidth >> mipMapLevel, 1);
+			final int mipMapHeight = max(textureHeight >> mipMapLevel, 1);
+			
 //			Calculate the X- and Y-values of the texture to be applied to the sphere on the surface intersection point:
 			final int textureX = (int)(textureWidth * ((textureU + 1.0F) * 0.5F));
 			final int textureY = (int)(textureHeight * ((textureV + 1.0F) * 0.5F));
 			
-//			Calculate the index of the RGB-value and fetch the RGB-value using said index:
-			final int textureIndex = textureY * textureWidth + textureX;
-			final int textureRGB = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_DATA + textureIndex];
-			
-//			Calculate the R-, G- and B-components of the RGB-value:
-			float r = toR(textureRGB) * RGB_RECIPROCAL - 0.5F;
-			float g = toG(textureRGB) * RGB_RECIPROCAL - 0.5F;
-			float b = toB(textureRGB) * RGB_RECIPROCAL - 0.5F;
+//			Calculate the X- and Y-values of the selected mip map level:
+			final int mipMapX = min(textureX >> mipMapLevel, mipMapWidth - 1);
+			final int mipMapY = min(textureY >> mipMapLevel, mipMapHeight - 1);
+			
+//			Initialize the R-, G- and B-components:
+			float r = 0.0F;
+			float g = 0.0F;
+			float b = 0.0F;
+			
+			if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_FILTER] == Texture.FILTER_BILINEAR) {
+//				Calculate the X- and Y-values of the selected mip map level relative to the texel centers:
+				final float mipMapScale = 1.0F / (1 << mipMapLevel);
+				final float mipMapU = textureWidth * ((textureU + 1.0F) * 0.5F) * mipMapScale - 0.5F;
+				final float mipMapV = textureHeight * ((textureV + 1.0F) * 0.5F) * mipMapScale - 0.5F;
+				final int mipMapX0 = (int)(floor(mipMapU));
+				final int mipMapY0 = (int)(floor(mipMapV));
+				
+//				Calculate the weights of the four closest texels:
+				final float fractionX = mipMapU - mipMapX0;
+				final float fractionY = mipMapV - mipMapY0;
+				
+//				Calculate the X- and Y-values of the four closest texels, clamped to the width and height of the selected mip map level:
+				final int filterX0 = min(max(mipMapX0, 0), mipMapWidth - 1);
+				final int filterX1 = min(max(mipMapX0 + 1, 0), mipMapWidth - 1);
+				final int filterY0 = min(max(mipMapY0, 0), mipMapHeight - 1);
+				final int filterY1 = min(max(mipMapY0 + 1, 0), mipMapHeight - 1);
+				
+//				Calculate the offsets of the four closest texels in the float array texels:
+				final int texelOffset00 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY0, textures);
+				final int texelOffset01 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY0, textures);
+				final int texelOffset10 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY1, textures);
+				final int texelOffset11 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY1, textures);
+				
+//				Calculate the R-, G- and B-components by interpolating the four closest texels, which are precomputed normals scaled by 0.5:
+				r = interpolateBilinear(texels[texelOffset00 + 0], texels[texelOffset01 + 0], texels[texelOffset10 + 0], texels[texelOffset11 + 0], fractionX, fractionY);
+				g = interpolateBilinear(texels[texelOffset00 + 1], texels[texelOffset01 + 1], texels[texelOffset10 + 1], texels[texelOffset11 + 1], fractionX, fractionY);
+				b = interpolateBilinear(texels[texelOffset00 + 2], texels[texelOffset01 + 2], texels[texelOffset10 + 2], texels[texelOffset11 + 2], fractionX, fractionY);
+			} else {
+//				Calculate the offset of the octahedral-encoded normal and fetch the octahedral-encoded normal using said offset:
+				final int textureNormal = textures[calculateTexelOffset(mipMapLevel, textureOffset, mipMapX, mipMapY, textures)];
+				
+//				Decode the X- and Y-components of the octahedral-encoded normal and calculate its Z-component:
+				final float octahedralX = ((textureNormal >> 16) & 0xFFFF) * OCTAHEDRAL_RECIPROCAL - 1.0F;
+				final float octahedralY = ((textureNormal >> 0) & 0xFFFF) * OCTAHEDRAL_RECIPROCAL - 1.0F;
+				final float octahedralZ = 1.0F - abs(octahedralX) - abs(octahedralY);
+				
+//				Unfold the X- and Y-components if the normal is in the lower hemisphere:
+				final float octahedralFold = max(-octahedralZ, 0.0F);
+				
+				r = octahedralX >= 0.0F ? octahedralX - octahedralFold : octahedralX + octahedralFold;
+				g = octahedralY >= 0.0F ? octahedralY - octahedralFold : octahedralY + octahedralFold;
+				b = octahedralZ;
+				
+//				Scale the normal to a length of 0.5, which is how much it perturbs the surface normal:
+				final float octahedralLengthReciprocal = 0.5F / sqrt(r * r + g * g + b * b);
+				
+				r *= octahedralLengthReciprocal;
+				g *= octahedralLengthReciprocal;
+				b *= octahedralLengthReciprocal;
+			}
 			
 			float surfaceNormalX = intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_SURFACE_NORMAL + 0] + r;
 			float surfaceNormalY = intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_SURFACE_NORMAL + 1] + g;
@@ -794,7 +1121,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void performSphericalTextureMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
+	public void performSphericalTextureMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int textureOffset, final int[] textures) {
 		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_NORMAL_MAP) {
 			return;
 		}
@@ -830,18 +1157,64 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		final float textureU = 0.5F + atan2(distanceX, distanceZ) / (2.0F * Constants.PI);
 		final float textureV = 0.5F + asin(distanceY) / Constants.PI;
 		
+//		Calculate the number of texels per world unit on the surface of the sphere, where the texture spans half its width around the sphere and half its height from pole to pole:
+		final float texelsPerWorldUnit = max(textureWidth * 0.5F, textureHeight) * 0.5F * PI_RECIPROCAL / shapes[shapeOffset + Sphere.RELATIVE_OFFSET_OF_RADIUS];
+		
+//		Select the mip map level based on the number of texels covered by the pixel footprint:
+		final int mipMapLevel = calculateMipMapLevel(intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] * texelsPerWorldUnit, textureOffset, textures);
+		final int mipMapWidth = max(textureWidth >> mipMapLevel, 1);
+		final int mipMapHeight = max(textureHeight >> mipMapLevel, 1);
+		
 //		Calculate the X- and Y-values of the texture to be applied to the sphere on the surface intersection point:
 		final int textureX = (int)(textureWidth * ((textureU + 1.0F) * 0.5F));
 		final int textureY = (int)(textureHeight * ((textureV + 1.0F) * 0.5F));
 		
-//		Calculate the index of the RGB-value and fetch the RGB-value using said index:
-		final int textureIndex = textureY * textureWidth + textureX;
-		final int textureRGB = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_DATA + textureIndex];
-		
-//		Calculate the R-, G- and B-components of the RGB-value:
-		float r = toR(textureRGB) * RGB_RECIPROCAL;
-		float g = toG(textureRGB) * RGB_RECIPROCAL;
-		float b = toB(textureRGB) * RGB_RECIPROCAL;
+//		Calculate the X- and Y-values of the selected mip map level:
+		final int mipMapX = min(textureX >> mipMapLevel, mipMapWidth - 1);
+		final int mipMapY = min(textureY >> mipMapLevel, mipMapHeight - 1);
+		
+//		Initialize the R-, G- and B-components:
+		float r = 0.0F;
+		float g = 0.0F;
+		float b = 0.0F;
+		
+		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_FILTER] == Texture.FILTER_BILINEAR) {
+//			Calculate the X- and Y-values of the selected mip map level relative to the texel centers:
+			final float mipMapScale = 1.0F / (1 << mipMapLevel);
+			final float mipMapU = textureWidth * ((textureU + 1.0F) * 0.5F) * mipMapScale - 0.5F;
+			final float mipMapV = textureHeight * ((textureV + 1.0F) * 0.5F) * mipMapScale - 0.5F;
+			final int mipMapX0 = (int)(floor(mipMapU));
+			final int mipMapY0 = (int)(floor(mipMapV));
+			
+//			Calculate the weights of the four closest texels:
+			final float fractionX = mipMapU - mipMapX0;
+			final float fractionY = mipMapV - mipMapY0;
+			
+//			Calculate the X- and Y-values of the four closest texels, clamped to the width and height of the selected mip map level:
+			final int filterX0 = min(max(mipMapX0, 0), mipMapWidth - 1);
+			final int filterX1 = min(max(mipMapX0 + 1, 0), mipMapWidth - 1);
+			final int filterY0 = min(max(mipMapY0, 0), mipMapHeight - 1);
+			final int filterY1 = min(max(mipMapY0 + 1, 0), mipMapHeight - 1);
+			
+//			Calculate the offsets of the four closest texels in the float array texels:
+			final int texelOffset00 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY0, textures);
+			final int texelOffset01 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY0, textures);
+			final int texelOffset10 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX0, filterY1, textures);
+			final int texelOffset11 = calculateTexelOffsetInTexels(mipMapLevel, textureOffset, filterX1, filterY1, textures);
+			
+//			Calculate the R-, G- and B-components by interpolating the four closest texels:
+			r = interpolateBilinear(texels[texelOffset00 + 0], texels[texelOffset01 + 0], texels[texelOffset10 + 0], texels[texelOffset11 + 0], fractionX, fractionY);
+			g = interpolateBilinear(texels[texelOffset00 + 1], texels[texelOffset01 + 1], texels[texelOffset10 + 1], texels[texelOffset11 + 1], fractionX, fractionY);
+			b = interpolateBilinear(texels[texelOffset00 + 2], texels[texelOffset01 + 2], texels[texelOffset10 + 2], texels[texelOffset11 + 2], fractionX, fractionY);
+		} else {
+//			Fetch the RGB-value, which is decoded if the texture is block compressed:
+			final int textureRGB = fetchTexel(mipMapLevel, textureOffset, mipMapX, mipMapY, textures);
+			
+//			Calculate the R-, G- and B-components of the RGB-value:
+			r = toR(textureRGB) * RGB_RECIPROCAL;
+			g = toG(textureRGB) * RGB_RECIPROCAL;
+			b = toB(textureRGB) * RGB_RECIPROCAL;
+		}
 		
 		if(textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] == Texture.TYPE_DECAL) {
 //			Update the decal RGB-components:
@@ -862,18 +1235,23 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void performTextureMapping(final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] textures) {
+	public void performTextureMapping(final boolean isCounting, final boolean isUpdatingPick, final float[] intersections, final float[] materials, final float[] pick, final float[] pixels, final float[] shapes, final float[] texels, final int intersectionOffset, final int materialOffset, final int pixelOffset, final int shapeOffset, final int[] counters, final int[] textures) {
 //		Initialize the texture count:
 		final int textureCount = (int)(materials[materialOffset + Material.RELATIVE_OFFSET_OF_TEXTURE_COUNT]);
 		
 		if(textureCount > 0) {
+//			Initialize the number of texture samples performed:
+			int textureSamples = 0;
+			
 			if(shapes[shapeOffset + Shape.RELATIVE_OFFSET_OF_TYPE] == Sphere.TYPE) {
 				for(int i = 0; i < textureCount; i++) {
 //					Initialize the texture offset:
 					final int textureOffset = (int)(materials[materialOffset + Material.RELATIVE_OFFSET_OF_TEXTURE_COUNT + i + 1]);
 					
+					textureSamples += textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] != Texture.TYPE_NORMAL_MAP ? 1 : 0;
+					
 //					Perform spherical texture mapping on the sphere:
-					performSphericalTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
+					performSphericalTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
 				}
 			}
 			
@@ -882,10 +1260,106 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 //					Initialize the texture offset:
 					final int textureOffset = (int)(materials[materialOffset + Material.RELATIVE_OFFSET_OF_TEXTURE_COUNT + i + 1]);
 					
+					textureSamples += textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TYPE] != Texture.TYPE_NORMAL_MAP ? 1 : 0;
+					
 //					Perform texture mapping on a triangle:
-					performPlanarTriangleTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
+					performPlanarTriangleTextureMapping(isUpdatingPick, intersections, materials, pick, pixels, shapes, texels, intersectionOffset, materialOffset, pixelOffset, shapeOffset, textureOffset, textures);
 				}
 			}
+			
+			incrementCounter(isCounting, counters, COUNTER_TEXTURE_SAMPLES, textureSamples);
+		}
+	}
+	
+	public void postProcessPixels(final float bloomIntensity, final float bloomThreshold, final float exposure, final float[] pixels, final int blockIndex, final int gammaCorrectionMode, final int height, final int scale, final int toneMappingOperator, final int width, final int[] gammaCorrectionTable, final int[] rGB) {
+//		Calculate the block this work-item is responsible for (the block is scale x scale pixels, so a scale of 1 means full resolution):
+		final int blocksPerRow = (width + scale - 1) / scale;
+		final int blockX = (blockIndex % blocksPerRow) * scale;
+		final int blockY = (blockIndex / blocksPerRow) * scale;
+		
+//		Initialize the bloom RGB-components, which are shared by all pixels in the block:
+		float bloomR = 0.0F;
+		float bloomG = 0.0F;
+		float bloomB = 0.0F;
+		
+		if(bloomIntensity > 0.0F) {
+//			Calculate the center of the block, from which the bloom taps are taken:
+			final int centerX = blockX + scale / 2;
+			final int centerY = blockY + scale / 2;
+			
+//			Gather the bright parts of the pixels in a sparse cross pattern around the center, at 2, 4 and 8 blocks away:
+			for(int i = 0; i < 12; i++) {
+				final int radius = scale << (1 + i / 4);
+				final int direction = i % 4;
+				final int tapX = min(max(centerX + (direction == 0 ? radius : direction == 1 ? -radius : 0), 0), width - 1);
+				final int tapY = min(max(centerY + (direction == 2 ? radius : direction == 3 ? -radius : 0), 0), height - 1);
+				final int tapOffset = (tapY * width + tapX) * Constants.SIZE_OF_PIXEL;
+				
+				final float tapR = pixels[tapOffset + 0] * exposure;
+				final float tapG = pixels[tapOffset + 1] * exposure;
+				final float tapB = pixels[tapOffset + 2] * exposure;
+				
+				final float brightness = max(tapR, max(tapG, tapB));
+				final float weight = brightness > bloomThreshold ? (brightness - bloomThreshold) / brightness : 0.0F;
+				
+				bloomR += tapR * weight;
+				bloomG += tapG * weight;
+				bloomB += tapB * weight;
+			}
+			
+			bloomR *= bloomIntensity / 12.0F;
+			bloomG *= bloomIntensity / 12.0F;
+			bloomB *= bloomIntensity / 12.0F;
+		}
+		
+		for(int y = blockY; y < min(blockY + scale, height); y++) {
+			for(int x = blockX; x < min(blockX + scale, width); x++) {
+				final int index = y * width + x;
+				final int pixelOffset = index * Constants.SIZE_OF_PIXEL;
+				
+//				Get the RGB-components from the current pixel, apply the exposure and add the bloom:
+				float r = pixels[pixelOffset + 0] * exposure + bloomR;
+				float g = pixels[pixelOffset + 1] * exposure + bloomG;
+				float b = pixels[pixelOffset + 2] * exposure + bloomB;
+				
+//				Calculate the maximum component value (used by the maximum component Tone Mapping operator):
+				final float maximumComponentValue = max(r, max(g, b));
+				
+				if(toneMappingOperator == TONE_MAPPING_OPERATOR_MAXIMUM_COMPONENT && maximumComponentValue > 1.0F) {
+					r /= maximumComponentValue;
+					g /= maximumComponentValue;
+					b /= maximumComponentValue;
+				}
+				
+//				Perform the Tone Mapping, if the operator works on the RGB-components individually:
+				r = toneMap(r, toneMappingOperator);
+				g = toneMap(g, toneMappingOperator);
+				b = toneMap(b, toneMappingOperator);
+				
+//				Perform gamma correction on the RGB-components and scale them from [0.0, 1.0] to [0, 255]:
+				final int scaledR = correctGamma(r, gammaCorrectionMode, gammaCorrectionTable);
+				final int scaledG = correctGamma(g, gammaCorrectionMode, gammaCorrectionTable);
+				final int scaledB = correctGamma(b, gammaCorrectionMode, gammaCorrectionTable);
+				
+//				Set the RGB-components of the current pixel as an int in the rGB-array:
+				rGB[index] = toRGB(scaledR, scaledG, scaledB);
+			}
+		}
+	}
+	
+	public void reduceCounters(final int[] counters, final int[] workGroupCounters, final int workGroup, final int workGroupSize, final int workItemCount) {
+//		Add the counters of all work-items in the work-group together, which is performed in a separate pass, as there is no synchronization across work-groups:
+		final int workItemStart = workGroup * workGroupSize;
+		final int workItemEnd = min(workItemStart + workGroupSize, workItemCount);
+		
+		for(int i = 0; i < COUNTER_COUNT; i++) {
+			int sum = 0;
+			
+			for(int j = workItemStart; j < workItemEnd; j++) {
+				sum += counters[j * COUNTER_COUNT + i];
+			}
+			
+			workGroupCounters[workGroup * COUNTER_COUNT + i] = sum;
 		}
 	}
 	
@@ -919,7 +1393,7 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		}
 	}
 	
-	public void updatePixel(final float samples, final float[] pixels, final int pixelOffset, final int rGBOffset, final int[] rGB) {
+	public void updatePixel(final float samples, final float[] pixels, final int gammaCorrectionMode, final int pixelOffset, final int rGBOffset, final int[] gammaCorrectionTable, final int[] rGB) {
 //		Calculate the reciprocal of samples:
 		final float samplesReciprocal = 1.0F / samples;
 		
@@ -941,23 +1415,10 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 			b *= maximumComponentValueReciprocal;
 		}
 		
-//		Calculate the reciprocal of the gamma:
-		final float gammaReciprocal = 1.0F / 2.2F;
-		
-//		Perform gamma correction on the RGB-components:
-		r = pow(r, gammaReciprocal);
-		g = pow(g, gammaReciprocal);
-		b = pow(b, gammaReciprocal);
-		
-//		Clamp the RGB-components to the range [0.0, 1.0]:
-		r = r < 0.0F ? 0.0F : r > 1.0F ? 1.0F : r;
-		g = g < 0.0F ? 0.0F : g > 1.0F ? 1.0F : g;
-		b = b < 0.0F ? 0.0F : b > 1.0F ? 1.0F : b;
-		
-//		Scale the RGB-components from [0.0, 1.0] to [0.0, 255.0] and convert them to integers:
-		final int scaledR = (int)(r * 255.0F);
-		final int scaledG = (int)(g * 255.0F);
-		final int scaledB = (int)(b * 255.0F);
+//		Perform gamma correction on the RGB-components and scale them from [0.0, 1.0] to [0, 255]:
+		final int scaledR = correctGamma(r, gammaCorrectionMode, gammaCorrectionTable);
+		final int scaledG = correctGamma(g, gammaCorrectionMode, gammaCorrectionTable);
+		final int scaledB = correctGamma(b, gammaCorrectionMode, gammaCorrectionTable);
 		
 //		Set the RGB-components of the current pixel as an int in the rGB-array:
 		rGB[rGBOffset] = toRGB(scaledR, scaledG, scaledB);
@@ -1037,6 +1498,35 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		return shapeDistance;
 	}
 	
+	public static int decodeBlockCompressedTexel(final int colors, final int indices, final int texelIndex) {
+//		Initialize the index of the color of the texel:
+		final int index = (indices >> (texelIndex << 1)) & 3;
+		
+//		Initialize the two RGB565-colors:
+		final int color0 = (colors >> 16) & 0xFFFF;
+		final int color1 = (colors >> 0) & 0xFFFF;
+		
+//		Expand the RGB565-components to 8 bits, by repeating their most significant bits:
+		final int r0 = (((color0 >> 11) & 0x1F) << 3) | (((color0 >> 11) & 0x1F) >> 2);
+		final int g0 = (((color0 >> 5) & 0x3F) << 2) | (((color0 >> 5) & 0x3F) >> 4);
+		final int b0 = (((color0 >> 0) & 0x1F) << 3) | (((color0 >> 0) & 0x1F) >> 2);
+		final int r1 = (((color1 >> 11) & 0x1F) << 3) | (((color1 >> 11) & 0x1F) >> 2);
+		final int g1 = (((color1 >> 5) & 0x3F) << 2) | (((color1 >> 5) & 0x3F) >> 4);
+		final int b1 = (((color1 >> 0) & 0x1F) << 3) | (((color1 >> 0) & 0x1F) >> 2);
+		
+//		Calculate the weight of the second color, which is 0, 3, 1 or 2 thirds for the indices 0, 1, 2 and 3:
+		final int weight = index == 0 ? 0 : index == 1 ? 3 : index - 1;
+		
+		return toRGB((r0 * (3 - weight) + r1 * weight) / 3, (g0 * (3 - weight) + g1 * weight) / 3, (b0 * (3 - weight) + b1 * weight) / 3);
+	}
+	
+	public static float interpolateBilinear(final float value00, final float value01, final float value10, final float value11, final float fractionX, final float fractionY) {
+		final float value0 = value00 + (value01 - value00) * fractionX;
+		final float value1 = value10 + (value11 - value10) * fractionX;
+		
+		return value0 + (value1 - value0) * fractionY;
+	}
+	
 	public static float lengthSquared(final float[] vector, final int offset) {
 		return dotProduct(vector, offset, vector, offset);
 	}
@@ -1057,13 +1547,49 @@ public abstract class AbstractRayCasterKernel extends Kernel {
 		return ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | ((b & 0xFF) << 0);
 	}
 	
+	public static int wrap(final int value, final int length) {
+		final int remainder = value % length;
+		
+		return remainder < 0 ? remainder + length : remainder;
+	}
+	
+	public static int[] createGammaCorrectionTable() {
+		final int[] gammaCorrectionTable = new int[GAMMA_CORRECTION_TABLE_SIZE];
+		
+		for(int i = 0; i < gammaCorrectionTable.length; i++) {
+			final float squareRoot = i / (float)(GAMMA_CORRECTION_TABLE_SIZE - 1);
+			final float value = (float)(Math.pow(squareRoot * squareRoot, GAMMA_RECIPROCAL));
+			
+			gammaCorrectionTable[i] = (int)((value < 0.0F ? 0.0F : value > 1.0F ? 1.0F : value) * 255.0F);
+		}
+		
+		return gammaCorrectionTable;
+	}
+	
+	public static void accumulatePixel(final float[] accumulatedPixels, final float[] pixels, final int pixelOffset, final int sampleCount, final int sampleIndex) {
+//		Add the radiance of the current sample to the radiance of the previous samples, if any:
+		final float r = pixels[pixelOffset + 0] + (sampleIndex == 0 ? 0.0F : accumulatedPixels[pixelOffset + 0]);
+		final float g = pixels[pixelOffset + 1] + (sampleIndex == 0 ? 0.0F : accumulatedPixels[pixelOffset + 1]);
+		final float b = pixels[pixelOffset + 2] + (sampleIndex == 0 ? 0.0F : accumulatedPixels[pixelOffset + 2]);
+		
+		accumulatedPixels[pixelOffset + 0] = r;
+		accumulatedPixels[pixelOffset + 1] = g;
+		accumulatedPixels[pixelOffset + 2] = b;
+		
+		if(sampleIndex == sampleCount - 1) {
+//			Replace the radiance of the pixel with the average radiance of all samples:
+			final float sampleCountReciprocal = 1.0F / sampleCount;
+			
+			pixels[pixelOffset + 0] = r * sampleCountReciprocal;
+			pixels[pixelOffset + 1] = g * sampleCountReciprocal;
+			pixels[pixelOffset + 2] = b * sampleCountReciprocal;
+		}
+	}
+	
 	public static void clearPixel(final float[] pixels, final int pixelOffset) {
 		pixels[pixelOffset + 0] = 0.0F;
 		pixels[pixelOffset + 1] = 0.0F;
 		pixels[pixelOffset + 2] = 0.0F;
-		pixels[pixelOffset + 3] = 0.0F;
-		pixels[pixelOffset + 4] = 0.0F;
-		pixels[pixelOffset + 5] = 0.0F;
 	}
 	
 	public static void updateSurfaceNormalForPlane(final float[] intersections, final float[] shapes, final int intersectionOffset, final int shapeOffset) {
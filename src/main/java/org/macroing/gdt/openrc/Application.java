@@ -33,9 +33,12 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import javax.swing.JFrame;
@@ -44,11 +47,16 @@ import javax.swing.SwingUtilities;
 
 import org.macroing.gdt.openrc.geometry.Scene;
 import org.macroing.gdt.openrc.geometry.Shape;
+import org.macroing.gdt.openrc.jfr.Events;
+import org.macroing.gdt.openrc.jfr.FrameEvent;
+import org.macroing.gdt.openrc.jfr.KernelExecutionEvent;
+import org.macroing.gdt.openrc.jfr.KernelTransferEvent;
 import org.macroing.gdt.openrc.swing.AbsoluteLayout;
 import org.macroing.gdt.openrc.swing.JBufferedImagePanel;
 import org.macroing.gdt.openrc.swing.SwingUtilities2;
+import org.macroing.gdt.openrc.util.Ranges;
 
-import com.amd.aparapi.Kernel;
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
 import com.amd.aparapi.Range;
 
 public abstract class Application implements KeyListener, MouseMotionListener {
@@ -58,13 +66,18 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 	private final AtomicBoolean isTextureUpdateRequired = new AtomicBoolean();
 	private final AtomicInteger mouseLeft = new AtomicInteger();
 	private final AtomicInteger mouseUp = new AtomicInteger();
+	private final AtomicLongArray counterTotals = new AtomicLongArray(RayCasterKernel.COUNTER_COUNT);
+	private final AtomicLongArray counters = new AtomicLongArray(RayCasterKernel.COUNTER_COUNT);
+	private final AtomicReference<EXECUTION_MODE> executionMode = new AtomicReference<>(EXECUTION_MODE.NONE);
+	private final AtomicReference<FrameSink> frameSink = new AtomicReference<>();
 	private final boolean[] isKeyPressed = new boolean[1024];
 	private final BufferedImage bufferedImage = new BufferedImage(Constants.WIDTH / Constants.WIDTH_SCALE, Constants.HEIGHT / Constants.HEIGHT_SCALE, BufferedImage.TYPE_INT_RGB);
 	private final float[] pick = new float[Constants.SIZE_OF_PICK];
 	private final FPSCounter fPSCounter = new FPSCounter();
+	private final FrameProfiler frameProfiler = new FrameProfiler();
 	private final int[] rGB;
 	private final JFrame jFrame;
-	private final Kernel kernel;
+	private final RayCasterKernel kernel;
 	private final Point centerPoint = new Point();
 	private final Range range = Range.create((Constants.WIDTH / Constants.WIDTH_SCALE) * (Constants.HEIGHT / Constants.HEIGHT_SCALE));
 	private final Robot robot = doCreateRobot();
@@ -85,14 +98,38 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 		return this.isKeyPressed[keyCode];
 	}
 	
+	public final double getRaysPerSecond() {
+		final double frameTimeAverageNanos = this.fPSCounter.getFrameTimeAverageNanos();
+		
+		final long rays = this.counters.get(RayCasterKernel.COUNTER_PRIMARY_RAYS) + this.counters.get(RayCasterKernel.COUNTER_SHADOW_RAYS);
+		
+		return frameTimeAverageNanos > 0.0D ? rays * 1000000000.0D / frameTimeAverageNanos : 0.0D;
+	}
+	
 	public final float[] getPick() {
 		return this.pick;
 	}
 	
+	public final EXECUTION_MODE getExecutionMode() {
+		return this.executionMode.get();
+	}
+	
 	public final FPSCounter getFPSCounter() {
 		return this.fPSCounter;
 	}
 	
+	public final FrameSink getFrameSink() {
+		return this.frameSink.get();
+	}
+	
+	public final FrameProfiler getFrameProfiler() {
+		return this.frameProfiler;
+	}
+	
+	public final int getGammaCorrectionMode() {
+		return this.kernel.getGammaCorrectionMode();
+	}
+	
 	public final int getMouseLeftAndReset() {
 		return this.mouseLeft.getAndSet(0);
 	}
@@ -101,7 +138,11 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 		return this.mouseUp.getAndSet(0);
 	}
 	
-	public final Kernel getKernel() {
+	public final long getCounterTotal(final int counter) {
+		return this.counterTotals.get(Ranges.requireRange(counter, 0, RayCasterKernel.COUNTER_COUNT - 1));
+	}
+	
+	public final RayCasterKernel getKernel() {
 		return this.kernel;
 	}
 	
@@ -159,6 +200,14 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 		doMoveMouse(e);
 	}
 	
+	public final void setFrameSink(final FrameSink frameSink) {
+		this.frameSink.set(frameSink);
+	}
+	
+	public final void setGammaCorrectionMode(final int gammaCorrectionMode) {
+		this.kernel.setGammaCorrectionMode(gammaCorrectionMode);
+	}
+	
 	public final void setLightUpdateRequired(final boolean isLightUpdateRequired) {
 		this.isLightUpdateRequired.set(isLightUpdateRequired);
 	}
@@ -185,43 +234,131 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 			this.jFrame.addMouseMotionListener(this);
 		});
 		
+//		The dirty ranges of the Scene are transferred and cleared below, so it may only be edited by this thread from now on, such as in update():
+		this.scene.setOwnerThread(Thread.currentThread());
+		
 		while(this.isRunning.get()) {
+			final long frameStartNanos = System.nanoTime();
+			
+			final FrameEvent frameEvent = Events.isAvailable() ? new FrameEvent() : null;
+			
+			if(frameEvent != null) {
+				frameEvent.begin();
+			}
+			
 //			Update the current frame:
 			update();
 			
+			long startNanos = doProfile(FrameProfiler.STAGE_UPDATE, frameStartNanos);
+			
 //			Perform View Frustum Culling:
 			doPerformFrustumCulling();
 			
+			startNanos = doProfile(FrameProfiler.STAGE_CULLING, startNanos);
+			
 //			Tell the API to fetch the camera values before executing this Kernel instance (it will be transferred to the GPU every cycle):
-			this.kernel.put(this.scene.getCamera().getArray());
+			doPut(this.scene.getCamera().getArray(), "camera");
 			
 //			Tell the API to fetch the shape indices before executing this Kernel instance (it will be transferred to the GPU every cycle):
-			this.kernel.put(this.scene.getShapeIndices());
+			doPut(this.scene.getShapeIndices(), "shapeIndices");
 			
-			if(this.isLightUpdateRequired.compareAndSet(true, false)) {
-				this.kernel.put(this.scene.getLightsAsArray());
+//			The lights may have been changed directly or edited through the Scene. Both conditions are always evaluated, so the flag is reset either way:
+			if(this.isLightUpdateRequired.compareAndSet(true, false) | this.scene.isDirty(Scene.ARRAY_LIGHTS)) {
+				doPut(this.scene.getLightsAsArray(), "lights");
 			}
 			
+//			Tell the API to fetch the arrays that have been edited since the last cycle (Aparapi transfers an array as a whole, so their dirty ranges are only used to decide whether to transfer them):
+			if(this.scene.isDirty(Scene.ARRAY_MATERIALS)) {
+				doPut(this.scene.getMaterialsAsArray(), "materials");
+			}
+			
+			if(this.scene.isDirty(Scene.ARRAY_SHAPES)) {
+				doPut(this.scene.getShapesAsArray(), "shapes");
+			}
+			
+			this.scene.clearDirtyRange(Scene.ARRAY_LIGHTS);
+			this.scene.clearDirtyRange(Scene.ARRAY_MATERIALS);
+			this.scene.clearDirtyRange(Scene.ARRAY_SHAPES);
+			this.scene.clearDirtyRange(Scene.ARRAY_SHAPE_INDICES);
+			
 			if(this.isTextureUpdateRequired.compareAndSet(true, false)) {
-				this.kernel.put(this.scene.getTexturesAsArray());
+				doPut(this.scene.getTexturesAsArray(), "textures");
+				doPut(this.scene.getTexelsAsArray(), "texels");
+			}
+			
+			startNanos = doProfile(FrameProfiler.STAGE_PUT, startNanos);
+			
+//			Aparapi accumulates its own measured execution time, in milliseconds:
+			final long accumulatedExecutionTime = this.kernel.getAccumulatedExecutionTime();
+			
+//			Aparapi measures the conversion of the bytecode to OpenCL, in milliseconds, when the Kernel is executed for the first time in an execution mode that requires it:
+			final long conversionTime = this.kernel.getConversionTime();
+			
+//			Execute this Kernel instance, followed by the post-processing pass if it is enabled:
+			final KernelExecutionEvent kernelExecutionEvent = Events.isAvailable() ? new KernelExecutionEvent() : null;
+			
+			if(kernelExecutionEvent != null) {
+				kernelExecutionEvent.begin();
+			}
+			
+			this.kernel.executeAndPostProcess(this.range);
+			
+			if(kernelExecutionEvent != null) {
+				kernelExecutionEvent.setExecutionMode(this.kernel.getExecutionMode().name());
+				kernelExecutionEvent.setPostProcessing(this.kernel.isPostProcessing());
+				kernelExecutionEvent.setRangeSize(this.range.getGlobalSize(0));
+				kernelExecutionEvent.commit();
+			}
+			
+			startNanos = doProfile(FrameProfiler.STAGE_EXECUTE, startNanos);
+			
+			this.frameProfiler.record(FrameProfiler.STAGE_KERNEL_EXECUTION, (this.kernel.getAccumulatedExecutionTime() - accumulatedExecutionTime) * 1000000L);
+			
+			if(this.kernel.getConversionTime() != conversionTime) {
+				this.frameProfiler.record(FrameProfiler.STAGE_KERNEL_CONVERSION, this.kernel.getConversionTime() * 1000000L);
 			}
 			
-//			Execute this Kernel instance:
-			this.kernel.execute(this.range);
+//			Publish the execution mode and the counters, so they can be read by other threads without locking the Kernel:
+			doPublish();
 			
 //			Fetch the pick result:
-			this.kernel.get(this.pick);
+			doGet(this.pick, "pick");
+			
+			startNanos = doProfile(FrameProfiler.STAGE_GET_PICK, startNanos);
 			
 //			Fetch the RGB-values calculated in the GPU to the rGB array, so we can display the result:
-			this.kernel.get(this.rGB);
+			doGet(this.rGB, "rGB");
+			
+			startNanos = doProfile(FrameProfiler.STAGE_GET_RGB, startNanos);
+			
+//			Offer the frame to the FrameSink, if any. The frame is dropped rather than waited for if the FrameSink is busy, so capturing does not stall the render loop:
+			final FrameSink frameSink = this.frameSink.get();
 			
-//			Tell the JFrame to repaint itself:
+			if(frameSink != null) {
+				frameSink.offer(this.rGB, this.frameProfiler.getFrameCount());
+			}
+			
+//			Tell the JFrame to repaint itself (the painting itself is performed later on, by the Event Dispatch Thread):
 			this.jFrame.repaint();
 			
+			doProfile(FrameProfiler.STAGE_REPAINT, startNanos);
+			
 //			Update the FPS in the FPSCounter:
 			this.fPSCounter.update();
+			
+			doProfile(FrameProfiler.STAGE_FRAME, frameStartNanos);
+			
+			if(frameEvent != null) {
+				frameEvent.setFrame(this.frameProfiler.getFrameCount());
+				frameEvent.commit();
+			}
+			
+			this.frameProfiler.endFrame();
 		}
 		
+//		Release the Scene, so it may be edited by other threads again:
+		this.scene.setOwnerThread(null);
+		
 //		Tell the Kernel to dispose of any resources used.
 		this.kernel.dispose();
 		
@@ -233,6 +370,74 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	private void doGet(final float[] array, final String name) {
+		if(doIsRecordingTransfers()) {
+			doTransfer(name, KernelTransferEvent.DIRECTION_GET, array.length * 4L, () -> this.kernel.get(array));
+		} else {
+			this.kernel.get(array);
+		}
+	}
+	
+	private void doGet(final int[] array, final String name) {
+		if(doIsRecordingTransfers()) {
+			doTransfer(name, KernelTransferEvent.DIRECTION_GET, array.length * 4L, () -> this.kernel.get(array));
+		} else {
+			this.kernel.get(array);
+		}
+	}
+	
+	private void doPut(final float[] array, final String name) {
+		if(doIsRecordingTransfers()) {
+			doTransfer(name, KernelTransferEvent.DIRECTION_PUT, array.length * 4L, () -> this.kernel.put(array));
+		} else {
+			this.kernel.put(array);
+		}
+	}
+	
+	private void doPut(final int[] array, final String name) {
+		if(doIsRecordingTransfers()) {
+			doTransfer(name, KernelTransferEvent.DIRECTION_PUT, array.length * 4L, () -> this.kernel.put(array));
+		} else {
+			this.kernel.put(array);
+		}
+	}
+	
+	private void doTransfer(final String name, final String direction, final long bytes, final Runnable runnable) {
+		final KernelTransferEvent kernelTransferEvent = new KernelTransferEvent();
+		
+		kernelTransferEvent.begin();
+		
+		runnable.run();
+		
+		kernelTransferEvent.end();
+		
+		if(kernelTransferEvent.shouldCommit()) {
+			kernelTransferEvent.setArray(name);
+			kernelTransferEvent.setBytes(bytes);
+			kernelTransferEvent.setDirection(direction);
+			kernelTransferEvent.commit();
+		}
+	}
+	
+	private void doPublish() {
+		this.executionMode.set(this.kernel.getExecutionMode());
+		
+		for(int i = 0; i < RayCasterKernel.COUNTER_COUNT; i++) {
+			final long counter = this.kernel.getCounter(i);
+			
+			this.counters.set(i, counter);
+			this.counterTotals.addAndGet(i, counter);
+		}
+	}
+	
+	private long doProfile(final int stage, final long startNanos) {
+		final long currentNanos = System.nanoTime();
+		
+		this.frameProfiler.record(stage, currentNanos - startNanos);
+		
+		return currentNanos;
+	}
+	
 	private void doMoveMouse(final MouseEvent e) {
 		if(this.jFrame.isActive()) {
 			if(this.isRecenteringMouse.get() && this.centerPoint.x == e.getXOnScreen() && this.centerPoint.y == e.getYOnScreen()) {
@@ -269,9 +474,11 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 		
 		final List<Shape> shapes = this.scene.getShapesAsList();
 		
-		for(int i = 0; i < shapeIndices.length; i++) {
+		for(int i = 0; i < shapes.size(); i++) {
 			shapeIndices[i] = shapes.get(i).getIndex();
 		}
+		
+		Arrays.fill(shapeIndices, shapes.size(), shapeIndices.length, -1);
 	}
 	
 	private void doRecenterMouse() {
@@ -291,6 +498,11 @@ public abstract class Application implements KeyListener, MouseMotionListener {
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	private static boolean doIsRecordingTransfers() {
+//		The transfers happen several times per frame, so neither a lambda nor an event is created unless the events are recorded:
+		return Events.isAvailable() && KernelTransferEvent.isTypeEnabled();
+	}
+	
 	private static int[] doToRGB(final BufferedImage bufferedImage) {
 		final WritableRaster writableRaster = bufferedImage.getRaster();
 		
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.macroing.gdt.openrc.geometry.Camera;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Ranges;
+
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
+import com.amd.aparapi.Range;
+
+/**
+ * A {@code BatchRenderer} renders a {@link Scene} along a camera path without a window, and writes each frame to a file.
+ * <p>
+ * The frames are rendered by a single {@link RayCasterKernel} and written by a {@link FrameSink}, so the encoding of one frame overlaps the rendering of the next ones. The number of frames waiting to be encoded is bounded, so rendering is paused if the encoders fall behind.
+ * <p>
+ * A camera path is a file with a sequence of {@link Camera}s, each written by {@link Camera#write(java.io.DataOutput)}. It can be recorded in {@link TestGame} by pressing 'R'.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class BatchRenderer {
+	private final AtomicLong frameCount = new AtomicLong();
+	private final AtomicLong renderNanos = new AtomicLong();
+	private final AtomicReference<FrameSink> frameSink = new AtomicReference<>();
+	private final EXECUTION_MODE executionMode;
+	private final int encoderCount;
+	private final int format;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code BatchRenderer}.
+	 * 
+	 * @param executionMode the {@code EXECUTION_MODE} to render with
+	 * @param encoderCount the number of threads that encode the frames
+	 * @param format the format of the frames, which is either {@code FrameSink.FORMAT_PNG} or {@code FrameSink.FORMAT_RAW}
+	 * @throws IllegalArgumentException thrown if, and only if, {@code encoderCount} is less than {@code 1} or {@code format} is invalid
+	 * @throws NullPointerException thrown if, and only if, {@code executionMode} is {@code null}
+	 */
+	public BatchRenderer(final EXECUTION_MODE executionMode, final int encoderCount, final int format) {
+		this.executionMode = Objects.requireNonNull(executionMode, "executionMode == null");
+		this.encoderCount = Ranges.requireRange(encoderCount, 1, Integer.MAX_VALUE);
+		this.format = Ranges.requireRange(format, FrameSink.FORMAT_PNG, FrameSink.FORMAT_RAW);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Renders {@code scene} once for each {@link Camera} in {@code cameras} and writes the frames to the files {@code frame-00000.png}, {@code frame-00001.png} and so on in {@code directory}, or with the extension {@code .rgb} for the format {@code FrameSink.FORMAT_RAW}.
+	 * <p>
+	 * Returns the number of frames written.
+	 * <p>
+	 * The {@code Camera} of {@code scene} is modified.
+	 * 
+	 * @param scene the {@code Scene} to render
+	 * @param cameras the {@code Camera}s to render {@code scene} from
+	 * @param directory the directory to write the frames to
+	 * @return the number of frames written
+	 * @throws NullPointerException thrown if, and only if, either {@code scene}, {@code cameras}, any of its elements or {@code directory} are {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, {@code directory} could not be created or a frame could not be written
+	 */
+	public int render(final Scene scene, final List<Camera> cameras, final File directory) {
+		Objects.requireNonNull(scene, "scene == null");
+		Objects.requireNonNull(cameras, "cameras == null");
+		Objects.requireNonNull(directory, "directory == null");
+		
+		final int width = Constants.WIDTH / Constants.WIDTH_SCALE;
+		final int height = Constants.HEIGHT / Constants.HEIGHT_SCALE;
+		
+		final float[] camera = scene.getCamera().getArray();
+		final float[] pick = new float[Constants.SIZE_OF_PICK];
+		
+		final int[] rGB = new int[width * height];
+		
+		final Range range = Range.create(rGB.length);
+		
+		final RayCasterKernel rayCasterKernel = new RayCasterKernel(pick, rGB, scene);
+		
+		rayCasterKernel.setExecutionMode(this.executionMode);
+		
+//		Each encoder has two buffers, so one can be filled by the render loop while the other is being encoded. When all buffers are in use, the render loop waits for a buffer to be returned:
+		try(final FrameSink frameSink = new FrameSink(directory, width, height, this.format, this.encoderCount, this.encoderCount * 2)) {
+			this.frameSink.set(frameSink);
+			
+//			The shape indices are kept filled and terminated by -1 by the Scene itself, so they are transferred once for all frames:
+			rayCasterKernel.put(scene.getShapeIndices());
+			
+			for(int i = 0; i < cameras.size(); i++) {
+				System.arraycopy(Objects.requireNonNull(cameras.get(i), "cameras.get(" + i + ") == null").getArray(), 0, camera, 0, Camera.SIZE);
+				
+				final long startNanos = System.nanoTime();
+				
+				rayCasterKernel.put(camera);
+				rayCasterKernel.executeAndPostProcess(range);
+				rayCasterKernel.get(rGB);
+				
+				this.renderNanos.addAndGet(System.nanoTime() - startNanos);
+				
+				frameSink.put(rGB, i);
+				
+				this.frameCount.incrementAndGet();
+			}
+			
+			return cameras.size();
+		} finally {
+			this.frameSink.set(null);
+			
+			rayCasterKernel.dispose();
+		}
+	}
+	
+	/**
+	 * Adds the number of frames rendered, the time spent rendering them and the number of frames waiting to be encoded to {@code metricsServer}.
+	 * 
+	 * @param metricsServer the {@code MetricsServer} to add the metrics to
+	 * @throws NullPointerException thrown if, and only if, {@code metricsServer} is {@code null}
+	 */
+	public void addMetrics(final MetricsServer metricsServer) {
+		metricsServer.addCounter("openrc_batch_frames_total", "The number of frames rendered.", () -> this.frameCount.get());
+		metricsServer.addCounter("openrc_batch_render_seconds_total", "The time spent rendering the frames, excluding the encoding.", () -> this.renderNanos.get() / 1.0e9D);
+		metricsServer.addGauge("openrc_frame_sink_pending_frames", "The number of rendered frames waiting to be encoded or being encoded.", () -> doGetPendingFrameCount(this.frameSink.get()));
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * The entry-point of the {@code BatchRenderer}.
+	 * <p>
+	 * The arguments are the {@link Scene} file, as written by {@link Scene#write(File)}, the camera path file and the directory to write the frames to.
+	 * <p>
+	 * The following system properties are supported:
+	 * <ul>
+	 * <li>{@code org.macroing.gdt.openrc.batch.encoders} - the number of threads that encode the frames. The default is the number of available processors.</li>
+	 * <li>{@code org.macroing.gdt.openrc.batch.format} - the format of the frames, which is either {@code PNG} or {@code RAW}. The default is {@code PNG}.</li>
+	 * <li>{@code org.macroing.gdt.openrc.batch.mode} - the execution mode, such as {@code GPU} or {@code JTP}. The default is {@code GPU}.</li>
+	 * <li>{@link MetricsServer#PROPERTY_PORT} - the port to serve the metrics of the {@code BatchRenderer} at, if set.</li>
+	 * </ul>
+	 * 
+	 * @param args the arguments
+	 */
+	@SuppressWarnings("try")
+	public static void main(final String[] args) {
+		if(args.length != 3) {
+			System.err.println("Usage: java org.macroing.gdt.openrc.BatchRenderer <scene file> <camera path file> <output directory>");
+			
+			System.exit(1);
+		}
+		
+		final int encoderCount = Integer.getInteger("org.macroing.gdt.openrc.batch.encoders", Runtime.getRuntime().availableProcessors()).intValue();
+		final int format = System.getProperty("org.macroing.gdt.openrc.batch.format", "PNG").equalsIgnoreCase("RAW") ? FrameSink.FORMAT_RAW : FrameSink.FORMAT_PNG;
+		
+		final EXECUTION_MODE executionMode = EXECUTION_MODE.valueOf(System.getProperty("org.macroing.gdt.openrc.batch.mode", "GPU"));
+		
+		final Scene scene = Scene.read(new File(args[0]));
+		
+		final List<Camera> cameras = Camera.readAll(new File(args[1]));
+		
+		final BatchRenderer batchRenderer = new BatchRenderer(executionMode, encoderCount, format);
+		
+		final long startNanos = System.nanoTime();
+		
+		final int frameCount;
+		
+		try(final MetricsServer metricsServer = MetricsServer.startFromSystemProperty(batchRenderer::addMetrics)) {
+			frameCount = batchRenderer.render(scene, cameras, new File(args[2]));
+		}
+		
+		final double seconds = (System.nanoTime() - startNanos) / 1000000000.0D;
+		
+		System.out.printf("Rendered %d frames to %s in %.2f seconds (%.2f frames per second)%n", Integer.valueOf(frameCount), args[2], Double.valueOf(seconds), Double.valueOf(seconds > 0.0D ? frameCount / seconds : 0.0D));
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static double doGetPendingFrameCount(final FrameSink frameSink) {
+		return frameSink != null ? frameSink.getPendingFrameCount() : 0.0D;
+	}
+}
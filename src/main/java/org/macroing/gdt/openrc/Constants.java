@@ -33,7 +33,7 @@ public final class Constants {
 	public static final int RELATIVE_OFFSET_OF_RAY_ORIGIN_0 = 0;
 	public static final int RELATIVE_OFFSET_OF_RAY_ORIGIN_1 = 6;
 	public static final int SIZE_OF_PICK = 1 + 1 + 1 + 2;
-	public static final int SIZE_OF_PIXEL = 3 + 3;
+	public static final int SIZE_OF_PIXEL = 3;
 	public static final int SIZE_OF_RAY = 3 + 3 + 3 + 3;
 	public static final int WIDTH = 1024;//1920;
 	public static final int WIDTH_SCALE = 1;
@@ -19,13 +19,41 @@
 package org.macroing.gdt.openrc;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * An {@code FPSCounter} keeps track of the frames per second and the frame times.
+ * <p>
+ * The frame times are measured with {@code System.nanoTime()} and recorded in a lock-free histogram, from which percentiles can be retrieved. The histogram has a precision of about 3% and covers frame times of up to 2^32 microseconds, which is about 71 minutes. A rolling average over the last {@code ROLLING_AVERAGE_FRAME_COUNT} frames is also maintained.
+ * <p>
+ * The method {@link #update()} is meant to be called by a single thread, once per frame. All other methods may be called by any thread.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
 public final class FPSCounter {
+	/**
+	 * The number of frames the rolling average is calculated over.
+	 */
+	public static final int ROLLING_AVERAGE_FRAME_COUNT = 64;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final int HISTOGRAM_BUCKET_COUNT = 64 + 26 * 32;
+	private static final int HISTOGRAM_SUB_BUCKET_BITS = 5;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final AtomicLong frameCount = new AtomicLong();
+	private final AtomicLong frameTimeMaximumNanos = new AtomicLong();
+	private final AtomicLong frameTimeSumNanos = new AtomicLong();
 	private final AtomicLong newFPS = new AtomicLong();
-	private final AtomicLong newFPSReferenceTimeMillis = new AtomicLong();
-	private final AtomicLong newFrameTimeMillis = new AtomicLong();
+	private final AtomicLong newFPSReferenceTimeNanos = new AtomicLong();
+	private final AtomicLong newFrameTimeNanos = new AtomicLong();
 	private final AtomicLong oldFPS = new AtomicLong();
-	private final AtomicLong oldFrameTimeMillis = new AtomicLong();
+	private final AtomicLong oldFrameTimeNanos = new AtomicLong();
+	private final AtomicLongArray frameTimeHistogram = new AtomicLongArray(HISTOGRAM_BUCKET_COUNT);
+	private final AtomicLongArray frameTimes = new AtomicLongArray(ROLLING_AVERAGE_FRAME_COUNT);
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
@@ -35,29 +63,156 @@ public final class FPSCounter {
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	/**
+	 * Returns the average frame time in nanoseconds of the last {@code ROLLING_AVERAGE_FRAME_COUNT} frames.
+	 * 
+	 * @return the average frame time in nanoseconds of the last {@code ROLLING_AVERAGE_FRAME_COUNT} frames
+	 */
+	public double getFrameTimeAverageNanos() {
+		final long frameCount = Math.min(this.frameCount.get(), ROLLING_AVERAGE_FRAME_COUNT);
+		
+		return frameCount > 0L ? (double)(this.frameTimeSumNanos.get()) / frameCount : 0.0D;
+	}
+	
 	public long getFPS() {
 		return this.oldFPS.get();
 	}
 	
+	/**
+	 * Returns the number of frame times recorded since the histogram was last reset.
+	 * 
+	 * @return the number of frame times recorded since the histogram was last reset
+	 */
+	public long getFrameTimeCount() {
+		long frameTimeCount = 0L;
+		
+		for(int i = 0; i < HISTOGRAM_BUCKET_COUNT; i++) {
+			frameTimeCount += this.frameTimeHistogram.get(i);
+		}
+		
+		return frameTimeCount;
+	}
+	
+	/**
+	 * Returns the maximum frame time in nanoseconds since the histogram was last reset.
+	 * 
+	 * @return the maximum frame time in nanoseconds since the histogram was last reset
+	 */
+	public long getFrameTimeMaximumNanos() {
+		return this.frameTimeMaximumNanos.get();
+	}
+	
 	public long getFrameTimeMillis() {
-		return this.oldFrameTimeMillis.get();
+		return this.oldFrameTimeNanos.get() / 1000000L;
+	}
+	
+	/**
+	 * Returns the frame time of the last frame in nanoseconds.
+	 * 
+	 * @return the frame time of the last frame in nanoseconds
+	 */
+	public long getFrameTimeNanos() {
+		return this.oldFrameTimeNanos.get();
+	}
+	
+	/**
+	 * Returns the frame time in nanoseconds that {@code percentile} percent of the frames recorded since the histogram was last reset are at or below.
+	 * <p>
+	 * The value returned is the upper bound of the histogram bucket the percentile falls into, so it is never less than the actual frame time.
+	 * 
+	 * @param percentile the percentile, such as {@code 50.0D}, {@code 95.0D} or {@code 99.0D}
+	 * @return the frame time in nanoseconds that {@code percentile} percent of the frames recorded since the histogram was last reset are at or below
+	 */
+	public long getFrameTimePercentileNanos(final double percentile) {
+		final long[] counts = new long[HISTOGRAM_BUCKET_COUNT];
+		
+		long frameTimeCount = 0L;
+		
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] = this.frameTimeHistogram.get(i);
+			
+			frameTimeCount += counts[i];
+		}
+		
+		if(frameTimeCount == 0L) {
+			return 0L;
+		}
+		
+		final long threshold = Math.max((long)(Math.ceil(Math.min(Math.max(percentile, 0.0D), 100.0D) / 100.0D * frameTimeCount)), 1L);
+		
+		long cumulativeCount = 0L;
+		
+		for(int i = 0; i < counts.length; i++) {
+			cumulativeCount += counts[i];
+			
+			if(cumulativeCount >= threshold) {
+				return Math.min(doToUpperBoundMicros(i) * 1000L, this.frameTimeMaximumNanos.get());
+			}
+		}
+		
+		return this.frameTimeMaximumNanos.get();
+	}
+	
+	/**
+	 * Resets the histogram and the maximum frame time, such that the percentiles only cover the frames from now on.
+	 */
+	public void resetFrameTimeHistogram() {
+		for(int i = 0; i < HISTOGRAM_BUCKET_COUNT; i++) {
+			this.frameTimeHistogram.set(i, 0L);
+		}
+		
+		this.frameTimeMaximumNanos.set(0L);
 	}
 	
 	public void update() {
-		final long currentTimeMillis = System.currentTimeMillis();
+		final long currentTimeNanos = System.nanoTime();
+		final long previousTimeNanos = this.newFrameTimeNanos.getAndSet(currentTimeNanos);
 		
 		this.newFPS.incrementAndGet();
-		this.newFPSReferenceTimeMillis.compareAndSet(0L, currentTimeMillis);
-		this.oldFrameTimeMillis.set(currentTimeMillis - this.newFrameTimeMillis.get());
-		this.newFrameTimeMillis.set(currentTimeMillis);
+		this.newFPSReferenceTimeNanos.compareAndSet(0L, currentTimeNanos);
+		
+//		The first call has no previous frame to measure against:
+		if(previousTimeNanos != 0L) {
+			final long frameTimeNanos = currentTimeNanos - previousTimeNanos;
+			final long frameCount = this.frameCount.getAndIncrement();
+			final long frameTimeNanosRemoved = this.frameTimes.getAndSet((int)(frameCount % ROLLING_AVERAGE_FRAME_COUNT), frameTimeNanos);
+			
+			this.oldFrameTimeNanos.set(frameTimeNanos);
+			this.frameTimeSumNanos.addAndGet(frameTimeNanos - frameTimeNanosRemoved);
+			this.frameTimeHistogram.incrementAndGet(doToBucket(frameTimeNanos / 1000L));
+			this.frameTimeMaximumNanos.accumulateAndGet(frameTimeNanos, Math::max);
+		}
 		
-		final long newFPSReferenceTimeMillis = this.newFPSReferenceTimeMillis.get();
-		final long newFPSElapsedTimeMillis = currentTimeMillis - newFPSReferenceTimeMillis;
+		final long newFPSReferenceTimeNanos = this.newFPSReferenceTimeNanos.get();
+		final long newFPSElapsedTimeNanos = currentTimeNanos - newFPSReferenceTimeNanos;
 		
-		if(newFPSElapsedTimeMillis >= 1000L) {
+		if(newFPSElapsedTimeNanos >= 1000000000L) {
 			this.oldFPS.set(this.newFPS.get());
 			this.newFPS.set(0L);
-			this.newFPSReferenceTimeMillis.set(currentTimeMillis);
+			this.newFPSReferenceTimeNanos.set(currentTimeNanos);
 		}
 	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static int doToBucket(final long micros) {
+//		Values below 64 microseconds get a bucket each, above that each power of two is split into 32 buckets:
+		if(micros < 64L) {
+			return (int)(Math.max(micros, 0L));
+		}
+		
+		final int shift = 63 - Long.numberOfLeadingZeros(micros) - HISTOGRAM_SUB_BUCKET_BITS;
+		
+		return Math.min(64 + (shift - 1) * 32 + (int)((micros >> shift) - 32L), HISTOGRAM_BUCKET_COUNT - 1);
+	}
+	
+	private static long doToUpperBoundMicros(final int bucket) {
+		if(bucket < 64) {
+			return bucket + 1L;
+		}
+		
+		final int shift = (bucket - 64) / 32 + 1;
+		
+		return ((bucket - 64) % 32 + 32L + 1L) << shift;
+	}
 }
\ No newline at end of file
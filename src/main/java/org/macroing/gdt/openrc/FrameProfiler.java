@@ -0,0 +1,251 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.macroing.gdt.openrc.util.Ranges;
+
+/**
+ * A {@code FrameProfiler} records the time spent in each stage of the render loop, for the last {@code capacity} frames.
+ * <p>
+ * The timings are stored in a ring buffer with one row per frame and one column per stage. The method {@link #record(int, long)} is meant to be called by the render loop for each stage, followed by {@link #endFrame()}. All other methods may be called by any thread.
+ * <p>
+ * The stages {@code STAGE_KERNEL_CONVERSION} and {@code STAGE_KERNEL_EXECUTION} are the conversion and execution times reported by Aparapi itself, which only have a resolution of milliseconds. The conversion of the bytecode to
+ * OpenCL is only recorded for the frame in which it happened.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class FrameProfiler {
+	public static final int STAGE_COUNT = 10;
+	public static final int STAGE_CULLING = 1;
+	public static final int STAGE_EXECUTE = 3;
+	public static final int STAGE_FRAME = 9;
+	public static final int STAGE_GET_PICK = 4;
+	public static final int STAGE_GET_RGB = 5;
+	public static final int STAGE_KERNEL_CONVERSION = 8;
+	public static final int STAGE_KERNEL_EXECUTION = 7;
+	public static final int STAGE_PUT = 2;
+	public static final int STAGE_REPAINT = 6;
+	public static final int STAGE_UPDATE = 0;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final String[] STAGE_NAMES = {"update", "culling", "put", "execute", "get_pick", "get_rgb", "repaint", "kernel_execution", "kernel_conversion", "frame"};
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final AtomicLong frameCount = new AtomicLong();
+	private final AtomicLongArray samples;
+	private final int capacity;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public FrameProfiler() {
+		this(256);
+	}
+	
+	public FrameProfiler(final int capacity) {
+		this.capacity = Ranges.requireRange(capacity, 2, Integer.MAX_VALUE / STAGE_COUNT);
+		this.samples = new AtomicLongArray(capacity * STAGE_COUNT);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns the average time in nanoseconds spent in {@code stage}, over the frames currently in the ring buffer.
+	 * 
+	 * @param stage the stage
+	 * @return the average time in nanoseconds spent in {@code stage}, over the frames currently in the ring buffer
+	 */
+	public double getAverageNanos(final int stage) {
+		final long[] samples = getSamples(stage);
+		
+		long sum = 0L;
+		
+		for(final long sample : samples) {
+			sum += sample;
+		}
+		
+		return samples.length > 0 ? (double)(sum) / samples.length : 0.0D;
+	}
+	
+	/**
+	 * Returns the number of frames that have ended since this {@code FrameProfiler} was created.
+	 * 
+	 * @return the number of frames that have ended since this {@code FrameProfiler} was created
+	 */
+	public long getFrameCount() {
+		return this.frameCount.get();
+	}
+	
+	/**
+	 * Returns the maximum time in nanoseconds spent in {@code stage}, over the frames currently in the ring buffer.
+	 * 
+	 * @param stage the stage
+	 * @return the maximum time in nanoseconds spent in {@code stage}, over the frames currently in the ring buffer
+	 */
+	public long getMaximumNanos(final int stage) {
+		long maximum = 0L;
+		
+		for(final long sample : getSamples(stage)) {
+			maximum = Math.max(maximum, sample);
+		}
+		
+		return maximum;
+	}
+	
+	/**
+	 * Returns the times in nanoseconds spent in {@code stage}, for the frames currently in the ring buffer, from the oldest to the newest.
+	 * 
+	 * @param stage the stage
+	 * @return the times in nanoseconds spent in {@code stage}, for the frames currently in the ring buffer, from the oldest to the newest
+	 * @throws IllegalArgumentException thrown if, and only if, {@code stage} is less than {@code 0} or greater than or equal to {@code STAGE_COUNT}
+	 */
+	public long[] getSamples(final int stage) {
+		return doGetSamples(Ranges.requireRange(stage, 0, STAGE_COUNT - 1), this.frameCount.get());
+	}
+	
+	/**
+	 * Ends the current frame, such that subsequent calls to {@link #record(int, long)} are recorded for the next frame.
+	 */
+	public void endFrame() {
+		final long frameCount = this.frameCount.incrementAndGet();
+		
+		final int offset = (int)(frameCount % this.capacity) * STAGE_COUNT;
+		
+		for(int i = 0; i < STAGE_COUNT; i++) {
+			this.samples.set(offset + i, 0L);
+		}
+	}
+	
+	/**
+	 * Records {@code nanos} as the time spent in {@code stage} for the current frame.
+	 * <p>
+	 * If a stage is recorded more than once in a frame, the times are added together.
+	 * 
+	 * @param stage the stage
+	 * @param nanos the time in nanoseconds
+	 * @throws IllegalArgumentException thrown if, and only if, {@code stage} is less than {@code 0} or greater than or equal to {@code STAGE_COUNT}
+	 */
+	public void record(final int stage, final long nanos) {
+		this.samples.addAndGet((int)(this.frameCount.get() % this.capacity) * STAGE_COUNT + Ranges.requireRange(stage, 0, STAGE_COUNT - 1), nanos);
+	}
+	
+	/**
+	 * Writes the frames currently in the ring buffer to {@code file} as CSV, with one row per frame and one column per stage.
+	 * 
+	 * @param file the file to write to
+	 * @throws UncheckedIOException thrown if, and only if, an I/O-error occurs
+	 */
+	public void writeCSV(final File file) {
+		final long frameCount = this.frameCount.get();
+		
+		final long[][] samples = doGetSamples(frameCount);
+		
+		try(final PrintWriter printWriter = new PrintWriter(file, "UTF-8")) {
+			printWriter.print("frame");
+			
+			for(int i = 0; i < STAGE_COUNT; i++) {
+				printWriter.print("," + STAGE_NAMES[i] + "_ns");
+			}
+			
+			printWriter.println();
+			
+			for(int i = 0; i < samples[0].length; i++) {
+				printWriter.print(frameCount - samples[0].length + i);
+				
+				for(int j = 0; j < STAGE_COUNT; j++) {
+					printWriter.print("," + samples[j][i]);
+				}
+				
+				printWriter.println();
+			}
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Writes the frames currently in the ring buffer to {@code file} as JSON, with one object per frame and one property per stage.
+	 * 
+	 * @param file the file to write to
+	 * @throws UncheckedIOException thrown if, and only if, an I/O-error occurs
+	 */
+	public void writeJSON(final File file) {
+		final long frameCount = this.frameCount.get();
+		
+		final long[][] samples = doGetSamples(frameCount);
+		
+		try(final PrintWriter printWriter = new PrintWriter(file, "UTF-8")) {
+			printWriter.println("{\"frames\": [");
+			
+			for(int i = 0; i < samples[0].length; i++) {
+				printWriter.print("\t{\"frame\": " + (frameCount - samples[0].length + i));
+				
+				for(int j = 0; j < STAGE_COUNT; j++) {
+					printWriter.print(", \"" + STAGE_NAMES[j] + "_ns\": " + samples[j][i]);
+				}
+				
+				printWriter.println(i + 1 < samples[0].length ? "}," : "}");
+			}
+			
+			printWriter.println("]}");
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public static String getStageName(final int stage) {
+		return STAGE_NAMES[Ranges.requireRange(stage, 0, STAGE_COUNT - 1)];
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private long[] doGetSamples(final int stage, final long frameCount) {
+//		The row of the current frame is still being recorded, so it is excluded:
+		final int count = (int)(Math.min(frameCount, this.capacity - 1));
+		
+		final long[] samples = new long[count];
+		
+		for(int i = 0; i < count; i++) {
+			samples[i] = this.samples.get((int)((frameCount - count + i) % this.capacity) * STAGE_COUNT + stage);
+		}
+		
+		return samples;
+	}
+	
+	private long[][] doGetSamples(final long frameCount) {
+		final long[][] samples = new long[STAGE_COUNT][];
+		
+		for(int i = 0; i < STAGE_COUNT; i++) {
+			samples[i] = doGetSamples(i, frameCount);
+		}
+		
+		return samples;
+	}
+}
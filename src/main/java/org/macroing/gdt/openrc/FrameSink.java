@@ -0,0 +1,313 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.macroing.gdt.openrc.util.Images;
+import org.macroing.gdt.openrc.util.Ranges;
+
+/**
+ * A {@code FrameSink} writes frames to files in a directory, without blocking the thread that renders them.
+ * <p>
+ * A frame is copied into one of a fixed number of pooled buffers, and then encoded and written by a pool of encoder threads. The copy is the only work done by the calling thread. When all buffers are in use, {@link #offer(int[], long)} drops the frame, whereas {@link #put(int[], long)} waits for a buffer to be returned, so the encoders can never fall arbitrarily far behind.
+ * <p>
+ * The frames are written to the files {@code frame-00000.png}, {@code frame-00001.png} and so on, or with the extension {@code .rgb} for the format {@code FORMAT_RAW}. The format {@code FORMAT_RAW} consists of three bytes per pixel, red, green and blue, from the top left to the bottom right, which is what FFmpeg calls {@code rgb24}.
+ * <p>
+ * If a frame could not be written, the next call to {@code offer(int[], long)}, {@code put(int[], long)} or {@link #close()} throws an {@code UncheckedIOException}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class FrameSink implements AutoCloseable {
+	/**
+	 * The format where each frame is written as a PNG file.
+	 */
+	public static final int FORMAT_PNG = 0;
+	
+	/**
+	 * The format where each frame is written as raw 8-bit RGB.
+	 */
+	public static final int FORMAT_RAW = 1;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private final AtomicLong droppedFrameCount = new AtomicLong();
+	private final AtomicLong writtenFrameCount = new AtomicLong();
+	private final AtomicReference<IOException> exception = new AtomicReference<>();
+	private final BlockingQueue<int[]> buffers;
+	private final ExecutorService executorService;
+	private final File directory;
+	private final ThreadLocal<byte[]> bytes;
+	private final int bufferCount;
+	private final int format;
+	private final int height;
+	private final int width;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code FrameSink}.
+	 * <p>
+	 * If {@code directory} does not exist, it is created.
+	 * 
+	 * @param directory the directory to write the frames to
+	 * @param width the width of the frames
+	 * @param height the height of the frames
+	 * @param format the format, which is either {@code FORMAT_PNG} or {@code FORMAT_RAW}
+	 * @param encoderCount the number of threads that encode and write the frames
+	 * @param bufferCount the number of frames that can be waiting to be encoded or being encoded at the same time
+	 * @throws IllegalArgumentException thrown if, and only if, either {@code width}, {@code height}, {@code encoderCount} or {@code bufferCount} are less than {@code 1}, or {@code format} is invalid
+	 * @throws NullPointerException thrown if, and only if, {@code directory} is {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, {@code directory} could not be created
+	 */
+	public FrameSink(final File directory, final int width, final int height, final int format, final int encoderCount, final int bufferCount) {
+		this.directory = Objects.requireNonNull(directory, "directory == null");
+		this.width = Ranges.requireRange(width, 1, Integer.MAX_VALUE);
+		this.height = Ranges.requireRange(height, 1, Integer.MAX_VALUE);
+		this.format = Ranges.requireRange(format, FORMAT_PNG, FORMAT_RAW);
+		this.bufferCount = Ranges.requireRange(bufferCount, 1, Integer.MAX_VALUE);
+		this.buffers = new ArrayBlockingQueue<>(this.bufferCount);
+//		The bytes of the format FORMAT_RAW are converted into a scratch buffer per encoder thread, which is allocated the first time the thread needs it:
+		this.bytes = ThreadLocal.withInitial(() -> new byte[width * height * 3]);
+		this.executorService = Executors.newFixedThreadPool(Ranges.requireRange(encoderCount, 1, Integer.MAX_VALUE), runnable -> {
+			final Thread thread = new Thread(runnable, "OpenRC Frame Sink");
+			
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			this.executorService.shutdown();
+			
+			throw new UncheckedIOException(new IOException("Unable to create directory: " + directory));
+		}
+		
+		for(int i = 0; i < this.bufferCount; i++) {
+			this.buffers.add(new int[width * height]);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Offers the frame {@code rGB} to this {@code FrameSink}, without blocking.
+	 * <p>
+	 * Returns {@code true} if, and only if, the frame was accepted, {@code false} if it was dropped because all buffers are in use or this {@code FrameSink} was closed concurrently.
+	 * 
+	 * @param rGB the frame, with one RGB-value per pixel
+	 * @param frame the number of the frame, which is used in the file name
+	 * @return {@code true} if, and only if, the frame was accepted, {@code false} if it was dropped because all buffers are in use or this {@code FrameSink} was closed concurrently
+	 * @throws IllegalArgumentException thrown if, and only if, {@code rGB.length} is not equal to {@code width * height}
+	 * @throws IllegalStateException thrown if, and only if, this {@code FrameSink} is closed
+	 * @throws NullPointerException thrown if, and only if, {@code rGB} is {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, a previous frame could not be written
+	 */
+	public boolean offer(final int[] rGB, final long frame) {
+		doRequireOpen(rGB);
+		
+		final int[] buffer = this.buffers.poll();
+		
+		if(buffer == null || !doSubmit(rGB, buffer, frame)) {
+			this.droppedFrameCount.incrementAndGet();
+			
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the number of buffers that are currently in use, that is, the number of frames waiting to be encoded or being encoded.
+	 * 
+	 * @return the number of buffers that are currently in use
+	 */
+	public int getPendingFrameCount() {
+		return this.bufferCount - this.buffers.size();
+	}
+	
+	/**
+	 * Returns the number of frames dropped by {@link #offer(int[], long)} because all buffers were in use.
+	 * 
+	 * @return the number of frames dropped by {@code offer(int[], long)} because all buffers were in use
+	 */
+	public long getDroppedFrameCount() {
+		return this.droppedFrameCount.get();
+	}
+	
+	/**
+	 * Returns the number of frames that have been written.
+	 * 
+	 * @return the number of frames that have been written
+	 */
+	public long getWrittenFrameCount() {
+		return this.writtenFrameCount.get();
+	}
+	
+	/**
+	 * Closes this {@code FrameSink}, after all frames that have been accepted are written.
+	 * <p>
+	 * Calling this method more than once has no effect.
+	 * 
+	 * @throws UncheckedIOException thrown if, and only if, a frame could not be written
+	 */
+	@Override
+	public void close() {
+		if(this.isClosed.compareAndSet(false, true)) {
+			this.executorService.shutdown();
+			
+			try {
+				while(!this.executorService.awaitTermination(1L, TimeUnit.SECONDS)) {
+//					Wait for the remaining frames to be written.
+				}
+			} catch(final InterruptedException e) {
+				this.executorService.shutdownNow();
+				
+				Thread.currentThread().interrupt();
+			}
+			
+			doRequireNoException();
+		}
+	}
+	
+	/**
+	 * Puts the frame {@code rGB} into this {@code FrameSink}, waiting for a buffer to become available if all buffers are in use.
+	 * 
+	 * @param rGB the frame, with one RGB-value per pixel
+	 * @param frame the number of the frame, which is used in the file name
+	 * @throws IllegalArgumentException thrown if, and only if, {@code rGB.length} is not equal to {@code width * height}
+	 * @throws IllegalStateException thrown if, and only if, this {@code FrameSink} is closed or the current thread is interrupted while waiting
+	 * @throws NullPointerException thrown if, and only if, {@code rGB} is {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, a previous frame could not be written
+	 */
+	public void put(final int[] rGB, final long frame) {
+		doRequireOpen(rGB);
+		
+		try {
+			if(!doSubmit(rGB, this.buffers.take(), frame)) {
+				throw new IllegalStateException("FrameSink is closed");
+			}
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns the file extension used for {@code format}, such as {@code "png"}.
+	 * 
+	 * @param format the format, which is either {@code FORMAT_PNG} or {@code FORMAT_RAW}
+	 * @return the file extension used for {@code format}, such as {@code "png"}
+	 * @throws IllegalArgumentException thrown if, and only if, {@code format} is invalid
+	 */
+	public static String getExtension(final int format) {
+		return Ranges.requireRange(format, FORMAT_PNG, FORMAT_RAW) == FORMAT_PNG ? "png" : "rgb";
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private boolean doSubmit(final int[] rGB, final int[] buffer, final long frame) {
+		System.arraycopy(rGB, 0, buffer, 0, rGB.length);
+		
+		final File file = new File(this.directory, String.format("frame-%05d.%s", Long.valueOf(frame), getExtension(this.format)));
+		
+//		This FrameSink may have been closed since it was checked, in which case the frame is dropped and the buffer is returned to the pool:
+		try {
+			this.executorService.execute(() -> doEncode(buffer, file));
+			
+			return true;
+		} catch(final RejectedExecutionException e) {
+			this.buffers.add(buffer);
+			
+			return false;
+		}
+	}
+	
+	private void doEncode(final int[] buffer, final File file) {
+		try {
+			if(this.exception.get() == null) {
+				if(this.format == FORMAT_PNG) {
+					Images.writePNG(buffer, this.width, this.height, file);
+				} else {
+					doWriteRaw(buffer, this.bytes.get(), file);
+				}
+				
+				this.writtenFrameCount.incrementAndGet();
+			}
+		} catch(final IOException e) {
+			this.exception.compareAndSet(null, e);
+		} catch(final UncheckedIOException e) {
+			this.exception.compareAndSet(null, e.getCause());
+		} finally {
+			this.buffers.add(buffer);
+		}
+	}
+	
+	private void doRequireNoException() {
+		final IOException exception = this.exception.get();
+		
+		if(exception != null) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+	
+	private void doRequireOpen(final int[] rGB) {
+		Ranges.requireRange(rGB.length, this.width * this.height, this.width * this.height);
+		
+		if(this.isClosed.get()) {
+			throw new IllegalStateException("FrameSink is closed");
+		}
+		
+		doRequireNoException();
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static void doWriteRaw(final int[] buffer, final byte[] bytes, final File file) throws IOException {
+		for(int i = 0, j = 0; i < buffer.length; i++, j += 3) {
+			bytes[j + 0] = (byte)(buffer[i] >> 16);
+			bytes[j + 1] = (byte)(buffer[i] >>  8);
+			bytes[j + 2] = (byte)(buffer[i] >>  0);
+		}
+		
+		try(final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+			outputStream.write(bytes);
+		}
+	}
+}
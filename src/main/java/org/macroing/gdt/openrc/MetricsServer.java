@@ -0,0 +1,453 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntToDoubleFunction;
+
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Ranges;
+
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A {@code MetricsServer} serves metrics in the Prometheus text format over HTTP, at the path {@code /metrics} on the loopback address.
+ * <p>
+ * Each metric is read from a supplier when it is scraped, by a thread of the {@code MetricsServer} itself. The suppliers registered by {@link #addMetrics(Application)} only read state the render loop publishes through atomic variables, so a scrape never blocks the render loop and the render loop never waits for a scrape.
+ * <p>
+ * Metrics may be added before or after the {@code MetricsServer} has been started, by any thread.
+ * <p>
+ * The programs of this project start a {@code MetricsServer} with {@link #startFromSystemProperty(Consumer)}, so their metrics are served if, and only if, the system property {@code PROPERTY_PORT} is set.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class MetricsServer implements AutoCloseable {
+	/**
+	 * The path the metrics are served at.
+	 */
+	public static final String PATH = "/metrics";
+	
+	/**
+	 * The name of the system property with the port the metrics of a program are served at, which is {@code org.macroing.gdt.openrc.metrics.port}.
+	 * <p>
+	 * If it is set, the metrics are served in the Prometheus text format at {@code http://localhost:<port>/metrics}.
+	 */
+	public static final String PROPERTY_PORT = "org.macroing.gdt.openrc.metrics.port";
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final String TYPE_COUNTER = "counter";
+	private static final String TYPE_GAUGE = "gauge";
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final AtomicReference<ExecutorService> executorService = new AtomicReference<>();
+	private final AtomicReference<HttpServer> httpServer = new AtomicReference<>();
+	private final int port;
+	private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code MetricsServer} that listens on {@code port} once started.
+	 * <p>
+	 * If {@code port} is {@code 0}, an ephemeral port is chosen when the {@code MetricsServer} is started.
+	 * 
+	 * @param port the port to listen on
+	 * @throws IllegalArgumentException thrown if, and only if, {@code port} is less than {@code 0} or greater than {@code 65535}
+	 */
+	public MetricsServer(final int port) {
+		this.port = Ranges.requireRange(port, 0, 65535);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns {@code true} if, and only if, this {@code MetricsServer} is started, {@code false} otherwise.
+	 * 
+	 * @return {@code true} if, and only if, this {@code MetricsServer} is started, {@code false} otherwise
+	 */
+	public boolean isStarted() {
+		return this.httpServer.get() != null;
+	}
+	
+	/**
+	 * Returns the port this {@code MetricsServer} listens on.
+	 * <p>
+	 * If this {@code MetricsServer} was constructed with the port {@code 0} and is started, the ephemeral port that was chosen is returned.
+	 * 
+	 * @return the port this {@code MetricsServer} listens on
+	 */
+	public int getPort() {
+		final HttpServer httpServer = this.httpServer.get();
+		
+		return httpServer != null ? httpServer.getAddress().getPort() : this.port;
+	}
+	
+	/**
+	 * Returns the metrics in the Prometheus text format, as they are served at {@code PATH}.
+	 * 
+	 * @return the metrics in the Prometheus text format, as they are served at {@code PATH}
+	 */
+	public String scrape() {
+		final StringBuilder stringBuilder = new StringBuilder();
+		
+		for(final Metric metric : this.metrics) {
+			metric.write(stringBuilder);
+		}
+		
+		return stringBuilder.toString();
+	}
+	
+	/**
+	 * Adds a counter called {@code name}, whose value is retrieved from {@code supplier} when scraped.
+	 * 
+	 * @param name the name of the counter, which should end with {@code _total}
+	 * @param help a description of the counter
+	 * @param supplier the {@code DoubleSupplier} to retrieve the value from
+	 * @throws NullPointerException thrown if, and only if, either {@code name}, {@code help} or {@code supplier} are {@code null}
+	 */
+	public void addCounter(final String name, final String help, final DoubleSupplier supplier) {
+		Objects.requireNonNull(supplier, "supplier == null");
+		
+		this.metrics.add(new Metric(name, help, TYPE_COUNTER, null, new String[] {null}, index -> supplier.getAsDouble()));
+	}
+	
+	/**
+	 * Adds a counter called {@code name}, with one sample per label value in {@code labelValues}.
+	 * <p>
+	 * The value of the sample with the label value {@code labelValues[i]} is retrieved by calling {@code function.applyAsDouble(i)} when scraped.
+	 * 
+	 * @param name the name of the counter, which should end with {@code _total}
+	 * @param help a description of the counter
+	 * @param labelName the name of the label
+	 * @param labelValues the label values
+	 * @param function the {@code IntToDoubleFunction} to retrieve the values from
+	 * @throws NullPointerException thrown if, and only if, either {@code name}, {@code help}, {@code labelName}, {@code labelValues}, any of its elements or {@code function} are {@code null}
+	 */
+	public void addCounter(final String name, final String help, final String labelName, final String[] labelValues, final IntToDoubleFunction function) {
+		this.metrics.add(new Metric(name, help, TYPE_COUNTER, Objects.requireNonNull(labelName, "labelName == null"), doRequireNonNull(labelValues), function));
+	}
+	
+	/**
+	 * Adds a gauge called {@code name}, whose value is retrieved from {@code supplier} when scraped.
+	 * 
+	 * @param name the name of the gauge
+	 * @param help a description of the gauge
+	 * @param supplier the {@code DoubleSupplier} to retrieve the value from
+	 * @throws NullPointerException thrown if, and only if, either {@code name}, {@code help} or {@code supplier} are {@code null}
+	 */
+	public void addGauge(final String name, final String help, final DoubleSupplier supplier) {
+		Objects.requireNonNull(supplier, "supplier == null");
+		
+		this.metrics.add(new Metric(name, help, TYPE_GAUGE, null, new String[] {null}, index -> supplier.getAsDouble()));
+	}
+	
+	/**
+	 * Adds a gauge called {@code name}, with one sample per label value in {@code labelValues}.
+	 * <p>
+	 * The value of the sample with the label value {@code labelValues[i]} is retrieved by calling {@code function.applyAsDouble(i)} when scraped.
+	 * 
+	 * @param name the name of the gauge
+	 * @param help a description of the gauge
+	 * @param labelName the name of the label
+	 * @param labelValues the label values
+	 * @param function the {@code IntToDoubleFunction} to retrieve the values from
+	 * @throws NullPointerException thrown if, and only if, either {@code name}, {@code help}, {@code labelName}, {@code labelValues}, any of its elements or {@code function} are {@code null}
+	 */
+	public void addGauge(final String name, final String help, final String labelName, final String[] labelValues, final IntToDoubleFunction function) {
+		this.metrics.add(new Metric(name, help, TYPE_GAUGE, Objects.requireNonNull(labelName, "labelName == null"), doRequireNonNull(labelValues), function));
+	}
+	
+	/**
+	 * Adds the metrics of {@code application} to this {@code MetricsServer}.
+	 * <p>
+	 * The metrics added are the frames per second, the frame time percentiles and maximum, the average time spent in each stage of the frame, the number of frames, the counters of the {@code RayCasterKernel}, the execution mode, the number of captured frames waiting to be encoded and the size of each array of the {@code Scene} in bytes.
+	 * <p>
+	 * The counters are only incremented while counting is enabled in the {@code RayCasterKernel}.
+	 * 
+	 * @param application the {@code Application} to add the metrics of
+	 * @throws NullPointerException thrown if, and only if, {@code application} is {@code null}
+	 */
+	public void addMetrics(final Application application) {
+		final FPSCounter fPSCounter = application.getFPSCounter();
+		final FrameProfiler frameProfiler = application.getFrameProfiler();
+		
+		final Scene scene = application.getScene();
+		
+		final double[] percentiles = {50.0D, 95.0D, 99.0D};
+		
+		final String[] counterNames = {"intersection_tests", "pixels_shaded", "primary_rays", "shadow_rays", "texture_samples"};
+		final String[] executionModes = doGetExecutionModeNames();
+		final String[] quantiles = {"0.5", "0.95", "0.99"};
+		final String[] sceneArrays = {"lights", "materials", "shapes", "shape_indices", "texels", "textures"};
+		final String[] stageNames = new String[FrameProfiler.STAGE_COUNT];
+		
+		for(int i = 0; i < FrameProfiler.STAGE_COUNT; i++) {
+			stageNames[i] = FrameProfiler.getStageName(i);
+		}
+		
+		addGauge("openrc_fps", "The number of frames rendered in the last second.", () -> fPSCounter.getFPS());
+		addGauge("openrc_frame_time_seconds", "The frame time percentiles since the histogram was last reset.", "quantile", quantiles, index -> fPSCounter.getFrameTimePercentileNanos(percentiles[index]) / 1.0e9D);
+		addGauge("openrc_frame_time_max_seconds", "The maximum frame time since the histogram was last reset.", () -> fPSCounter.getFrameTimeMaximumNanos() / 1.0e9D);
+		addGauge("openrc_frame_time_count", "The number of frame times recorded since the histogram was last reset.", () -> fPSCounter.getFrameTimeCount());
+		addGauge("openrc_frame_stage_seconds", "The average time spent in each stage of the recent frames.", "stage", stageNames, index -> frameProfiler.getAverageNanos(index) / 1.0e9D);
+		addCounter("openrc_frames_total", "The number of frames rendered.", () -> frameProfiler.getFrameCount());
+		addCounter("openrc_kernel_events_total", "The number of rays, intersection tests, texture samples and shaded pixels, while counting is enabled.", "event", counterNames, index -> application.getCounterTotal(index));
+		addGauge("openrc_execution_mode", "The execution mode of the last frame, which is 1 for the current mode and 0 otherwise.", "mode", executionModes, index -> application.getExecutionMode().name().equals(executionModes[index]) ? 1.0D : 0.0D);
+		addGauge("openrc_frame_sink_pending_frames", "The number of captured frames waiting to be encoded or being encoded.", () -> doGetPendingFrameCount(application));
+		addGauge("openrc_scene_array_bytes", "The size of each array of the scene in bytes.", "array", sceneArrays, index -> doGetSceneArrayBytes(scene, index));
+	}
+	
+	/**
+	 * Stops this {@code MetricsServer}, if it is started.
+	 * <p>
+	 * Calling this method is equivalent to calling {@link #stop()}.
+	 */
+	@Override
+	public void close() {
+		stop();
+	}
+	
+	/**
+	 * Starts this {@code MetricsServer}, if it is not already started.
+	 * 
+	 * @throws UncheckedIOException thrown if, and only if, the port could not be bound
+	 */
+	public void start() {
+		synchronized(this.httpServer) {
+			if(this.httpServer.get() == null) {
+				final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+					final Thread thread = new Thread(runnable, "OpenRC Metrics");
+					
+					thread.setDaemon(true);
+					
+					return thread;
+				});
+				
+				try {
+					final HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 0);
+					httpServer.createContext(PATH, this::doHandle);
+					httpServer.setExecutor(executorService);
+					httpServer.start();
+					
+					this.executorService.set(executorService);
+					this.httpServer.set(httpServer);
+				} catch(final IOException e) {
+					executorService.shutdown();
+					
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Stops this {@code MetricsServer}, if it is started.
+	 */
+	public void stop() {
+		synchronized(this.httpServer) {
+			final HttpServer httpServer = this.httpServer.getAndSet(null);
+			
+			if(httpServer != null) {
+				httpServer.stop(0);
+				
+				this.executorService.getAndSet(null).shutdown();
+			}
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns a {@code MetricsServer} that serves the metrics added by {@code consumer} at the port given by the system property {@code PROPERTY_PORT}.
+	 * <p>
+	 * If the system property is set, a new {@code MetricsServer} is created, {@code consumer} is called to add its metrics, it is started and its URL is printed to standard output. Otherwise a {@code MetricsServer} that is not
+	 * started is returned, so the returned {@code MetricsServer} can always be closed, such as by a try-with-resources statement.
+	 * 
+	 * @param consumer the {@code Consumer} that adds the metrics to the {@code MetricsServer}
+	 * @return a {@code MetricsServer} that serves the metrics added by {@code consumer} at the port given by the system property {@code PROPERTY_PORT}
+	 * @throws IllegalArgumentException thrown if, and only if, the port is less than {@code 0} or greater than {@code 65535}
+	 * @throws NullPointerException thrown if, and only if, {@code consumer} is {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, the port could not be bound
+	 */
+	public static MetricsServer startFromSystemProperty(final Consumer<MetricsServer> consumer) {
+		Objects.requireNonNull(consumer, "consumer == null");
+		
+		final Integer port = Integer.getInteger(PROPERTY_PORT);
+		
+		final MetricsServer metricsServer = new MetricsServer(port != null ? port.intValue() : 0);
+		
+		if(port != null) {
+			consumer.accept(metricsServer);
+			
+			metricsServer.start();
+			
+			System.out.println("Serving metrics at http://localhost:" + metricsServer.getPort() + PATH);
+		}
+		
+		return metricsServer;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private void doHandle(final HttpExchange httpExchange) throws IOException {
+		try {
+			final String requestMethod = httpExchange.getRequestMethod();
+			
+			if(!requestMethod.equals("GET") && !requestMethod.equals("HEAD")) {
+				httpExchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				httpExchange.sendResponseHeaders(405, -1L);
+				
+				return;
+			}
+			
+			final byte[] bytes = scrape().getBytes(StandardCharsets.UTF_8);
+			
+			httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			
+			if(requestMethod.equals("HEAD")) {
+				httpExchange.sendResponseHeaders(200, -1L);
+			} else {
+				httpExchange.sendResponseHeaders(200, bytes.length);
+				
+				try(final OutputStream outputStream = httpExchange.getResponseBody()) {
+					outputStream.write(bytes);
+				}
+			}
+		} finally {
+			httpExchange.close();
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static double doGetPendingFrameCount(final Application application) {
+		final FrameSink frameSink = application.getFrameSink();
+		
+		return frameSink != null ? frameSink.getPendingFrameCount() : 0.0D;
+	}
+	
+	private static double doGetSceneArrayBytes(final Scene scene, final int index) {
+		switch(index) {
+			case 0:
+				return scene.getLightsAsArray().length * 4.0D;
+			case 1:
+				return scene.getMaterialsAsArray().length * 4.0D;
+			case 2:
+				return scene.getShapesAsArray().length * 4.0D;
+			case 3:
+				return scene.getShapeIndices().length * 4.0D;
+			case 4:
+				return scene.getTexelsAsArray().length * 4.0D;
+			default:
+				return scene.getTexturesAsArray().length * 4.0D;
+		}
+	}
+	
+	private static String doEscape(final String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	
+	private static String doFormat(final double value) {
+		if(Double.isNaN(value)) {
+			return "NaN";
+		} else if(Double.isInfinite(value)) {
+			return value > 0.0D ? "+Inf" : "-Inf";
+		} else if(value == Math.rint(value) && Math.abs(value) < 1.0e15D) {
+			return Long.toString((long)(value));
+		} else {
+			return Double.toString(value);
+		}
+	}
+	
+	private static String[] doGetExecutionModeNames() {
+		final EXECUTION_MODE[] executionModes = EXECUTION_MODE.values();
+		
+		final String[] executionModeNames = new String[executionModes.length];
+		
+		for(int i = 0; i < executionModes.length; i++) {
+			executionModeNames[i] = executionModes[i].name();
+		}
+		
+		return executionModeNames;
+	}
+	
+	private static String[] doRequireNonNull(final String[] labelValues) {
+		Objects.requireNonNull(labelValues, "labelValues == null");
+		
+		for(int i = 0; i < labelValues.length; i++) {
+			Objects.requireNonNull(labelValues[i], "labelValues[" + i + "] == null");
+		}
+		
+		return labelValues.clone();
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final class Metric {
+		private final IntToDoubleFunction function;
+		private final String help;
+		private final String labelName;
+		private final String name;
+		private final String type;
+		private final String[] labelValues;
+		
+		public Metric(final String name, final String help, final String type, final String labelName, final String[] labelValues, final IntToDoubleFunction function) {
+			this.name = Objects.requireNonNull(name, "name == null");
+			this.help = Objects.requireNonNull(help, "help == null");
+			this.type = type;
+			this.labelName = labelName;
+			this.labelValues = labelValues;
+			this.function = Objects.requireNonNull(function, "function == null");
+		}
+		
+		public void write(final StringBuilder stringBuilder) {
+			stringBuilder.append("# HELP ").append(this.name).append(' ').append(this.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+			stringBuilder.append("# TYPE ").append(this.name).append(' ').append(this.type).append('\n');
+			
+			for(int i = 0; i < this.labelValues.length; i++) {
+				stringBuilder.append(this.name);
+				
+				if(this.labelName != null) {
+					stringBuilder.append('{').append(this.labelName).append("=\"").append(doEscape(this.labelValues[i])).append("\"}");
+				}
+				
+				stringBuilder.append(' ').append(doFormat(this.function.applyAsDouble(i))).append('\n');
+			}
+		}
+	}
+}
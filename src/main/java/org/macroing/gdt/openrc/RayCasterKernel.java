@@ -18,10 +18,15 @@
  */
 package org.macroing.gdt.openrc;
 
+import java.util.Arrays;
+
 import org.macroing.gdt.openrc.geometry.Camera;
 import org.macroing.gdt.openrc.geometry.Intersection;
 import org.macroing.gdt.openrc.geometry.Scene;
 import org.macroing.gdt.openrc.geometry.Shape;
+import org.macroing.gdt.openrc.util.Ranges;
+
+import com.amd.aparapi.Range;
 
 /**
  * The values in the {@code float} array {@code rays} consists of the following:
@@ -38,6 +43,24 @@ import org.macroing.gdt.openrc.geometry.Shape;
  * @author J&#246;rgen Lundgren
  */
 public final class RayCasterKernel extends AbstractRayCasterKernel {
+	/**
+	 * The pass that adds the counters of the work-items in each work-group together.
+	 */
+	public static final int PASS_COUNTER_REDUCTION = 2;
+	
+	/**
+	 * The pass that post-processes the {@code pixels} HDR buffer into the {@code rGB} buffer.
+	 */
+	public static final int PASS_POST_PROCESSING = 1;
+	
+	/**
+	 * The pass that renders into the {@code pixels} HDR buffer.
+	 */
+	public static final int PASS_RENDERING = 0;
+	
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
 	private final float[] camera;
 	private final float[] intersections;
 	private final float[] lights;
@@ -46,13 +69,36 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 	private final float[] pixels;
 	private final float[] rays;
 	private final float[] shapes;
+	private final float[] texels;
 	private final int height;
 	private final int lightsLength;
 	private final int shapeIndicesLength;
 	private final int width;
+	private final int[] gammaCorrectionTable;
 	private final int[] rGB;
 	private final int[] shapeIndices;
 	private final int[] textures;
+	private final long[] counterTotals;
+	private float bloomIntensity;
+	private float bloomThreshold;
+	private float exposure;
+	private float viewOffsetX;
+	private float viewOffsetY;
+	private float[] accumulatedPixels;
+	private int counterWorkGroupSize;
+	private int counterWorkItemCount;
+	private int gammaCorrectionMode;
+	private int isCounting;
+	private int isPostProcessing;
+	private int pass;
+	private int postProcessingScale;
+	private int sampleCount;
+	private int sampleIndex;
+	private int toneMappingOperator;
+	private int[] counters;
+	private int[] workGroupCounters;
+	private Range counterReductionRange;
+	private Range postProcessingRange;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
@@ -65,10 +111,33 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 		this.pixels = new float[(Constants.WIDTH / Constants.WIDTH_SCALE) * (Constants.HEIGHT / Constants.HEIGHT_SCALE) * Constants.SIZE_OF_PIXEL];
 		this.rays = new float[(Constants.WIDTH / Constants.WIDTH_SCALE) * (Constants.HEIGHT / Constants.HEIGHT_SCALE) * Constants.SIZE_OF_RAY];
 		this.shapes = scene.getShapesAsArray();
+		this.texels = scene.getTexelsAsArray();
 		this.height = Constants.HEIGHT / Constants.HEIGHT_SCALE;
 		this.lightsLength = this.lights.length;
-		this.shapeIndicesLength = scene.getShapeCount();
+		this.shapeIndicesLength = scene.getShapeIndices().length;
 		this.width = Constants.WIDTH / Constants.WIDTH_SCALE;
+		this.bloomIntensity = 0.0F;
+		this.bloomThreshold = 1.0F;
+		this.exposure = 1.0F;
+		this.viewOffsetX = 0.0F;
+		this.viewOffsetY = 0.0F;
+		this.accumulatedPixels = new float[1];
+		this.counterWorkGroupSize = 1;
+		this.counterWorkItemCount = 0;
+		this.gammaCorrectionMode = GAMMA_CORRECTION_MODE_LOOKUP_TABLE;
+		this.isCounting = 0;
+		this.isPostProcessing = 0;
+		this.pass = PASS_RENDERING;
+		this.postProcessingScale = 1;
+		this.sampleCount = 1;
+		this.sampleIndex = 0;
+		this.toneMappingOperator = TONE_MAPPING_OPERATOR_MAXIMUM_COMPONENT;
+		this.counterReductionRange = Range.create(1);
+		this.postProcessingRange = Range.create(this.width * this.height);
+		this.gammaCorrectionTable = createGammaCorrectionTable();
+		this.counters = new int[COUNTER_COUNT];
+		this.counterTotals = new long[COUNTER_COUNT];
+		this.workGroupCounters = new int[COUNTER_COUNT];
 		this.rGB = rGB;
 		this.shapeIndices = scene.getShapeIndices();
 		this.textures = scene.getTexturesAsArray();
@@ -77,6 +146,8 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 		setExplicit(true);
 		
 //		Tell the API to fetch the below arrays and their values before executing this Kernel instance (they will be transferred to the GPU):
+		put(this.accumulatedPixels);
+		put(this.counters);
 		put(this.intersections);
 		put(this.lights);
 		put(this.materials);
@@ -84,12 +155,130 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 		put(this.pixels);
 		put(this.rays);
 		put(this.shapes);
+		put(this.texels);
+		put(this.gammaCorrectionTable);
 		put(this.rGB);
 		put(this.textures);
+		put(this.workGroupCounters);
 	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	/**
+	 * Returns {@code true} if, and only if, the counters are fetched after each execution of the rendering pass.
+	 * 
+	 * @return {@code true} if, and only if, the counters are fetched after each execution of the rendering pass
+	 */
+	public boolean isCounting() {
+		return this.isCounting != 0;
+	}
+	
+	/**
+	 * Returns {@code true} if, and only if, the post-processing pass is enabled.
+	 * 
+	 * @return {@code true} if, and only if, the post-processing pass is enabled
+	 */
+	public boolean isPostProcessing() {
+		return this.isPostProcessing != 0;
+	}
+	
+	/**
+	 * Returns the intensity of the bloom, where {@code 0.0F} means no bloom.
+	 * 
+	 * @return the intensity of the bloom
+	 */
+	public float getBloomIntensity() {
+		return this.bloomIntensity;
+	}
+	
+	/**
+	 * Returns the exposure the HDR pixels are multiplied with before Tone Mapping.
+	 * 
+	 * @return the exposure the HDR pixels are multiplied with before Tone Mapping
+	 */
+	public float getExposure() {
+		return this.exposure;
+	}
+	
+	/**
+	 * Returns the offset along the X-axis, in pixels, of the view rendered.
+	 * 
+	 * @return the offset along the X-axis, in pixels, of the view rendered
+	 */
+	public float getViewOffsetX() {
+		return this.viewOffsetX;
+	}
+	
+	/**
+	 * Returns the offset along the Y-axis, in pixels, of the view rendered.
+	 * 
+	 * @return the offset along the Y-axis, in pixels, of the view rendered
+	 */
+	public float getViewOffsetY() {
+		return this.viewOffsetY;
+	}
+	
+	/**
+	 * Returns the gamma correction mode currently used.
+	 * <p>
+	 * The gamma correction mode is one of {@code GAMMA_CORRECTION_MODE_APPROXIMATION}, {@code GAMMA_CORRECTION_MODE_EXACT} or {@code GAMMA_CORRECTION_MODE_LOOKUP_TABLE}.
+	 * 
+	 * @return the gamma correction mode currently used
+	 */
+	public int getGammaCorrectionMode() {
+		return this.gammaCorrectionMode;
+	}
+	
+	/**
+	 * Returns the Tone Mapping operator used by the post-processing pass.
+	 * <p>
+	 * The Tone Mapping operator is one of {@code TONE_MAPPING_OPERATOR_ACES}, {@code TONE_MAPPING_OPERATOR_MAXIMUM_COMPONENT} or {@code TONE_MAPPING_OPERATOR_REINHARD}.
+	 * 
+	 * @return the Tone Mapping operator used by the post-processing pass
+	 */
+	public int getToneMappingOperator() {
+		return this.toneMappingOperator;
+	}
+	
+	/**
+	 * Returns the value of {@code counter} for the last execution of the rendering pass, or {@code 0} if counting is disabled.
+	 * <p>
+	 * The counter is one of {@code COUNTER_INTERSECTION_TESTS}, {@code COUNTER_PIXELS_SHADED}, {@code COUNTER_PRIMARY_RAYS}, {@code COUNTER_SHADOW_RAYS} or {@code COUNTER_TEXTURE_SAMPLES}.
+	 * 
+	 * @param counter the counter
+	 * @return the value of {@code counter} for the last execution of the rendering pass, or {@code 0} if counting is disabled
+	 * @throws IllegalArgumentException thrown if, and only if, {@code counter} is less than {@code 0} or greater than or equal to {@code COUNTER_COUNT}
+	 */
+	public long getCounter(final int counter) {
+		return this.counterTotals[Ranges.requireRange(counter, 0, COUNTER_COUNT - 1)];
+	}
+	
+	/**
+	 * Executes the rendering pass over {@code range} and, if enabled, the post-processing pass.
+	 * <p>
+	 * If counting is enabled, the counters of the work-items are added together per work-group by an additional pass. The counters of the work-groups are then fetched and added together, such that they are available from
+	 * {@link #getCounter(int)}.
+	 * <p>
+	 * Both passes are executed by this {@code Kernel} instance, so the {@code pixels} HDR buffer never leaves the GPU in between. With more than one sample per pixel, the post-processing pass is only executed after the last sample.
+	 * 
+	 * @param range the {@code Range} to render
+	 */
+	public void executeAndPostProcess(final Range range) {
+		this.pass = PASS_RENDERING;
+		
+		execute(range);
+		
+		if(this.isCounting != 0) {
+			doReduceCounters(range);
+		}
+		
+		if(this.isPostProcessing != 0 && this.sampleIndex == this.sampleCount - 1) {
+			this.pass = PASS_POST_PROCESSING;
+			
+			execute(this.postProcessingRange);
+		}
+	}
+	
 	/**
 	 * This is what the {@code Kernel} executes on the GPU (or in the CPU).
 	 */
@@ -97,6 +286,29 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 	public void run() {
 //		Initialize index and offset values:
 		final int index = getGlobalId();
+		
+		if(this.pass == PASS_COUNTER_REDUCTION) {
+//			Add the counters of the work-items in the work-group that index refers to together:
+			reduceCounters(this.counters, this.workGroupCounters, index, this.counterWorkGroupSize, this.counterWorkItemCount);
+			
+			return;
+		}
+		
+		if(this.pass == PASS_POST_PROCESSING) {
+//			Perform the post-processing of the block of pixels that index refers to:
+			postProcessPixels(this.bloomIntensity, this.bloomThreshold, this.exposure, this.pixels, index, this.gammaCorrectionMode, this.height, this.postProcessingScale, this.toneMappingOperator, this.width, this.gammaCorrectionTable, this.rGB);
+			
+			return;
+		}
+		
+//		Initialize the counting state:
+		final boolean isCounting = this.isCounting != 0;
+		
+//		Clear the counters of this work-item:
+		if(isCounting) {
+			clearCounters(this.counters);
+		}
+		
 		final int pickIndex = this.height / 2 * this.width + this.width / 2;
 		final int pixelOffset = index * Constants.SIZE_OF_PIXEL;
 		final int rayOffset = index * Constants.SIZE_OF_RAY;
@@ -124,8 +336,8 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 		final float sampleY = 0.5F;
 		
 //		Initialize the U- and V-coordinates:
-		final float u = (index % this.width - this.width * 0.5F + sampleX) * zoomReciprocal;
-		final float v = (index / this.width - this.height * 0.5F + sampleY) * zoomReciprocal;
+		final float u = (index % this.width - this.width * 0.5F + sampleX + this.viewOffsetX) * zoomReciprocal;
+		final float v = (index / this.width - this.height * 0.5F + sampleY + this.viewOffsetY) * zoomReciprocal;
 		
 //		Update the direction vector of the ray to fire:
 		this.rays[rayOffset + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0 + 0] = this.camera[Camera.ABSOLUTE_OFFSET_OF_ORTHONORMAL_BASIS_U + 0] * u + this.camera[Camera.ABSOLUTE_OFFSET_OF_ORTHONORMAL_BASIS_V + 0] * v - this.camera[Camera.ABSOLUTE_OFFSET_OF_ORTHONORMAL_BASIS_W + 0] * this.camera[Camera.ABSOLUTE_OFFSET_OF_VIEW_PLANE_DISTANCE];
@@ -136,7 +348,9 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 		normalize(this.rays, rayOffset + Constants.RELATIVE_OFFSET_OF_RAY_DIRECTION_0);
 		
 //		Calculate the distance to the closest shape, if any:
-		final float distance = findIntersection(true, isUpdatingPick, this.intersections, this.pick, this.rays, this.shapes, this.shapeIndicesLength, this.shapeIndices);
+		final float distance = findIntersection(isCounting, true, isUpdatingPick, this.intersections, this.pick, this.rays, this.shapes, this.shapeIndicesLength, this.counters, this.shapeIndices);
+		
+		incrementCounter(isCounting, this.counters, COUNTER_PRIMARY_RAYS, 1);
 		
 		if(distance > 0.0F && distance < Constants.MAXIMUM_DISTANCE) {
 //			Initialize needed offset values:
@@ -144,8 +358,13 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 			final int shapeOffset = (int)(this.intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_SHAPE_OFFSET]);
 			final int materialOffset = (int)(this.shapes[shapeOffset + Shape.RELATIVE_OFFSET_OF_MATERIAL_OFFSET]);
 			
+//			Update the pixel footprint, which is the approximate width of this pixel at the surface intersection point (used when selecting mip map levels):
+			this.intersections[intersectionOffset + Intersection.RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] = distance * zoomReciprocal / this.camera[Camera.ABSOLUTE_OFFSET_OF_VIEW_PLANE_DISTANCE];
+			
 //			Calculate the ambient and direct light:
-			attemptToAddDirectLight(isUpdatingPick, this.intersections, this.lights, this.materials, this.pick, this.pixels, this.rays, this.shapes, intersectionOffset, this.lightsLength, materialOffset, pixelOffset, rayOffset, this.shapeIndicesLength, shapeOffset, this.shapeIndices, this.textures);
+			attemptToAddDirectLight(isCounting, isUpdatingPick, this.intersections, this.lights, this.materials, this.pick, this.pixels, this.rays, this.shapes, this.texels, intersectionOffset, this.lightsLength, materialOffset, pixelOffset, rayOffset, this.shapeIndicesLength, shapeOffset, this.counters, this.shapeIndices, this.textures);
+			
+			incrementCounter(isCounting, this.counters, COUNTER_PIXELS_SHADED, 1);
 		}
 		
 		if(isUpdatingPick) {
@@ -158,7 +377,170 @@ public final class RayCasterKernel extends AbstractRayCasterKernel {
 //			this.pixels[pixelOffset + 2] = 1.0F;
 		}
 		
-//		Update the pixel by performing gamma correction, tone mapping and scaling:
-		updatePixel(samples, this.pixels, pixelOffset, index, this.rGB);
+//		Add the radiance of this sample to the radiance of the previous samples, and replace the radiance of the pixel with their average after the last sample:
+		if(this.sampleCount > 1) {
+			accumulatePixel(this.accumulatedPixels, this.pixels, pixelOffset, this.sampleCount, this.sampleIndex);
+		}
+		
+//		Update the pixel by performing gamma correction, tone mapping and scaling, unless that is left to the post-processing pass or more samples remain:
+		if(this.isPostProcessing == 0 && this.sampleIndex == this.sampleCount - 1) {
+			updatePixel(samples, this.pixels, this.gammaCorrectionMode, pixelOffset, index, this.gammaCorrectionTable, this.rGB);
+		}
+	}
+	
+	/**
+	 * Sets the intensity of the bloom, where {@code 0.0F} means no bloom.
+	 * 
+	 * @param bloomIntensity the intensity of the bloom
+	 */
+	public void setBloomIntensity(final float bloomIntensity) {
+		this.bloomIntensity = Math.max(bloomIntensity, 0.0F);
+	}
+	
+	/**
+	 * Sets the brightness above which pixels contribute to the bloom.
+	 * 
+	 * @param bloomThreshold the brightness above which pixels contribute to the bloom
+	 */
+	public void setBloomThreshold(final float bloomThreshold) {
+		this.bloomThreshold = Math.max(bloomThreshold, 0.0F);
+	}
+	
+	/**
+	 * Enables or disables counting.
+	 * <p>
+	 * The counters are only updated by the rendering pass while counting is enabled. Each work-item increments its own counters, so the buffer holding them is allocated when counting is enabled the first time. Counting also enables
+	 * the additional pass and the transfer required to make them available from {@link #getCounter(int)}.
+	 * 
+	 * @param isCounting {@code true} if, and only if, counting should be enabled
+	 */
+	public void setCounting(final boolean isCounting) {
+		this.isCounting = isCounting ? 1 : 0;
+		
+		if(isCounting && this.counters.length == COUNTER_COUNT) {
+			this.counters = new int[(Constants.WIDTH / Constants.WIDTH_SCALE) * (Constants.HEIGHT / Constants.HEIGHT_SCALE) * COUNTER_COUNT];
+			
+			put(this.counters);
+		}
+		
+		if(!isCounting) {
+			Arrays.fill(this.counterTotals, 0L);
+		}
+	}
+	
+	/**
+	 * Sets the exposure the HDR pixels are multiplied with before Tone Mapping.
+	 * 
+	 * @param exposure the exposure the HDR pixels are multiplied with before Tone Mapping
+	 */
+	public void setExposure(final float exposure) {
+		this.exposure = Math.max(exposure, 0.0F);
+	}
+	
+	/**
+	 * Sets the gamma correction mode to use.
+	 * <p>
+	 * The lookup table used by {@code GAMMA_CORRECTION_MODE_LOOKUP_TABLE} is only transferred to the GPU once, so switching modes is cheap.
+	 * 
+	 * @param gammaCorrectionMode the gamma correction mode to use
+	 * @throws IllegalArgumentException thrown if, and only if, {@code gammaCorrectionMode} is less than {@code GAMMA_CORRECTION_MODE_EXACT} or greater than {@code GAMMA_CORRECTION_MODE_APPROXIMATION}
+	 */
+	public void setGammaCorrectionMode(final int gammaCorrectionMode) {
+		this.gammaCorrectionMode = Ranges.requireRange(gammaCorrectionMode, GAMMA_CORRECTION_MODE_EXACT, GAMMA_CORRECTION_MODE_APPROXIMATION);
+	}
+	
+	/**
+	 * Enables or disables the post-processing pass.
+	 * <p>
+	 * If disabled, the rendering pass performs the fixed maximum component Tone Mapping and gamma correction itself, and no second pass is executed.
+	 * 
+	 * @param isPostProcessing {@code true} if, and only if, the post-processing pass should be enabled
+	 */
+	public void setPostProcessing(final boolean isPostProcessing) {
+		this.isPostProcessing = isPostProcessing ? 1 : 0;
+	}
+	
+	/**
+	 * Sets the scale at which the post-processing pass is executed.
+	 * <p>
+	 * With a scale of {@code n}, one work-item post-processes a block of {@code n x n} pixels and the bloom is only gathered once per block. The Tone Mapping and gamma correction are still performed for every pixel.
+	 * 
+	 * @param postProcessingScale the scale at which the post-processing pass is executed
+	 * @throws IllegalArgumentException thrown if, and only if, {@code postProcessingScale} is less than {@code 1} or greater than {@code 16}
+	 */
+	public void setPostProcessingScale(final int postProcessingScale) {
+		this.postProcessingScale = Ranges.requireRange(postProcessingScale, 1, 16);
+		this.postProcessingRange = Range.create(((this.width + postProcessingScale - 1) / postProcessingScale) * ((this.height + postProcessingScale - 1) / postProcessingScale));
+	}
+	
+	/**
+	 * Sets the sample to render next, of {@code sampleCount} samples per pixel.
+	 * <p>
+	 * With more than one sample per pixel, the HDR radiance of the samples is accumulated by the rendering pass, and the average is Tone Mapped and gamma corrected once, when the last sample is rendered. The {@code rGB} buffer
+	 * is only updated by the last sample. The sub-pixel offset of each sample is set using {@link #setViewOffset(float, float)}.
+	 * 
+	 * @param sampleIndex the index of the sample to render next
+	 * @param sampleCount the number of samples per pixel
+	 * @throws IllegalArgumentException thrown if, and only if, {@code sampleCount} is less than {@code 1}, or {@code sampleIndex} is less than {@code 0} or greater than or equal to {@code sampleCount}
+	 */
+	public void setSample(final int sampleIndex, final int sampleCount) {
+		this.sampleCount = Ranges.requireRange(sampleCount, 1, Integer.MAX_VALUE);
+		this.sampleIndex = Ranges.requireRange(sampleIndex, 0, sampleCount - 1);
+		
+		if(sampleCount > 1 && this.accumulatedPixels.length != this.pixels.length) {
+			this.accumulatedPixels = new float[this.pixels.length];
+			
+			put(this.accumulatedPixels);
+		}
+	}
+	
+	/**
+	 * Sets the Tone Mapping operator used by the post-processing pass.
+	 * 
+	 * @param toneMappingOperator the Tone Mapping operator used by the post-processing pass
+	 * @throws IllegalArgumentException thrown if, and only if, {@code toneMappingOperator} is less than {@code TONE_MAPPING_OPERATOR_MAXIMUM_COMPONENT} or greater than {@code TONE_MAPPING_OPERATOR_ACES}
+	 */
+	public void setToneMappingOperator(final int toneMappingOperator) {
+		this.toneMappingOperator = Ranges.requireRange(toneMappingOperator, TONE_MAPPING_OPERATOR_MAXIMUM_COMPONENT, TONE_MAPPING_OPERATOR_ACES);
+	}
+	
+	/**
+	 * Sets the offset, in pixels, of the view rendered.
+	 * <p>
+	 * The view is shifted as if the image plane was larger than {@code width x height} pixels and only a part of it was rendered. This is used to render an image that is larger than {@code width x height} pixels, one tile at a time. The offset {@code (0, 0)} renders the ordinary view.
+	 * 
+	 * @param viewOffsetX the offset along the X-axis, in pixels
+	 * @param viewOffsetY the offset along the Y-axis, in pixels
+	 */
+	public void setViewOffset(final float viewOffsetX, final float viewOffsetY) {
+		this.viewOffsetX = viewOffsetX;
+		this.viewOffsetY = viewOffsetY;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private void doReduceCounters(final Range range) {
+		final int workGroupCount = range.getNumGroups(0);
+		
+		if(this.workGroupCounters.length != workGroupCount * COUNTER_COUNT) {
+			this.workGroupCounters = new int[workGroupCount * COUNTER_COUNT];
+			this.counterReductionRange = Range.create(workGroupCount);
+			
+			put(this.workGroupCounters);
+		}
+		
+		this.counterWorkGroupSize = range.getLocalSize(0);
+		this.counterWorkItemCount = range.getGlobalSize(0);
+		this.pass = PASS_COUNTER_REDUCTION;
+		
+		execute(this.counterReductionRange);
+		
+		get(this.workGroupCounters);
+		
+		Arrays.fill(this.counterTotals, 0L);
+		
+		for(int i = 0; i < this.workGroupCounters.length; i++) {
+			this.counterTotals[i % COUNTER_COUNT] += this.workGroupCounters[i];
+		}
 	}
 }
\ No newline at end of file
@@ -21,9 +21,16 @@ package org.macroing.gdt.openrc;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.event.KeyEvent;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.macroing.gdt.openrc.geometry.Camera;
 import org.macroing.gdt.openrc.geometry.Scene;
@@ -50,23 +57,37 @@ import com.amd.aparapi.Kernel.EXECUTION_MODE;
  * <li>Lights such as point lights.</li>
  * <li>Textures such as solid- and decal textures.</li>
  * <li>Texture mapping such as spherical- and planar triangle texture mapping.</li>
+ * <li>Mip mapping, where the mip map level is selected based on the distance to the surface.</li>
+ * <li>Bilinear texture filtering, using a precomputed float representation of the texels.</li>
+ * <li>Block compressed textures, where each block of 4x4 texels is compressed into two ints and decoded in the kernel.</li>
  * <li>A simple camera for walking around in the scene.</li>
  * <li>Simple materials.</li>
  * <li>Occluding shapes create shadows.</li>
  * <li>Simple collision detection.</li>
- * <li>Simple tone mapping and gamma correction.</li>
+ * <li>Simple tone mapping and gamma correction, either exact, by a precomputed lookup table or by a polynomial approximation.</li>
+ * <li>An optional post-processing pass with exposure, bloom and the Tone Mapping operators maximum component, Reinhard and ACES.</li>
+ * <li>Java Flight Recorder events for frames, kernel transfers, kernel executions, scene loads and texture decodes.</li>
  * </ul>
  * <p>
  * Supported Controls:
  * <ul>
  * <li>A - Move left.</li>
+ * <li>C - Toggle the counting of rays, intersection tests, texture samples and shaded pixels, and the display of the rays per second.</li>
  * <li>D - Move right.</li>
  * <li>E - Display the current execution mode to standard output.</li>
  * <li>ESC - Exit the program. You may have to press a few times if you're using the execution mode JTP (Java Thread Pool), as it's pretty unresponsive.</li>
  * <li>F - Fire invisible bullets to make the shapes bleed.</li>
+ * <li>G - Cycle between the gamma correction modes exact, lookup table and approximation.</li>
+ * <li>H - Display the frame time percentiles to standard output and reset them.</li>
+ * <li>I - Toggle the display of the average and maximum time spent in each stage of the frame.</li>
+ * <li>K - Save the recent per-stage frame times to profile.csv and profile.json.</li>
  * <li>MOUSE - Look around.</li>
+ * <li>O - Cycle between the Tone Mapping operators maximum component, Reinhard and ACES used by the post-processing pass.</li>
+ * <li>P - Toggle the post-processing pass, with bloom, on and off.</li>
+ * <li>R - Toggle the recording of the camera path to camera-path.dat, together with the scene to scene.dat, for rendering with the BatchRenderer.</li>
  * <li>S - Move backward.</li>
  * <li>T - Toggle between the two execution modes GPU and JTP (Java Thread Pool).</li>
+ * <li>V - Toggle the capture of every frame to the directory capture, as PNG files or, if the system property org.macroing.gdt.openrc.capture.format is RAW, as raw RGB files.</li>
  * <li>W - Move forward.</li>
  * </ul>
  * <p>
@@ -76,10 +97,21 @@ import com.amd.aparapi.Kernel.EXECUTION_MODE;
  * @author J&#246;rgen Lundgren
  */
 public final class TestGame extends Application {
+	private final AtomicBoolean isDisplayingFrameProfile = new AtomicBoolean();
 	private final AtomicBoolean isPrintingExecutionMode = new AtomicBoolean();
+	private final AtomicBoolean isPrintingFrameTimes = new AtomicBoolean();
 	private final AtomicBoolean isRunning = new AtomicBoolean();
+	private final AtomicBoolean isSavingFrameProfile = new AtomicBoolean();
 	private final AtomicBoolean isTerminationRequested = new AtomicBoolean();
+	private final AtomicBoolean isTogglingCameraPathRecording = new AtomicBoolean();
+	private final AtomicBoolean isTogglingCapture = new AtomicBoolean();
+	private final AtomicBoolean isTogglingCounting = new AtomicBoolean();
 	private final AtomicBoolean isTogglingExecutionMode = new AtomicBoolean();
+	private final AtomicBoolean isTogglingFrameProfile = new AtomicBoolean();
+	private final AtomicBoolean isTogglingGammaCorrectionMode = new AtomicBoolean();
+	private final AtomicBoolean isTogglingPostProcessing = new AtomicBoolean();
+	private final AtomicBoolean isTogglingToneMappingOperator = new AtomicBoolean();
+	private final AtomicReference<DataOutputStream> cameraPath = new AtomicReference<>();
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
@@ -96,23 +128,54 @@ public final class TestGame extends Application {
 		final FPSCounter fPSCounter = getFPSCounter();
 		
 		final String fPS = Long.toString(fPSCounter.getFPS());
+		final String frameTimeAverage = String.format("%.1f", Double.valueOf(fPSCounter.getFrameTimeAverageNanos() / 1000000.0D));
+		final String frameTimeP99 = String.format("%.1f", Double.valueOf(fPSCounter.getFrameTimePercentileNanos(99.0D) / 1000000.0D));
+		final String frameTimeMaximum = String.format("%.1f", Double.valueOf(fPSCounter.getFrameTimeMaximumNanos() / 1000000.0D));
 		final String x = Float.toString(camera.getEyeX());
 		final String y = Float.toString(camera.getEyeY());
 		final String z = Float.toString(camera.getEyeZ());
-		final String string = String.format("FPS: %s    Location: %s, %s, %s", fPS, x, y, z);
+		final String rays = getKernel().isCounting() ? String.format("    Rays/s: %.2fM", Double.valueOf(getRaysPerSecond() / 1000000.0D)) : "";
+		final String string = String.format("FPS: %s    Frame Time (ms): Average %s, P99 %s, Max %s    Location: %s, %s, %s%s", fPS, frameTimeAverage, frameTimeP99, frameTimeMaximum, x, y, z, rays);
 		
 		graphics2D.setColor(Color.BLACK);
 		graphics2D.fillRect(10, 10, graphics2D.getFontMetrics().stringWidth(string) + 20, graphics2D.getFontMetrics().getHeight() + 20);
 		graphics2D.setColor(Color.WHITE);
 		graphics2D.drawRect(10, 10, graphics2D.getFontMetrics().stringWidth(string) + 20, graphics2D.getFontMetrics().getHeight() + 20);
 		graphics2D.drawString(string, 20, 30);
+		
+		if(this.isDisplayingFrameProfile.get()) {
+			final FrameProfiler frameProfiler = getFrameProfiler();
+			
+			final int lineHeight = graphics2D.getFontMetrics().getHeight();
+			
+			int maximumWidth = 0;
+			
+			final String[] strings = new String[FrameProfiler.STAGE_COUNT];
+			
+			for(int i = 0; i < strings.length; i++) {
+				strings[i] = String.format("%s: Average %.2f ms, Max %.2f ms", FrameProfiler.getStageName(i), Double.valueOf(frameProfiler.getAverageNanos(i) / 1000000.0D), Double.valueOf(frameProfiler.getMaximumNanos(i) / 1000000.0D));
+				
+				maximumWidth = Math.max(maximumWidth, graphics2D.getFontMetrics().stringWidth(strings[i]));
+			}
+			
+			final int y0 = 10 + lineHeight + 30;
+			
+			graphics2D.setColor(Color.BLACK);
+			graphics2D.fillRect(10, y0, maximumWidth + 20, lineHeight * strings.length + 20);
+			graphics2D.setColor(Color.WHITE);
+			graphics2D.drawRect(10, y0, maximumWidth + 20, lineHeight * strings.length + 20);
+			
+			for(int i = 0; i < strings.length; i++) {
+				graphics2D.drawString(strings[i], 20, y0 + 10 + lineHeight * (i + 1) - graphics2D.getFontMetrics().getDescent());
+			}
+		}
 	}
 	
 	@Override
 	public void update() {
 //		Calculate the movement based on some velocity, calculated as the distance moved per second:
 		final float velocity = 250.0F;
-		final float movement = getFPSCounter().getFrameTimeMillis() / 1000.0F * velocity;
+		final float movement = getFPSCounter().getFrameTimeNanos() / 1000000000.0F * velocity;
 		
 		final Camera camera = getScene().getCamera();
 		
@@ -123,6 +186,12 @@ public final class TestGame extends Application {
 			camera.moveLeft(movement);
 		}
 		
+		if(isKeyPressed(KeyEvent.VK_C) && this.isTogglingCounting.compareAndSet(false, true)) {
+			getKernel().setCounting(!getKernel().isCounting());
+		} else if(!isKeyPressed(KeyEvent.VK_C)) {
+			this.isTogglingCounting.compareAndSet(true, false);
+		}
+		
 		if(isKeyPressed(KeyEvent.VK_D)) {
 			camera.moveLeft(-movement);
 		}
@@ -136,6 +205,9 @@ public final class TestGame extends Application {
 		if(isKeyPressed(KeyEvent.VK_ESCAPE) && this.isTerminationRequested.compareAndSet(false, true)) {
 			this.isRunning.set(false);
 			
+			doStopCameraPathRecording();
+			doStopCapture();
+			
 			System.exit(0);
 		} else if(!isKeyPressed(KeyEvent.VK_ESCAPE)) {
 			this.isTerminationRequested.compareAndSet(true, false);
@@ -146,22 +218,25 @@ public final class TestGame extends Application {
 			final int textureU = (int)(getPick()[Constants.RELATIVE_OFFSET_OF_PICK_TEXTURE_UV + 0]);
 			final int textureV = (int)(getPick()[Constants.RELATIVE_OFFSET_OF_PICK_TEXTURE_UV + 1]);
 			
+			final float[] texels = getScene().getTexelsAsArray();
+			
 			final int[] textures = getScene().getTexturesAsArray();
 			
-			final int width = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_WIDTH];
+			final int layout = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_LAYOUT];
 			final int startX = textureU - 5;
 			final int startY = textureV - 5;
 			final int radius = 2;
 			
-			for(int y = -radius; y <= radius; y++) {
-				for(int x = -radius; x <= radius; x++) {
-					if(x * x + y * y <= radius * radius) {
-						if(ThreadLocalRandom.current().nextGaussian() < 0.1D) {
-							final int rGB = ((ThreadLocalRandom.current().nextInt(100, 255) & 0xFF) << 16) | ((0 & 0xFF) << 8) | ((0 & 0xFF) << 0);
-							
-							final int offset = (startY + y) * width + (startX + x);
-							
-							textures[textureOffset + Texture.RELATIVE_OFFSET_OF_DATA + offset] = rGB;
+//			Block compressed textures cannot be updated one texel at a time, so they're left as they are:
+			if(layout != Texture.LAYOUT_BLOCK_COMPRESSED) {
+				for(int y = -radius; y <= radius; y++) {
+					for(int x = -radius; x <= radius; x++) {
+						if(x * x + y * y <= radius * radius) {
+							if(ThreadLocalRandom.current().nextGaussian() < 0.1D) {
+								final int rGB = ((ThreadLocalRandom.current().nextInt(100, 255) & 0xFF) << 16) | ((0 & 0xFF) << 8) | ((0 & 0xFF) << 0);
+								
+								doBleed(texels, textures, textureOffset, startX + x, startY + y, rGB);
+							}
 						}
 					}
 				}
@@ -170,6 +245,62 @@ public final class TestGame extends Application {
 			setTextureUpdateRequired(true);
 		}
 		
+		if(isKeyPressed(KeyEvent.VK_G) && this.isTogglingGammaCorrectionMode.compareAndSet(false, true)) {
+			setGammaCorrectionMode((getGammaCorrectionMode() + 1) % 3);
+			
+			System.out.printf("GammaCorrectionMode: %s%n", getGammaCorrectionMode() == RayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE ? "LOOKUP_TABLE" : getGammaCorrectionMode() == RayCasterKernel.GAMMA_CORRECTION_MODE_APPROXIMATION ? "APPROXIMATION" : "EXACT");
+		} else if(!isKeyPressed(KeyEvent.VK_G)) {
+			this.isTogglingGammaCorrectionMode.compareAndSet(true, false);
+		}
+		
+		if(isKeyPressed(KeyEvent.VK_H) && this.isPrintingFrameTimes.compareAndSet(false, true)) {
+			final FPSCounter fPSCounter = getFPSCounter();
+			
+			System.out.printf("Frame Time (ms): P50 %.2f, P95 %.2f, P99 %.2f, Max %.2f over %s frames%n", Double.valueOf(fPSCounter.getFrameTimePercentileNanos(50.0D) / 1000000.0D), Double.valueOf(fPSCounter.getFrameTimePercentileNanos(95.0D) / 1000000.0D), Double.valueOf(fPSCounter.getFrameTimePercentileNanos(99.0D) / 1000000.0D), Double.valueOf(fPSCounter.getFrameTimeMaximumNanos() / 1000000.0D), Long.toString(fPSCounter.getFrameTimeCount()));
+			
+			fPSCounter.resetFrameTimeHistogram();
+		} else if(!isKeyPressed(KeyEvent.VK_H)) {
+			this.isPrintingFrameTimes.compareAndSet(true, false);
+		}
+		
+		if(isKeyPressed(KeyEvent.VK_I) && this.isTogglingFrameProfile.compareAndSet(false, true)) {
+			this.isDisplayingFrameProfile.set(!this.isDisplayingFrameProfile.get());
+		} else if(!isKeyPressed(KeyEvent.VK_I)) {
+			this.isTogglingFrameProfile.compareAndSet(true, false);
+		}
+		
+		if(isKeyPressed(KeyEvent.VK_K) && this.isSavingFrameProfile.compareAndSet(false, true)) {
+			getFrameProfiler().writeCSV(new File("profile.csv"));
+			getFrameProfiler().writeJSON(new File("profile.json"));
+			
+			System.out.println("Frame profile saved to profile.csv and profile.json");
+		} else if(!isKeyPressed(KeyEvent.VK_K)) {
+			this.isSavingFrameProfile.compareAndSet(true, false);
+		}
+		
+		if(isKeyPressed(KeyEvent.VK_O) && this.isTogglingToneMappingOperator.compareAndSet(false, true)) {
+			getKernel().setToneMappingOperator((getKernel().getToneMappingOperator() + 1) % 3);
+		} else if(!isKeyPressed(KeyEvent.VK_O)) {
+			this.isTogglingToneMappingOperator.compareAndSet(true, false);
+		}
+		
+		if(isKeyPressed(KeyEvent.VK_P) && this.isTogglingPostProcessing.compareAndSet(false, true)) {
+			getKernel().setPostProcessing(!getKernel().isPostProcessing());
+			getKernel().setBloomIntensity(getKernel().isPostProcessing() ? 0.5F : 0.0F);
+		} else if(!isKeyPressed(KeyEvent.VK_P)) {
+			this.isTogglingPostProcessing.compareAndSet(true, false);
+		}
+		
+		if(isKeyPressed(KeyEvent.VK_R) && this.isTogglingCameraPathRecording.compareAndSet(false, true)) {
+			if(this.cameraPath.get() != null) {
+				doStopCameraPathRecording();
+			} else {
+				doStartCameraPathRecording();
+			}
+		} else if(!isKeyPressed(KeyEvent.VK_R)) {
+			this.isTogglingCameraPathRecording.compareAndSet(true, false);
+		}
+		
 		if(isKeyPressed(KeyEvent.VK_S)) {
 			camera.moveBackward(-movement);
 		}
@@ -180,6 +311,16 @@ public final class TestGame extends Application {
 			this.isTogglingExecutionMode.compareAndSet(true, false);
 		}
 		
+		if(isKeyPressed(KeyEvent.VK_V) && this.isTogglingCapture.compareAndSet(false, true)) {
+			if(getFrameSink() != null) {
+				doStopCapture();
+			} else {
+				doStartCapture();
+			}
+		} else if(!isKeyPressed(KeyEvent.VK_V)) {
+			this.isTogglingCapture.compareAndSet(true, false);
+		}
+		
 		if(isKeyPressed(KeyEvent.VK_W)) {
 			camera.moveBackward(movement);
 		}
@@ -193,29 +334,101 @@ public final class TestGame extends Application {
 		lights[4] = camera.getEyeZ() + (camera.getLookAtZ() - camera.getEyeZ()) * 50.0F;
 		
 		setLightUpdateRequired(true);
+		
+		final DataOutputStream cameraPath = this.cameraPath.get();
+		
+		if(cameraPath != null) {
+			camera.write(cameraPath);
+		}
 	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	/**
 	 * The entry-point of this application.
+	 * <p>
+	 * If the system property {@link MetricsServer#PROPERTY_PORT} is set, the metrics of the application are served at that port.
+	 * <p>
+	 * If the system property {@code org.macroing.gdt.openrc.scene.cache} is set, the flattened arrays of a scene file are cached in that directory, so subsequent loads of the same scene file skip the flattening.
+	 * <p>
+	 * If no scene file is given, the system property {@code org.macroing.gdt.openrc.texture.filter} selects the filter of the textures of the default scene, which is either {@code NEAREST} or {@code BILINEAR}. The default is {@code NEAREST}.
 	 * 
 	 * @param args these are not used
 	 */
+	@SuppressWarnings("try")
 	public static void main(final String[] args) {
 		final Scene scene = createScene(args);
 		
 		final
 		Application application = SwingUtilities2.runInEDT(() -> new TestGame(scene));
-		application.start();
+		
+		try(final MetricsServer metricsServer = MetricsServer.startFromSystemProperty(server -> server.addMetrics(application))) {
+			application.start();
+		}
 	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	private void doStartCameraPathRecording() {
+		try {
+			getScene().write(new File("scene.dat"));
+			
+			this.cameraPath.set(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File("camera-path.dat")))));
+			
+			System.out.println("Recording the camera path to camera-path.dat");
+		} catch(final FileNotFoundException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void doStartCapture() {
+		final int format = System.getProperty("org.macroing.gdt.openrc.capture.format", "PNG").equalsIgnoreCase("RAW") ? FrameSink.FORMAT_RAW : FrameSink.FORMAT_PNG;
+		final int encoderCount = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+		
+		setFrameSink(new FrameSink(new File("capture"), Constants.WIDTH / Constants.WIDTH_SCALE, Constants.HEIGHT / Constants.HEIGHT_SCALE, format, encoderCount, encoderCount * 2));
+		
+		System.out.println("Capturing frames to the directory capture");
+	}
+	
+	private void doStopCameraPathRecording() {
+		final DataOutputStream cameraPath = this.cameraPath.getAndSet(null);
+		
+		if(cameraPath != null) {
+			try {
+				cameraPath.close();
+				
+				System.out.println("Camera path saved to camera-path.dat and scene saved to scene.dat");
+			} catch(final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	private void doStopCapture() {
+		final FrameSink frameSink = getFrameSink();
+		
+		if(frameSink != null) {
+			setFrameSink(null);
+			
+//			This waits for the frames that have been accepted to be written:
+			frameSink.close();
+			
+			System.out.printf("Captured %d frames to the directory capture, %d frames were dropped%n", Long.valueOf(frameSink.getWrittenFrameCount()), Long.valueOf(frameSink.getDroppedFrameCount()));
+		}
+	}
+	
 	private static Scene createScene(final String[] args) {
 		final File file = args.length > 0 ? new File(args[0]) : null;
 		
-		return file != null && file.exists() ? Scene.read(file) : Scene.create(new Camera((x, y, z, scene) -> {
+		final String cacheDirectory = System.getProperty("org.macroing.gdt.openrc.scene.cache");
+		
+		if(file != null && file.exists()) {
+			return cacheDirectory != null ? Scene.read(file, new File(cacheDirectory)) : Scene.read(file);
+		}
+		
+		final int filter = System.getProperty("org.macroing.gdt.openrc.texture.filter", "NEAREST").equalsIgnoreCase("BILINEAR") ? Texture.FILTER_BILINEAR : Texture.FILTER_NEAREST;
+		
+		return Scene.create(new Camera((x, y, z, scene) -> {
 			final boolean[] test = new boolean[] {true, true, true};
 			
 			if(scene != null) {
@@ -247,6 +460,50 @@ public final class TestGame extends Application {
 			}
 			
 			return test;
-		}));//TODO: Add collision detection using the CameraPredicate in the future!
+		}), filter);//TODO: Add collision detection using the CameraPredicate in the future!
+	}
+	
+	private static void doBleed(final float[] texels, final int[] textures, final int textureOffset, final int texelX, final int texelY, final int rGB) {
+		final int height = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_HEIGHT];
+		final int layout = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_LAYOUT];
+		final int mipMapLevelCount = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_MIP_MAP_LEVEL_COUNT];
+		final int texelsOffset = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_TEXELS_OFFSET];
+		final int width = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_WIDTH];
+		
+		if(texelX < 0 || texelX >= width || texelY < 0 || texelY >= height) {
+			return;
+		}
+		
+		final float[] deltas = new float[3];
+		
+		for(int i = 0; i < mipMapLevelCount; i++) {
+			final int mipMapLevelWidth = Math.max(width >> i, 1);
+			final int mipMapLevelHeight = Math.max(height >> i, 1);
+			final int texelIndex = textures[textureOffset + Texture.RELATIVE_OFFSET_OF_MIP_MAP_OFFSETS + i] - Texture.RELATIVE_OFFSET_OF_DATA + Texture.calculateTexelIndex(layout, mipMapLevelWidth, texelX >> i, texelY >> i);
+			
+//			The mip map levels are downsampled using a 2x2 box filter, so the texel in each lower level changes by the change of the texel in the first level, weighted by the fraction of the first level it covers:
+			final float weight = (float)((double)(mipMapLevelWidth) * mipMapLevelHeight / ((double)(width) * height));
+			
+			for(int j = 0; j < 3; j++) {
+				final int shift = 16 - j * 8;
+				
+//				A bilinearly filtered texture only has its texels in the texels array:
+				final int index = texelsOffset >= 0 ? texelsOffset + texelIndex * 3 + j : textureOffset + Texture.RELATIVE_OFFSET_OF_DATA + texelIndex;
+				
+				final float oldComponent = texelsOffset >= 0 ? texels[index] : ((textures[index] >> shift) & 0xFF) / 255.0F;
+				
+				if(i == 0) {
+					deltas[j] = ((rGB >> shift) & 0xFF) / 255.0F - oldComponent;
+				}
+				
+				final float newComponent = Math.min(Math.max(oldComponent + deltas[j] * weight, 0.0F), 1.0F);
+				
+				if(texelsOffset >= 0) {
+					texels[index] = newComponent;
+				} else {
+					textures[index] = (textures[index] & ~(0xFF << shift)) | (Math.round(newComponent * 255.0F) << shift);
+				}
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc;
+
+import java.util.Objects;
+
+import org.macroing.gdt.openrc.geometry.Camera;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Ranges;
+
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
+import com.amd.aparapi.Range;
+
+/**
+ * A {@code TileRenderer} renders an image that may be larger than a frame, one tile at a time, using a single {@link RayCasterKernel}.
+ * <p>
+ * The tiles have the size of the frames rendered by the {@code RayCasterKernel}. The view offset of the {@code RayCasterKernel} is set such that each tile covers its part of the image, and the zoom of the {@code Camera} is scaled by
+ * the width of the image divided by the width of a tile, so the image has the same horizontal field of view as a single frame, but with more pixels.
+ * <p>
+ * With more than one sample per pixel, each tile is rendered once per sample with a sub-pixel offset. The HDR radiance of the samples is accumulated by the {@code RayCasterKernel}, and the average is Tone Mapped and gamma
+ * corrected once. The samples are placed at the centers of a stratification of the pixel into {@code sampleCount} cells of equal area, so the whole pixel is covered for any sample count.
+ * <p>
+ * The tiles are rendered without the post-processing pass, as the bloom cannot be gathered across the tiles. A {@code TileRenderer} is not thread-safe.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class TileRenderer {
+	/**
+	 * The maximum number of samples per pixel.
+	 */
+	public static final int MAXIMUM_SAMPLE_COUNT = 256;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final float[] camera = new float[Camera.SIZE];
+	private final float[] pick = new float[Constants.SIZE_OF_PICK];
+	private final int tileHeight = Constants.HEIGHT / Constants.HEIGHT_SCALE;
+	private final int tileWidth = Constants.WIDTH / Constants.WIDTH_SCALE;
+	private final int[] rGB = new int[this.tileWidth * this.tileHeight];
+	private final RayCasterKernel rayCasterKernel;
+	private final Range range = Range.create(this.rGB.length);
+	private final Scene scene;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code TileRenderer} for {@code scene}.
+	 * <p>
+	 * The {@code Camera} of {@code scene} is used until {@link #setCamera(Camera)} is called. As the {@code RayCasterKernel} uses the arrays of {@code scene} directly, {@code scene} should not be used by anything else while this
+	 * {@code TileRenderer} is in use.
+	 * 
+	 * @param scene the {@code Scene} to render
+	 * @param executionMode the {@code EXECUTION_MODE} to render with
+	 * @throws NullPointerException thrown if, and only if, either {@code scene} or {@code executionMode} are {@code null}
+	 */
+	public TileRenderer(final Scene scene, final EXECUTION_MODE executionMode) {
+		this.scene = Objects.requireNonNull(scene, "scene == null");
+		
+		System.arraycopy(scene.getCamera().getArray(), 0, this.camera, 0, Camera.SIZE);
+		
+		this.rayCasterKernel = new RayCasterKernel(this.pick, this.rGB, scene);
+		this.rayCasterKernel.setExecutionMode(Objects.requireNonNull(executionMode, "executionMode == null"));
+		this.rayCasterKernel.put(scene.getShapeIndices());
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns the height of the tiles.
+	 * 
+	 * @return the height of the tiles
+	 */
+	public int getTileHeight() {
+		return this.tileHeight;
+	}
+	
+	/**
+	 * Returns the width of the tiles.
+	 * 
+	 * @return the width of the tiles
+	 */
+	public int getTileWidth() {
+		return this.tileWidth;
+	}
+	
+	/**
+	 * Disposes of the {@code RayCasterKernel}.
+	 */
+	public void dispose() {
+		this.rayCasterKernel.dispose();
+	}
+	
+	/**
+	 * Renders the tile whose top left corner is at {@code x} and {@code y}, of an image of {@code imageWidth x imageHeight} pixels.
+	 * <p>
+	 * The RGB-values of the tile are written to {@code target}, starting at {@code targetOffset}, with {@code targetStride} elements between the rows. A tile at the right or bottom edge of the image is cropped to the image.
+	 * 
+	 * @param imageWidth the width of the image
+	 * @param imageHeight the height of the image
+	 * @param x the X-coordinate of the tile in the image
+	 * @param y the Y-coordinate of the tile in the image
+	 * @param sampleCount the number of samples per pixel
+	 * @param target the array to write the RGB-values to
+	 * @param targetOffset the offset in {@code target} to start at
+	 * @param targetStride the number of elements between the rows in {@code target}
+	 * @throws ArrayIndexOutOfBoundsException thrown if, and only if, {@code target} is too small
+	 * @throws IllegalArgumentException thrown if, and only if, either {@code imageWidth} or {@code imageHeight} are less than {@code 1}, {@code x} or {@code y} are outside of the image, or {@code sampleCount} is less than
+	 * {@code 1} or greater than {@code MAXIMUM_SAMPLE_COUNT}
+	 * @throws NullPointerException thrown if, and only if, {@code target} is {@code null}
+	 */
+	public void render(final int imageWidth, final int imageHeight, final int x, final int y, final int sampleCount, final int[] target, final int targetOffset, final int targetStride) {
+		Ranges.requireRange(imageWidth, 1, Integer.MAX_VALUE);
+		Ranges.requireRange(imageHeight, 1, Integer.MAX_VALUE);
+		Ranges.requireRange(x, 0, imageWidth - 1);
+		Ranges.requireRange(y, 0, imageHeight - 1);
+		Ranges.requireRange(sampleCount, 1, MAXIMUM_SAMPLE_COUNT);
+		Objects.requireNonNull(target, "target == null");
+		
+		final float[] camera = this.scene.getCamera().getArray();
+		
+		System.arraycopy(this.camera, 0, camera, 0, Camera.SIZE);
+		
+		camera[Camera.ABSOLUTE_OFFSET_OF_ZOOM] = this.camera[Camera.ABSOLUTE_OFFSET_OF_ZOOM] * imageWidth / this.tileWidth;
+		
+		this.rayCasterKernel.put(camera);
+		
+		final int width = Math.min(this.tileWidth, imageWidth - x);
+		final int height = Math.min(this.tileHeight, imageHeight - y);
+		
+//		The view offset is the distance from the center of the image to the center of the tile:
+		final float viewOffsetX = x + this.tileWidth * 0.5F - imageWidth * 0.5F;
+		final float viewOffsetY = y + this.tileHeight * 0.5F - imageHeight * 0.5F;
+		
+//		The pixel is divided into rows, where each row is as high as its share of the samples, and each row into one cell per sample, so each cell covers 1 / sampleCount of the pixel:
+		final int rows = Math.max((int)(Math.round(Math.sqrt(sampleCount))), 1);
+		
+		for(int row = 0, sample = 0; row < rows; row++) {
+			final int rowStart = sampleCount * row / rows;
+			final int rowEnd = sampleCount * (row + 1) / rows;
+			final int rowSampleCount = rowEnd - rowStart;
+			
+			final float sampleY = (rowStart + rowSampleCount * 0.5F) / sampleCount - 0.5F;
+			
+			for(int column = 0; column < rowSampleCount; column++, sample++) {
+				final float sampleX = (column + 0.5F) / rowSampleCount - 0.5F;
+				
+				this.rayCasterKernel.setSample(sample, sampleCount);
+				this.rayCasterKernel.setViewOffset(viewOffsetX + sampleX, viewOffsetY + sampleY);
+				this.rayCasterKernel.executeAndPostProcess(this.range);
+			}
+		}
+		
+		this.rayCasterKernel.get(this.rGB);
+		
+		for(int row = 0; row < height; row++) {
+			System.arraycopy(this.rGB, row * this.tileWidth, target, targetOffset + row * targetStride, width);
+		}
+	}
+	
+	/**
+	 * Sets the {@code Camera} to render from.
+	 * <p>
+	 * The {@code Camera} is copied, so changing it afterwards has no effect.
+	 * 
+	 * @param camera the {@code Camera} to render from
+	 * @throws NullPointerException thrown if, and only if, {@code camera} is {@code null}
+	 */
+	public void setCamera(final Camera camera) {
+		System.arraycopy(camera.getArray(), 0, this.camera, 0, Camera.SIZE);
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.macroing.gdt.openrc.Constants;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Images;
+import org.macroing.gdt.openrc.util.Ranges;
+
+/**
+ * A {@code TileCoordinator} renders an image by splitting it into tiles and distributing them to a number of {@link TileWorker}s over sockets.
+ * <p>
+ * The {@code Scene} is serialized once per image and sent once to each {@code TileWorker}. The tiles are then handed out from a shared queue, so faster {@code TileWorker}s render more tiles. Each {@code TileWorker} has up to
+ * {@code TILES_IN_FLIGHT} tiles sent to it at a time, so it can start rendering the next tile while the pixels of the previous one are being transferred.
+ * <p>
+ * If a {@code TileWorker} fails, its tiles are put back in the queue and rendered by the remaining {@code TileWorker}s. The image fails only if all {@code TileWorker}s fail. A {@code TileWorker} that does not accept the connection within
+ * {@code CONNECT_TIMEOUT_MILLIS}, that does not answer within {@code SETUP_TIMEOUT_MILLIS} after the {@code Scene} has been sent or that does not return a tile within {@code TILE_TIMEOUT_MILLIS} is considered to have failed.
+ * <p>
+ * The tiles are rendered by a {@link org.macroing.gdt.openrc.TileRenderer} on each {@code TileWorker}, which renders them without the post-processing pass.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class TileCoordinator {
+	/**
+	 * The maximum number of milliseconds to wait for a {@code TileWorker} to accept the connection.
+	 */
+	public static final int CONNECT_TIMEOUT_MILLIS = 10000;
+	
+	/**
+	 * The maximum number of milliseconds to wait for a {@code TileWorker} to answer, after the {@code Scene} has been sent.
+	 * <p>
+	 * This includes the time it takes the {@code TileWorker} to read the {@code Scene} and to create its {@code Kernel}, which may be compiled for the GPU.
+	 */
+	public static final int SETUP_TIMEOUT_MILLIS = 120000;
+	
+	/**
+	 * The maximum number of tiles that are sent to a {@code TileWorker} before the first of them has been received.
+	 */
+	public static final int TILES_IN_FLIGHT = 2;
+	
+	/**
+	 * The maximum number of milliseconds to wait for the pixels of a tile.
+	 * <p>
+	 * The {@code TileWorker} renders the tiles in the order they were sent, so this is the time it takes to render and transfer one tile.
+	 */
+	public static final int TILE_TIMEOUT_MILLIS = 30000;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final List<InetSocketAddress> workers;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code TileCoordinator}.
+	 * 
+	 * @param workers the addresses of the {@code TileWorker}s
+	 * @throws IllegalArgumentException thrown if, and only if, {@code workers} is empty or any of its elements are unresolved
+	 * @throws NullPointerException thrown if, and only if, either {@code workers} or any of its elements are {@code null}
+	 */
+	public TileCoordinator(final List<InetSocketAddress> workers) {
+		this.workers = new ArrayList<>(Objects.requireNonNull(workers, "workers == null"));
+		
+		Ranges.requireRange(this.workers.size(), 1, Integer.MAX_VALUE);
+		
+		for(int i = 0; i < this.workers.size(); i++) {
+			if(Objects.requireNonNull(this.workers.get(i), "workers.get(" + i + ") == null").isUnresolved()) {
+				throw new IllegalArgumentException("workers.get(" + i + ") is unresolved: " + this.workers.get(i));
+			}
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Renders {@code scene} into an image of {@code width x height} pixels, and returns the RGB-values of the pixels, from the top left to the bottom right.
+	 * 
+	 * @param scene the {@code Scene} to render
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @return the RGB-values of the pixels, from the top left to the bottom right
+	 * @throws IllegalArgumentException thrown if, and only if, either {@code width} or {@code height} are less than {@code 1}
+	 * @throws NullPointerException thrown if, and only if, {@code scene} is {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, all {@code TileWorker}s failed
+	 */
+	public int[] render(final Scene scene, final int width, final int height) {
+		Objects.requireNonNull(scene, "scene == null");
+		Ranges.requireRange(width, 1, Integer.MAX_VALUE);
+		Ranges.requireRange(height, 1, Integer.MAX_VALUE);
+		
+		final int tileWidth = Constants.WIDTH / Constants.WIDTH_SCALE;
+		final int tileHeight = Constants.HEIGHT / Constants.HEIGHT_SCALE;
+		
+		final int[] image = new int[width * height];
+		
+		final byte[] sceneBytes = scene.toByteArray();
+		
+		final BlockingQueue<int[]> tiles = new LinkedBlockingQueue<>();
+		
+		for(int y = 0; y < height; y += tileHeight) {
+			for(int x = 0; x < width; x += tileWidth) {
+				tiles.add(new int[] {x, y});
+			}
+		}
+		
+		final AtomicInteger remainingTileCount = new AtomicInteger(tiles.size());
+		
+		final ExecutorService executorService = Executors.newFixedThreadPool(this.workers.size());
+		
+		final List<Future<?>> futures = new ArrayList<>();
+		
+		try {
+			for(final InetSocketAddress worker : this.workers) {
+				futures.add(executorService.submit(() -> {
+					doRender(worker, sceneBytes, width, height, tileWidth, tileHeight, image, tiles, remainingTileCount);
+					
+					return null;
+				}));
+			}
+			
+			final List<Throwable> throwables = new ArrayList<>();
+			
+			for(final Future<?> future : futures) {
+				try {
+					future.get();
+				} catch(final ExecutionException e) {
+					throwables.add(e.getCause());
+				}
+			}
+			
+			if(remainingTileCount.get() > 0) {
+				final IOException e = new IOException("All TileWorkers failed");
+				
+				for(final Throwable throwable : throwables) {
+					e.addSuppressed(throwable);
+				}
+				
+				throw new UncheckedIOException(e);
+			}
+			
+			return image;
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			
+			throw new IllegalStateException(e);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * The entry-point of the {@code TileCoordinator}.
+	 * <p>
+	 * The arguments are the {@link Scene} file, as written by {@link Scene#write(File)}, the width and height of the image, the PNG file to write the image to and the addresses of the {@link TileWorker}s, as {@code host:port}.
+	 * 
+	 * @param args the arguments
+	 * @throws UncheckedIOException thrown if, and only if, the image could not be written
+	 */
+	public static void main(final String[] args) {
+		if(args.length < 5) {
+			System.err.println("Usage: java org.macroing.gdt.openrc.distributed.TileCoordinator <scene file> <width> <height> <output png> <host:port>...");
+			
+			System.exit(1);
+		}
+		
+		final List<InetSocketAddress> workers = new ArrayList<>();
+		
+		for(int i = 4; i < args.length; i++) {
+			final int index = args[i].lastIndexOf(':');
+			
+			workers.add(new InetSocketAddress(args[i].substring(0, index), Integer.parseInt(args[i].substring(index + 1))));
+		}
+		
+		final int width = Integer.parseInt(args[1]);
+		final int height = Integer.parseInt(args[2]);
+		
+		final long startNanos = System.nanoTime();
+		
+		final int[] image = new TileCoordinator(workers).render(Scene.read(new File(args[0])), width, height);
+		
+		System.out.printf("Rendered %dx%d pixels with %d TileWorkers in %.2f seconds%n", Integer.valueOf(width), Integer.valueOf(height), Integer.valueOf(workers.size()), Double.valueOf((System.nanoTime() - startNanos) / 1000000000.0D));
+		
+		Images.writePNG(image, width, height, new File(args[3]));
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static void doRender(final InetSocketAddress worker, final byte[] sceneBytes, final int width, final int height, final int tileWidth, final int tileHeight, final int[] image, final BlockingQueue<int[]> tiles, final AtomicInteger remainingTileCount) throws IOException, InterruptedException {
+		final Deque<int[]> tilesInFlight = new ArrayDeque<>();
+		
+		try(final Socket socket = new Socket()) {
+			socket.connect(worker, CONNECT_TIMEOUT_MILLIS);
+			socket.setSoTimeout(SETUP_TIMEOUT_MILLIS);
+			socket.setTcpNoDelay(true);
+			
+			final DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			
+			dataOutputStream.writeInt(TileProtocol.MAGIC);
+			dataOutputStream.writeInt(TileProtocol.VERSION);
+			dataOutputStream.writeInt(sceneBytes.length);
+			dataOutputStream.write(sceneBytes);
+			dataOutputStream.writeInt(width);
+			dataOutputStream.writeInt(height);
+			dataOutputStream.flush();
+			
+			if(dataInputStream.readInt() != tileWidth || dataInputStream.readInt() != tileHeight) {
+				throw new IOException("The TileWorker at " + worker + " renders tiles of a different size");
+			}
+			
+//			A read that times out throws a SocketTimeoutException, so the tiles in flight of a TileWorker that hangs are put back in the queue:
+			socket.setSoTimeout(TILE_TIMEOUT_MILLIS);
+			
+			final byte[] buffer = new byte[tileWidth * 4];
+			
+//			Tiles may be put back in the queue by a TileWorker that fails, so this TileWorker keeps polling until all tiles are done:
+			while(remainingTileCount.get() > 0) {
+				while(tilesInFlight.size() < TILES_IN_FLIGHT) {
+					final int[] tile = tilesInFlight.isEmpty() ? tiles.poll(100L, TimeUnit.MILLISECONDS) : tiles.poll();
+					
+					if(tile == null) {
+						break;
+					}
+					
+					tilesInFlight.addLast(tile);
+					
+					dataOutputStream.writeInt(tile[0]);
+					dataOutputStream.writeInt(tile[1]);
+					dataOutputStream.flush();
+				}
+				
+				final int[] tile = tilesInFlight.peekFirst();
+				
+				if(tile != null) {
+					final int x = tile[0];
+					final int y = tile[1];
+					
+					for(int row = 0, rows = Math.min(tileHeight, height - y), columns = Math.min(tileWidth, width - x); row < rows; row++) {
+						TileProtocol.readInts(dataInputStream, image, (y + row) * width + x, columns, buffer);
+					}
+					
+					tilesInFlight.removeFirst();
+					
+					remainingTileCount.decrementAndGet();
+				}
+			}
+			
+			dataOutputStream.writeInt(TileProtocol.END);
+			dataOutputStream.flush();
+		} finally {
+//			Any tile that was not received is put back in the queue, so another TileWorker can render it:
+			tiles.addAll(tilesInFlight);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The constants and encoding shared by the {@link TileCoordinator} and the {@link TileWorker}.
+ * <p>
+ * A job starts with the coordinator sending {@code MAGIC}, {@code VERSION}, the length of the serialized {@code Scene}, the serialized {@code Scene} itself and the width and height of the image. The worker replies with the width and height of
+ * its tiles. The coordinator then sends the X- and Y-coordinates of one tile at a time, and the worker replies with the pixels of each tile, in the order the tiles were sent. A tile at the right or bottom edge of the image is cropped
+ * to the image. The job ends when the coordinator sends the X-coordinate {@code END}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+final class TileProtocol {
+	public static final int END = -1;
+	public static final int MAGIC = 0x4F524354;
+	public static final int VERSION = 1;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private TileProtocol() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Reads {@code length} {@code int}s from {@code dataInput} into {@code array}, starting at {@code offset}.
+	 * 
+	 * @param dataInput the {@code DataInput} to read from
+	 * @param array the array to read into
+	 * @param offset the offset in {@code array} to start at
+	 * @param length the number of {@code int}s to read
+	 * @param buffer a buffer with a length of at least {@code length * 4}
+	 * @throws IOException thrown if, and only if, an I/O-error occurs
+	 */
+	public static void readInts(final DataInput dataInput, final int[] array, final int offset, final int length, final byte[] buffer) throws IOException {
+		dataInput.readFully(buffer, 0, length * 4);
+		
+		ByteBuffer.wrap(buffer, 0, length * 4).asIntBuffer().get(array, offset, length);
+	}
+	
+	/**
+	 * Writes {@code length} {@code int}s from {@code array} to {@code dataOutput}, starting at {@code offset}.
+	 * 
+	 * @param dataOutput the {@code DataOutput} to write to
+	 * @param array the array to write from
+	 * @param offset the offset in {@code array} to start at
+	 * @param length the number of {@code int}s to write
+	 * @param buffer a buffer with a length of at least {@code length * 4}
+	 * @throws IOException thrown if, and only if, an I/O-error occurs
+	 */
+	public static void writeInts(final DataOutput dataOutput, final int[] array, final int offset, final int length, final byte[] buffer) throws IOException {
+		ByteBuffer.wrap(buffer, 0, length * 4).asIntBuffer().put(array, offset, length);
+		
+		dataOutput.write(buffer, 0, length * 4);
+	}
+}
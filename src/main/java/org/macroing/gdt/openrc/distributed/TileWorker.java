@@ -0,0 +1,208 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.macroing.gdt.openrc.MetricsServer;
+import org.macroing.gdt.openrc.TileRenderer;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Ranges;
+
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
+
+/**
+ * A {@code TileWorker} renders tiles of an image for a {@link TileCoordinator}.
+ * <p>
+ * A {@code TileWorker} accepts one connection, or job, at a time. The {@code Scene} is received once per job, and a {@link TileRenderer} is created for it. Each tile is then rendered by that {@code TileRenderer}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class TileWorker {
+	private final AtomicLong completedJobCount = new AtomicLong();
+	private final AtomicLong failedJobCount = new AtomicLong();
+	private final AtomicLong tileCount = new AtomicLong();
+	private final AtomicLong tileNanos = new AtomicLong();
+	private final EXECUTION_MODE executionMode;
+	private final int port;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code TileWorker}.
+	 * 
+	 * @param port the port to listen on, or {@code 0} for an ephemeral port
+	 * @param executionMode the {@code EXECUTION_MODE} to render with
+	 * @throws IllegalArgumentException thrown if, and only if, {@code port} is less than {@code 0} or greater than {@code 65535}
+	 * @throws NullPointerException thrown if, and only if, {@code executionMode} is {@code null}
+	 */
+	public TileWorker(final int port, final EXECUTION_MODE executionMode) {
+		this.port = Ranges.requireRange(port, 0, 65535);
+		this.executionMode = Objects.requireNonNull(executionMode, "executionMode == null");
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Adds the number of completed and failed jobs, the number of tiles rendered and the time spent rendering them to {@code metricsServer}.
+	 * 
+	 * @param metricsServer the {@code MetricsServer} to add the metrics to
+	 * @throws NullPointerException thrown if, and only if, {@code metricsServer} is {@code null}
+	 */
+	public void addMetrics(final MetricsServer metricsServer) {
+		metricsServer.addCounter("openrc_tile_worker_completed_jobs_total", "The number of jobs that have completed.", () -> this.completedJobCount.get());
+		metricsServer.addCounter("openrc_tile_worker_failed_jobs_total", "The number of jobs that have failed.", () -> this.failedJobCount.get());
+		metricsServer.addCounter("openrc_tile_worker_tiles_total", "The number of tiles rendered.", () -> this.tileCount.get());
+		metricsServer.addCounter("openrc_tile_worker_tile_seconds_total", "The time spent rendering the tiles, excluding the transfer of their pixels.", () -> this.tileNanos.get() / 1.0e9D);
+	}
+	
+	/**
+	 * Serves jobs from {@code serverSocket}, one at a time, until it is closed.
+	 * <p>
+	 * A job that fails is reported to standard error, and does not stop this {@code TileWorker}.
+	 * 
+	 * @param serverSocket the {@code ServerSocket} to accept connections from
+	 * @throws NullPointerException thrown if, and only if, {@code serverSocket} is {@code null}
+	 */
+	public void serve(final ServerSocket serverSocket) {
+		Objects.requireNonNull(serverSocket, "serverSocket == null");
+		
+		while(!serverSocket.isClosed()) {
+			try(final Socket socket = serverSocket.accept()) {
+				socket.setTcpNoDelay(true);
+				
+				doServe(socket);
+				
+				this.completedJobCount.incrementAndGet();
+			} catch(final IOException | RuntimeException e) {
+				if(!serverSocket.isClosed()) {
+					this.failedJobCount.incrementAndGet();
+					
+					System.err.println("TileWorker: The job failed: " + e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Listens on the port given to the constructor and serves jobs, until the {@code ServerSocket} fails.
+	 * 
+	 * @throws UncheckedIOException thrown if, and only if, the port could not be bound
+	 */
+	public void serve() {
+		try(final ServerSocket serverSocket = new ServerSocket(this.port)) {
+			System.out.println("TileWorker: Listening on port " + serverSocket.getLocalPort());
+			
+			serve(serverSocket);
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * The entry-point of the {@code TileWorker}.
+	 * <p>
+	 * The argument is the port to listen on. The system property {@code org.macroing.gdt.openrc.tile.mode} is the execution mode, such as {@code GPU} or {@code JTP}. The default is {@code GPU}.
+	 * <p>
+	 * If the system property {@link MetricsServer#PROPERTY_PORT} is set, the metrics of the {@code TileWorker} are served at that port.
+	 * 
+	 * @param args the arguments
+	 */
+	@SuppressWarnings("try")
+	public static void main(final String[] args) {
+		if(args.length != 1) {
+			System.err.println("Usage: java org.macroing.gdt.openrc.distributed.TileWorker <port>");
+			
+			System.exit(1);
+		}
+		
+		final TileWorker tileWorker = new TileWorker(Integer.parseInt(args[0]), EXECUTION_MODE.valueOf(System.getProperty("org.macroing.gdt.openrc.tile.mode", "GPU")));
+		
+		try(final MetricsServer metricsServer = MetricsServer.startFromSystemProperty(tileWorker::addMetrics)) {
+			tileWorker.serve();
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private void doServe(final Socket socket) throws IOException {
+		final DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		final DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		
+		if(dataInputStream.readInt() != TileProtocol.MAGIC || dataInputStream.readInt() != TileProtocol.VERSION) {
+			throw new IOException("Unsupported protocol");
+		}
+		
+		final byte[] sceneBytes = new byte[Ranges.requireRange(dataInputStream.readInt(), 0, Integer.MAX_VALUE)];
+		
+		dataInputStream.readFully(sceneBytes);
+		
+		final Scene scene = Scene.read(new DataInputStream(new ByteArrayInputStream(sceneBytes)));
+		
+		final int imageWidth = Ranges.requireRange(dataInputStream.readInt(), 1, Integer.MAX_VALUE);
+		final int imageHeight = Ranges.requireRange(dataInputStream.readInt(), 1, Integer.MAX_VALUE);
+		
+		final TileRenderer tileRenderer = new TileRenderer(scene, this.executionMode);
+		
+		try {
+			final int tileWidth = tileRenderer.getTileWidth();
+			final int tileHeight = tileRenderer.getTileHeight();
+			
+			dataOutputStream.writeInt(tileWidth);
+			dataOutputStream.writeInt(tileHeight);
+			dataOutputStream.flush();
+			
+			final byte[] buffer = new byte[tileWidth * 4];
+			
+			final int[] tile = new int[tileWidth * tileHeight];
+			
+			for(int x = dataInputStream.readInt(); x != TileProtocol.END; x = dataInputStream.readInt()) {
+				final int y = dataInputStream.readInt();
+				
+				final long startNanos = System.nanoTime();
+				
+				tileRenderer.render(imageWidth, imageHeight, x, y, 1, tile, 0, tileWidth);
+				
+				this.tileNanos.addAndGet(System.nanoTime() - startNanos);
+				this.tileCount.incrementAndGet();
+				
+				for(int row = 0, rows = Math.min(tileHeight, imageHeight - y), columns = Math.min(tileWidth, imageWidth - x); row < rows; row++) {
+					TileProtocol.writeInts(dataOutputStream, tile, row * tileWidth, columns, buffer);
+				}
+				
+				dataOutputStream.flush();
+			}
+		} finally {
+			tileRenderer.dispose();
+		}
+	}
+}
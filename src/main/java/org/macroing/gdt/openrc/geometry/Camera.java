@@ -33,6 +33,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import org.macroing.gdt.openrc.Constants;
@@ -78,6 +80,10 @@ public final class Camera {
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	private static final int SIZE_IN_BYTES = (3 + 3 + 3 + 1 + 1) * 4;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
 	private final CameraPredicate cameraPredicate;
 	private final float[] array = new float[SIZE];
 	private Scene scene;
@@ -462,4 +468,19 @@ public final class Camera {
 			throw new UncheckedIOException(e);
 		}
 	}
+	
+	public static List<Camera> readAll(final File file) {
+		try(final DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			final List<Camera> cameras = new ArrayList<>();
+			
+//			A camera path is a sequence of Cameras written one after another by write(DataOutput). Any incomplete Camera at the end, such as from an interrupted recording, is ignored:
+			for(long i = 0L, count = file.length() / SIZE_IN_BYTES; i < count; i++) {
+				cameras.add(read(dataInputStream));
+			}
+			
+			return cameras;
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 }
\ No newline at end of file
@@ -25,6 +25,13 @@ import org.macroing.gdt.openrc.Constants;
  * <ol>
  * <li>Shape offset</li>
  * <li>Shape distance (T)</li>
+ * <li>Surface intersection point X</li>
+ * <li>Surface intersection point Y</li>
+ * <li>Surface intersection point Z</li>
+ * <li>Surface normal X</li>
+ * <li>Surface normal Y</li>
+ * <li>Surface normal Z</li>
+ * <li>Pixel footprint (the approximate width of a pixel, in world units, at the surface intersection point)</li>
  * </ol>
  * 
  * @since 1.0.0
@@ -32,10 +39,11 @@ import org.macroing.gdt.openrc.Constants;
  */
 public final class Intersection {
 	public static final int RELATIVE_OFFSET_OF_DISTANCE = 1;
+	public static final int RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT = 8;
 	public static final int RELATIVE_OFFSET_OF_SHAPE_OFFSET = 0;
 	public static final int RELATIVE_OFFSET_OF_SURFACE_INTERSECTION_POINT = 2;
 	public static final int RELATIVE_OFFSET_OF_SURFACE_NORMAL = 5;
-	public static final int SIZE = 1 + 1 + 3 + 3;
+	public static final int SIZE = 1 + 1 + 3 + 3 + 1;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
@@ -57,6 +65,7 @@ public final class Intersection {
 			intersections[i + RELATIVE_OFFSET_OF_SURFACE_NORMAL + 0] = 0.0F;
 			intersections[i + RELATIVE_OFFSET_OF_SURFACE_NORMAL + 1] = 0.0F;
 			intersections[i + RELATIVE_OFFSET_OF_SURFACE_NORMAL + 2] = 0.0F;
+			intersections[i + RELATIVE_OFFSET_OF_PIXEL_FOOTPRINT] = 0.0F;
 		}
 		
 		return intersections;
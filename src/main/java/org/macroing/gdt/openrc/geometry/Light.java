@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 
 /**
- * The values in the {@code float} array created by the {@code toFloatArray()} method consists of the following:
+ * The values in the {@code float} array created by the {@code toFloatArray()} method, or written by the {@code writeTo(float[], int)} method, consists of the following:
  * <ol>
  * <li>Type</li>
  * <li>Size</li>
@@ -42,12 +42,20 @@ public interface Light {
 	
 	float getType();
 	
-	float[] toFloatArray();
+	default float[] toFloatArray() {
+		final float[] array = new float[size()];
+		
+		writeTo(array, 0);
+		
+		return array;
+	}
 	
 	int size();
 	
 	void write(final DataOutput dataOutput);
 	
+	void writeTo(final float[] array, final int offset);
+	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	static Light read(final DataInput dataInput) {
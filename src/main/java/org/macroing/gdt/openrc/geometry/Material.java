@@ -149,30 +149,7 @@ public final class Material {
 	public float[] toFloatArray() {
 		final float[] array = new float[size()];
 		
-		array[0] = size();
-		array[1] = this.ambientColorR;
-		array[2] = this.ambientColorG;
-		array[3] = this.ambientColorB;
-		array[4] = this.ambientColorA;
-		array[5] = this.ambientIntensity;
-		array[6] = this.diffuseColorR;
-		array[7] = this.diffuseColorG;
-		array[8] = this.diffuseColorB;
-		array[9] = this.diffuseColorA;
-		array[10] = this.diffuseIntensity;
-		array[11] = this.specularColorR;
-		array[12] = this.specularColorG;
-		array[13] = this.specularColorB;
-		array[14] = this.specularColorA;
-		array[15] = this.specularIntensity;
-		array[16] = this.specularPower;
-		array[17] = this.reflection;
-		array[18] = this.refraction;
-		array[19] = this.textureOffsets.length;
-		
-		for(int i = 0; i < this.textureOffsets.length; i++) {
-			array[i + 20] = this.textureOffsets[i];
-		}
+		writeTo(array, 0);
 		
 		return array;
 	}
@@ -263,6 +240,39 @@ public final class Material {
 	}
 	
 	public void write(final DataOutput dataOutput) {
+		write(dataOutput, this.textureOffsets);
+	}
+	
+	public void writeTo(final float[] array, final int offset) {
+		array[offset + 0] = size();
+		array[offset + 1] = this.ambientColorR;
+		array[offset + 2] = this.ambientColorG;
+		array[offset + 3] = this.ambientColorB;
+		array[offset + 4] = this.ambientColorA;
+		array[offset + 5] = this.ambientIntensity;
+		array[offset + 6] = this.diffuseColorR;
+		array[offset + 7] = this.diffuseColorG;
+		array[offset + 8] = this.diffuseColorB;
+		array[offset + 9] = this.diffuseColorA;
+		array[offset + 10] = this.diffuseIntensity;
+		array[offset + 11] = this.specularColorR;
+		array[offset + 12] = this.specularColorG;
+		array[offset + 13] = this.specularColorB;
+		array[offset + 14] = this.specularColorA;
+		array[offset + 15] = this.specularIntensity;
+		array[offset + 16] = this.specularPower;
+		array[offset + 17] = this.reflection;
+		array[offset + 18] = this.refraction;
+		array[offset + 19] = this.textureOffsets.length;
+		
+		for(int i = 0; i < this.textureOffsets.length; i++) {
+			array[offset + i + 20] = this.textureOffsets[i];
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	void write(final DataOutput dataOutput, final float[] textureOffsets) {
 		try {
 			dataOutput.writeFloat(getAmbientColorR());
 			dataOutput.writeFloat(getAmbientColorG());
@@ -279,10 +289,10 @@ public final class Material {
 			dataOutput.writeFloat(getSpecularPower());
 			dataOutput.writeFloat(getReflection());
 			dataOutput.writeFloat(getRefraction());
-			dataOutput.writeFloat(Float.intBitsToFloat(this.textureOffsets.length));
+			dataOutput.writeFloat(Float.intBitsToFloat(textureOffsets.length));
 			
-			for(int i = 0; i < this.textureOffsets.length; i++) {
-				dataOutput.writeFloat(this.textureOffsets[i]);
+			for(int i = 0; i < textureOffsets.length; i++) {
+				dataOutput.writeFloat(textureOffsets[i]);
 			}
 		} catch(final IOException e) {
 			throw new UncheckedIOException(e);
@@ -50,18 +50,6 @@ public final class Plane extends Shape {
 		return TYPE;
 	}
 	
-	@Override
-	public float[] toFloatArray() {
-		return new float[] {
-			getType(),
-			size(),
-			getMaterialOffset(),
-			this.surfaceNormalX,
-			this.surfaceNormalY,
-			this.surfaceNormalZ
-		};
-	}
-	
 	@Override
 	public int size() {
 		return SIZE;
@@ -80,4 +68,14 @@ public final class Plane extends Shape {
 			throw new UncheckedIOException(e);
 		}
 	}
+	
+	@Override
+	public void writeTo(final float[] array, final int offset) {
+		array[offset + 0] = getType();
+		array[offset + 1] = size();
+		array[offset + 2] = getMaterialOffset();
+		array[offset + 3] = this.surfaceNormalX;
+		array[offset + 4] = this.surfaceNormalY;
+		array[offset + 5] = this.surfaceNormalZ;
+	}
 }
\ No newline at end of file
@@ -51,18 +51,6 @@ public final class PointLight implements Light {
 		return TYPE;
 	}
 	
-	@Override
-	public float[] toFloatArray() {
-		return new float[] {
-			getType(),
-			size(),
-			this.x,
-			this.y,
-			this.z,
-			this.distanceFalloff
-		};
-	}
-	
 	@Override
 	public int size() {
 		return SIZE;
@@ -81,4 +69,14 @@ public final class PointLight implements Light {
 			throw new UncheckedIOException(e);
 		}
 	}
+	
+	@Override
+	public void writeTo(final float[] array, final int offset) {
+		array[offset + 0] = getType();
+		array[offset + 1] = size();
+		array[offset + 2] = this.x;
+		array[offset + 3] = this.y;
+		array[offset + 4] = this.z;
+		array[offset + 5] = this.distanceFalloff;
+	}
 }
\ No newline at end of file
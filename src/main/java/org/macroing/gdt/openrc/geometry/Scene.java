@@ -20,6 +20,8 @@ package org.macroing.gdt.openrc.geometry;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
@@ -29,45 +31,155 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.macroing.gdt.openrc.jfr.Events;
+import org.macroing.gdt.openrc.jfr.SceneLoadEvent;
+import org.macroing.gdt.openrc.util.Ranges;
+
 public final class Scene {
+	public static final int ARRAY_LIGHTS = 0;
+	public static final int ARRAY_MATERIALS = 1;
+	public static final int ARRAY_SHAPES = 2;
+	public static final int ARRAY_SHAPE_INDICES = 3;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final String CACHE_FILE_EXTENSION = ".cache";
+	private static final int CACHE_BUFFER_SIZE = 1 << 16;
+	private static final int CACHE_MAGIC = 0x4F524343;
+	private static final int CACHE_VERSION = 3;
+	private static final long CACHE_MAXIMUM_SIZE = 1L << 30;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final Allocator lightsAllocator;
+	private final Allocator materialsAllocator;
+	private final Allocator shapesAllocator;
 	private final Camera camera;
 	private final float[] lightsAsArray;
 	private final float[] materialsAsArray;
 	private final float[] shapesAsArray;
+	private final float[] texelsAsArray;
+	private final int[] dirtyRanges = new int[(ARRAY_SHAPE_INDICES + 1) * 2];
 	private final int[] shapeIndices;
 	private final int[] texturesAsArray;
 	private final List<Light> lightsAsList;
 	private final List<Material> materialsAsList;
 	private final List<Shape> shapesAsList;
 	private final List<Texture> texturesAsList;
+	private final Map<Light, Integer> lightOffsets = new IdentityHashMap<>();
+	private final Map<Material, Integer> materialOffsets = new IdentityHashMap<>();
+	private Map<Shape, Integer> shapePositions;
+	private volatile Thread ownerThread;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
-	Scene(final Camera camera, final float[] lightsAsArray, final float[] materialsAsArray, final float[] shapesAsArray, final int[] shapeIndices, final int[] texturesAsArray, final List<Light> lightsAsList, final List<Material> materialsAsList, final List<Shape> shapesAsList, final List<Texture> texturesAsList) {
+	Scene(final Camera camera, final float[] lightsAsArray, final float[] materialsAsArray, final float[] shapesAsArray, final float[] texelsAsArray, final int[] shapeIndices, final int[] texturesAsArray, final List<Light> lightsAsList, final List<Material> materialsAsList, final List<Shape> shapesAsList, final List<Texture> texturesAsList) {
 		this.camera = camera;
 		this.lightsAsArray = lightsAsArray;
 		this.materialsAsArray = materialsAsArray;
 		this.shapesAsArray = shapesAsArray;
+		this.texelsAsArray = texelsAsArray;
 		this.shapeIndices = shapeIndices;
 		this.texturesAsArray = texturesAsArray;
 		this.lightsAsList = lightsAsList;
 		this.materialsAsList = materialsAsList;
 		this.shapesAsList = shapesAsList;
 		this.texturesAsList = texturesAsList;
+		
+		int lightsLength = 0;
+		int materialsLength = 0;
+		int shapesLength = 0;
+		
+		for(final Light light : lightsAsList) {
+			this.lightOffsets.put(light, Integer.valueOf(lightsLength));
+			
+			lightsLength += light.size();
+		}
+		
+		for(final Material material : materialsAsList) {
+			this.materialOffsets.put(material, Integer.valueOf(materialsLength));
+			
+			materialsLength += material.size();
+		}
+		
+		for(final Shape shape : shapesAsList) {
+			shapesLength += shape.size();
+		}
+		
+//		The arrays are built contiguously, so anything after the items that were built is headroom for the items that are added later:
+		this.lightsAllocator = new Allocator(lightsLength, lightsAsArray.length, true);
+		this.materialsAllocator = new Allocator(materialsLength, materialsAsArray.length, false);
+		this.shapesAllocator = new Allocator(shapesLength, shapesAsArray.length, false);
 	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	public boolean isDirty(final int array) {
+		final int index = Ranges.requireRange(array, ARRAY_LIGHTS, ARRAY_SHAPE_INDICES) * 2;
+		
+		return this.dirtyRanges[index] < this.dirtyRanges[index + 1];
+	}
+	
+	public byte[] toByteArray() {
+		final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		
+		write(new DataOutputStream(byteArrayOutputStream));
+		
+		return byteArrayOutputStream.toByteArray();
+	}
+	
 	public Camera getCamera() {
 		return this.camera;
 	}
 	
+	public float addMaterial(final Material material) {
+		doCheckOwnerThread();
+		
+		if(this.materialOffsets.containsKey(Objects.requireNonNull(material, "material == null"))) {
+			throw new IllegalArgumentException("The material has already been added");
+		}
+		
+		final int offset = doAllocate(this.materialsAllocator, material.size(), "materials");
+		
+		material.writeTo(this.materialsAsArray, offset);
+		
+		this.materialOffsets.put(material, Integer.valueOf(offset));
+		this.materialsAsList.add(material);
+		
+		doMarkDirty(ARRAY_MATERIALS, offset, offset + material.size());
+		
+		return offset;
+	}
+	
+	public float getMaterialOffset(final Material material) {
+		final Integer offset = this.materialOffsets.get(Objects.requireNonNull(material, "material == null"));
+		
+		if(offset == null) {
+			throw new IllegalArgumentException("The material has not been added");
+		}
+		
+		return offset.intValue();
+	}
+	
 	public float[] getLightsAsArray() {
 		return this.lightsAsArray;
 	}
@@ -80,6 +192,18 @@ public final class Scene {
 		return this.shapesAsArray;
 	}
 	
+	public float[] getTexelsAsArray() {
+		return this.texelsAsArray;
+	}
+	
+	public int getDirtyRangeEnd(final int array) {
+		return this.dirtyRanges[Ranges.requireRange(array, ARRAY_LIGHTS, ARRAY_SHAPE_INDICES) * 2 + 1];
+	}
+	
+	public int getDirtyRangeStart(final int array) {
+		return this.dirtyRanges[Ranges.requireRange(array, ARRAY_LIGHTS, ARRAY_SHAPE_INDICES) * 2];
+	}
+	
 	public int getLightCount() {
 		return this.lightsAsArray.length;
 	}
@@ -112,32 +236,301 @@ public final class Scene {
 		return this.texturesAsList;
 	}
 	
+	public void addLight(final Light light) {
+		doCheckOwnerThread();
+		
+		if(this.lightOffsets.containsKey(Objects.requireNonNull(light, "light == null"))) {
+			throw new IllegalArgumentException("The light has already been added");
+		}
+		
+		final int offset = doAllocate(this.lightsAllocator, light.size(), "lights");
+		
+		light.writeTo(this.lightsAsArray, offset);
+		
+		this.lightOffsets.put(light, Integer.valueOf(offset));
+		this.lightsAsList.add(light);
+		
+		doMarkDirty(ARRAY_LIGHTS, offset, offset + light.size());
+		
+		if(offset + light.size() == this.lightsAllocator.getLength()) {
+			doWriteBlankLightAtEnd();
+		}
+	}
+	
+	public void addShape(final Shape shape) {
+		doCheckOwnerThread();
+		
+		final Map<Shape, Integer> shapePositions = doGetShapePositions();
+		
+		if(shapePositions.containsKey(Objects.requireNonNull(shape, "shape == null"))) {
+			throw new IllegalArgumentException("The shape has already been added");
+		}
+		
+		final int position = this.shapesAsList.size();
+		
+		if(position == this.shapeIndices.length) {
+			throw new IllegalStateException("There is no room for more shapes");
+		}
+		
+		final int offset = doAllocate(this.shapesAllocator, shape.size(), "shapes");
+		
+		shape.setIndex(offset);
+		shape.writeTo(this.shapesAsArray, offset);
+		
+		this.shapeIndices[position] = offset;
+		this.shapesAsList.add(shape);
+		
+		shapePositions.put(shape, Integer.valueOf(position));
+		
+		doMarkDirty(ARRAY_SHAPES, offset, offset + shape.size());
+		doMarkDirty(ARRAY_SHAPE_INDICES, position, position + 1);
+	}
+	
+	public void clearDirtyRange(final int array) {
+		doCheckOwnerThread();
+		
+		final int index = Ranges.requireRange(array, ARRAY_LIGHTS, ARRAY_SHAPE_INDICES) * 2;
+		
+		this.dirtyRanges[index + 0] = 0;
+		this.dirtyRanges[index + 1] = 0;
+	}
+	
+	public void removeLight(final Light light) {
+		doCheckOwnerThread();
+		
+		final Integer offset = this.lightOffsets.remove(Objects.requireNonNull(light, "light == null"));
+		
+		if(offset == null) {
+			throw new IllegalArgumentException("The light has not been added");
+		}
+		
+		this.lightsAsList.remove(light);
+		this.lightsAllocator.free(offset.intValue(), light.size());
+		
+		doWriteBlankLight(this.lightsAsArray, offset.intValue(), light.size());
+		doMarkDirty(ARRAY_LIGHTS, offset.intValue(), offset.intValue() + light.size());
+	}
+	
+	public void removeMaterial(final Material material) {
+		doCheckOwnerThread();
+		
+		final Integer offset = this.materialOffsets.get(Objects.requireNonNull(material, "material == null"));
+		
+		if(offset == null) {
+			throw new IllegalArgumentException("The material has not been added");
+		}
+		
+		for(final Shape shape : this.shapesAsList) {
+			if((int)(shape.getMaterialOffset()) == offset.intValue()) {
+				throw new IllegalStateException("The material is used by a shape");
+			}
+		}
+		
+		this.materialOffsets.remove(material);
+		this.materialsAsList.remove(material);
+		
+//		The material may have been changed since it was written, so the size of its slot is read from the array:
+		this.materialsAllocator.free(offset.intValue(), (int)(this.materialsAsArray[offset.intValue() + Material.RELATIVE_OFFSET_OF_SIZE]));
+	}
+	
+	public void removeShape(final Shape shape) {
+		doCheckOwnerThread();
+		
+		final Map<Shape, Integer> shapePositions = doGetShapePositions();
+		
+		final Integer position = shapePositions.remove(Objects.requireNonNull(shape, "shape == null"));
+		
+		if(position == null) {
+			throw new IllegalArgumentException("The shape has not been added");
+		}
+		
+//		The last shape is moved into the position of the removed shape, so the shape indices stay contiguous and are terminated by -1:
+		final int lastPosition = this.shapesAsList.size() - 1;
+		
+		final Shape lastShape = this.shapesAsList.remove(lastPosition);
+		
+		if(lastShape != shape) {
+			this.shapesAsList.set(position.intValue(), lastShape);
+			this.shapeIndices[position.intValue()] = lastShape.getIndex();
+			
+			shapePositions.put(lastShape, position);
+		}
+		
+		this.shapeIndices[lastPosition] = -1;
+		this.shapesAllocator.free(shape.getIndex(), shape.size());
+		
+		doMarkDirty(ARRAY_SHAPE_INDICES, position.intValue(), lastPosition + 1);
+	}
+	
+	public void replaceLight(final Light oldLight, final Light newLight) {
+		doCheckOwnerThread();
+		
+		final Integer oldOffset = this.lightOffsets.get(Objects.requireNonNull(oldLight, "oldLight == null"));
+		
+		if(oldOffset == null) {
+			throw new IllegalArgumentException("The light has not been added");
+		}
+		
+		if(this.lightOffsets.containsKey(Objects.requireNonNull(newLight, "newLight == null"))) {
+			throw new IllegalArgumentException("The light has already been added");
+		}
+		
+		final int offset = oldLight.size() == newLight.size() ? oldOffset.intValue() : doAllocate(this.lightsAllocator, newLight.size(), "lights");
+		
+		if(offset != oldOffset.intValue()) {
+			this.lightsAllocator.free(oldOffset.intValue(), oldLight.size());
+			
+			doWriteBlankLight(this.lightsAsArray, oldOffset.intValue(), oldLight.size());
+			doMarkDirty(ARRAY_LIGHTS, oldOffset.intValue(), oldOffset.intValue() + oldLight.size());
+		}
+		
+		newLight.writeTo(this.lightsAsArray, offset);
+		
+		this.lightOffsets.remove(oldLight);
+		this.lightOffsets.put(newLight, Integer.valueOf(offset));
+		this.lightsAsList.set(this.lightsAsList.indexOf(oldLight), newLight);
+		
+		doMarkDirty(ARRAY_LIGHTS, offset, offset + newLight.size());
+		
+		if(offset + newLight.size() == this.lightsAllocator.getLength()) {
+			doWriteBlankLightAtEnd();
+		}
+	}
+	
+	public void replaceShape(final Shape oldShape, final Shape newShape) {
+		doCheckOwnerThread();
+		
+		final Map<Shape, Integer> shapePositions = doGetShapePositions();
+		
+		final Integer position = shapePositions.get(Objects.requireNonNull(oldShape, "oldShape == null"));
+		
+		if(position == null) {
+			throw new IllegalArgumentException("The shape has not been added");
+		}
+		
+		if(shapePositions.containsKey(Objects.requireNonNull(newShape, "newShape == null"))) {
+			throw new IllegalArgumentException("The shape has already been added");
+		}
+		
+		final int offset = oldShape.size() == newShape.size() ? oldShape.getIndex() : doAllocate(this.shapesAllocator, newShape.size(), "shapes");
+		
+		if(offset != oldShape.getIndex()) {
+			this.shapesAllocator.free(oldShape.getIndex(), oldShape.size());
+		}
+		
+		newShape.setIndex(offset);
+		newShape.writeTo(this.shapesAsArray, offset);
+		
+		this.shapeIndices[position.intValue()] = offset;
+		this.shapesAsList.set(position.intValue(), newShape);
+		
+		shapePositions.remove(oldShape);
+		shapePositions.put(newShape, position);
+		
+		doMarkDirty(ARRAY_SHAPES, offset, offset + newShape.size());
+		doMarkDirty(ARRAY_SHAPE_INDICES, position.intValue(), position.intValue() + 1);
+	}
+	
+//	The edits and the dirty ranges are not synchronized. Once an owner thread is set, such as the render thread of an application, they may only be used by that thread, so an edit cannot be made between the transfer of an array and the clearing of its dirty range:
+	public void setOwnerThread(final Thread ownerThread) {
+		this.ownerThread = ownerThread;
+	}
+	
+	public void updateMaterial(final Material material) {
+		doCheckOwnerThread();
+		
+		final Integer offset = this.materialOffsets.get(Objects.requireNonNull(material, "material == null"));
+		
+		if(offset == null) {
+			throw new IllegalArgumentException("The material has not been added");
+		}
+		
+//		The shapes refer to the material by its offset, so it cannot be moved to a slot of another size:
+		if(material.size() != (int)(this.materialsAsArray[offset.intValue() + Material.RELATIVE_OFFSET_OF_SIZE])) {
+			throw new IllegalArgumentException("The number of texture offsets of the material has changed");
+		}
+		
+		material.writeTo(this.materialsAsArray, offset.intValue());
+		
+		doMarkDirty(ARRAY_MATERIALS, offset.intValue(), offset.intValue() + material.size());
+	}
+	
 	public void write(final DataOutput dataOutput) {
 		try {
 			this.camera.write(dataOutput);
 			
-			dataOutput.writeFloat(Float.intBitsToFloat(this.texturesAsArray.length));
+			int texturesLength = 0;
 			
+//			The textures are always written with their data, even if it's left out of the textures array:
 			for(final Texture texture : this.texturesAsList) {
+				texturesLength += texture.size();
+			}
+			
+			dataOutput.writeFloat(Float.intBitsToFloat(texturesLength));
+			
+//			The data of bilinearly filtered textures is left out of the textures array, but not when written. So the texture offsets of the materials are mapped to the offsets the textures are written at:
+			final Map<Integer, Integer> textureOffsets = new HashMap<>();
+			
+			for(int i = 0, textureOffset = 0, writtenTextureOffset = 0; i < this.texturesAsList.size(); i++) {
+				final Texture texture = this.texturesAsList.get(i);
+				
 				texture.write(dataOutput);
+				
+				textureOffsets.put(Integer.valueOf(textureOffset), Integer.valueOf(writtenTextureOffset));
+				
+				textureOffset += texture.getIntArraySize();
+				
+				writtenTextureOffset += texture.size();
+			}
+			
+//			The arrays may have headroom and free slots after edits, but the materials are read back contiguously. So the material offsets of the shapes are mapped to the offsets the materials will be read back at:
+			final Map<Integer, Integer> materialOffsets = new HashMap<>();
+			
+			int lightsLength = 0;
+			int materialsLength = 0;
+			int shapesLength = 0;
+			
+			for(final Light light : this.lightsAsList) {
+				lightsLength += light.size();
+			}
+			
+			for(final Material material : this.materialsAsList) {
+				materialOffsets.put(this.materialOffsets.get(material), Integer.valueOf(materialsLength));
+				
+				materialsLength += material.size();
 			}
 			
-			dataOutput.writeFloat(Float.intBitsToFloat(this.materialsAsArray.length));
+			for(final Shape shape : this.shapesAsList) {
+				shapesLength += shape.size();
+			}
+			
+			dataOutput.writeFloat(Float.intBitsToFloat(materialsLength));
 			
 			for(final Material material : this.materialsAsList) {
-				material.write(dataOutput);
+				material.write(dataOutput, doMapTextureOffsets(material.getTextureOffsets(), textureOffsets));
 			}
 			
-			dataOutput.writeFloat(Float.intBitsToFloat(this.lightsAsArray.length));
+			dataOutput.writeFloat(Float.intBitsToFloat(lightsLength));
 			
 			for(final Light light : this.lightsAsList) {
 				light.write(dataOutput);
 			}
 			
-			dataOutput.writeFloat(Float.intBitsToFloat(this.shapesAsArray.length));
+			dataOutput.writeFloat(Float.intBitsToFloat(shapesLength));
 			
 			for(final Shape shape : this.shapesAsList) {
-				shape.write(dataOutput);
+//				A shape is written in the same layout as in the shapes array:
+				final float[] array = shape.toFloatArray();
+				
+				final Integer materialOffset = materialOffsets.get(Integer.valueOf((int)(shape.getMaterialOffset())));
+				
+				if(materialOffset != null) {
+					array[Shape.RELATIVE_OFFSET_OF_MATERIAL_OFFSET] = materialOffset.intValue();
+				}
+				
+				for(final float value : array) {
+					dataOutput.writeFloat(value);
+				}
 			}
 		} catch(final IOException e) {
 			throw new UncheckedIOException(e);
@@ -159,104 +552,36 @@ public final class Scene {
 	}
 	
 	public static Scene create(final Camera camera) {
-		final
-		Builder builder = new Builder(Objects.requireNonNull(camera, "camera == null"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_0.jpg"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_1.png"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_2.png"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_3.png"));
-//		builder.addTexture(Texture.createDecalTexture("Texture_4.png"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_5.jpg"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_6.jpg"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_7.jpg"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_8.jpg"));
-//		builder.addTexture(Texture.createSolidTexture("Texture_9.jpg"));
-//		builder.addTexture(Texture.createNormalMapTexture("NormalMap.jpg"));
-//		builder.addTexture(Texture.createNormalMapTexture("NormalMap_1.jpg"));
-		builder.addTexture(Texture.createSolidTexture("154.JPG"));
-		builder.addTexture(Texture.createNormalMapTexture("154_norm.JPG"));
-		builder.addTexture(Texture.createSolidTexture("197.JPG"));
-		builder.addTexture(Texture.createNormalMapTexture("197_norm.JPG"));
-		
-		final int[] textureOffsets = builder.calculateTextureOffsets();
-		
-		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
-		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[3], textureOffsets[2]));
-		builder.addMaterial(Material.obsidian().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
-		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
-		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
-		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
-		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
-//		builder.addMaterial(new Material().setAmbientColor(0.0F, 0.0F, 0.0F).setDiffuseColor(0.0F, 0.0F, 0.0F).setSpecularColor(1.0F, 1.0F, 1.0F).setSpecularPower(32.0F).setTextureOffsets(0));
-		
-		builder.addLight(new PointLight(0.0F, 0.0F, 0.0F, 100.0F));
-//		builder.addLight(new PointLight(200.0F, -800.0F, 400.0F, 100.0F));
-//		builder.addLight(new PointLight(600.0F, 20.0F, 600.0F, 100.0F));
-//		builder.addLight(new PointLight(600.0F, 20.0F, 400.0F, 100.0F));
-//		builder.addLight(new PointLight(400.0F, 20.0F, 600.0F, 100.0F));
-		
-		final float[] materialOffsets = builder.calculateMaterialOffsets();
-		
-		for(int i = 0; i < 10; i++) {
-			builder.addShape(Sphere.random(materialOffsets[doRandom(materialOffsets.length)]));
-		}
-		
-//		builder.addShape(new Plane(materialOffsets[2], 0.5F, 0.0F, 0.5F));
-		builder.addShape(new Triangle(materialOffsets[0], 2500.0F, 40.0F, 2500.0F, 1000.0F, 40.0F, 1500.0F, -1000.0F, 40.0F, -1000.0F));
-		builder.addShape(new Triangle(materialOffsets[1], -1000.0F, 40.0F, -1000.0F, 1000.0F, -2500.0F, 1500.0F, 2500.0F, 40.0F, 2500.0F));
-		
-		final Scene scene = builder.build();
-		
-		camera.setScene(scene);
-		
-		return scene;
+		return create(camera, Texture.FILTER_NEAREST);
+	}
+	
+	public static Scene create(final Camera camera, final int filter) {
+		return doCreate(Objects.requireNonNull(camera, "camera == null"), ThreadLocalRandom.current(), 10, Ranges.requireRange(filter, Texture.FILTER_NEAREST, Texture.FILTER_BILINEAR));
+	}
+	
+	public static Scene create(final Camera camera, final long seed, final int sphereCount) {
+		return create(camera, seed, sphereCount, Texture.FILTER_NEAREST);
+	}
+	
+	public static Scene create(final Camera camera, final long seed, final int sphereCount, final int filter) {
+		return doCreate(Objects.requireNonNull(camera, "camera == null"), new Random(seed), Ranges.requireRange(sphereCount, 0, Integer.MAX_VALUE), Ranges.requireRange(filter, Texture.FILTER_NEAREST, Texture.FILTER_BILINEAR));
 	}
 	
 	public static Scene read(final DataInput dataInput) {
+		final SceneLoadEvent sceneLoadEvent = Events.isAvailable() ? new SceneLoadEvent() : null;
+		
+		if(sceneLoadEvent != null) {
+			sceneLoadEvent.begin();
+		}
+		
 		try {
-			final Builder builder = new Builder(Camera.read(dataInput));
-			
-			final int texturesLength = Float.floatToIntBits(dataInput.readFloat());
-			
-			for(int i = 0; i < texturesLength;) {
-				final Texture texture = Texture.read(dataInput);
-				
-				i += texture.size();
-				
-				builder.addTexture(texture);
-			}
-			
-			final int materialsLength = Float.floatToIntBits(dataInput.readFloat());
+			final Scene scene = doRead(dataInput).build();
 			
-			for(int i = 0; i < materialsLength;) {
-				final Material material = Material.read(dataInput);
-				
-				i += material.size();
-				
-				builder.addMaterial(material);
-			}
-			
-			final int lightsLength = Float.floatToIntBits(dataInput.readFloat());
-			
-			for(int i = 0; i < lightsLength;) {
-				final Light light = Light.read(dataInput);
-				
-				i += light.size();
-				
-				builder.addLight(light);
-			}
-			
-			final int shapesLength = Float.floatToIntBits(dataInput.readFloat());
-			
-			for(int i = 0; i < shapesLength;) {
-				final Shape shape = Shape.read(dataInput);
-				
-				i += shape.size();
-				
-				builder.addShape(shape);
+			if(sceneLoadEvent != null) {
+				doCommit(sceneLoadEvent, SceneLoadEvent.SOURCE_READ, scene);
 			}
 			
-			return builder.build();
+			return scene;
 		} catch(final IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -270,6 +595,41 @@ public final class Scene {
 		}
 	}
 	
+	public static Scene read(final File file, final File cacheDirectory) {
+		Objects.requireNonNull(cacheDirectory, "cacheDirectory == null");
+		
+		final SceneLoadEvent sceneLoadEvent = Events.isAvailable() ? new SceneLoadEvent() : null;
+		
+		if(sceneLoadEvent != null) {
+			sceneLoadEvent.begin();
+		}
+		
+		try {
+			final byte[] bytes = Files.readAllBytes(file.toPath());
+			
+			final File cacheFile = new File(cacheDirectory, doToHexString(doDigest(bytes)) + CACHE_FILE_EXTENSION);
+			
+			final Scene cachedScene = cacheFile.isFile() ? doReadCache(cacheFile) : null;
+			final Scene scene = cachedScene != null ? cachedScene : doRead(new DataInputStream(new ByteArrayInputStream(bytes))).build();
+			
+			if(cachedScene != null) {
+//				The cache files are pruned by the time they were last used, so a hit counts as a use:
+				cacheFile.setLastModified(System.currentTimeMillis());
+			} else {
+				doWriteCache(scene, cacheDirectory, cacheFile);
+				doPruneCache(cacheDirectory, cacheFile);
+			}
+			
+			if(sceneLoadEvent != null) {
+				doCommit(sceneLoadEvent, cachedScene != null ? SceneLoadEvent.SOURCE_CACHE : SceneLoadEvent.SOURCE_READ, scene);
+			}
+			
+			return scene;
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	public static final class Builder {
@@ -277,8 +637,18 @@ public final class Scene {
 		private final Camera camera;
 		private final List<Light> lights = new ArrayList<>();
 		private final List<Material> materials = new ArrayList<>();
+		private final List<Integer> materialOffsets = new ArrayList<>();
 		private final List<Shape> shapes = new ArrayList<>();
+		private final List<Integer> textureOffsets = new ArrayList<>();
 		private final List<Texture> textures = new ArrayList<>();
+		private final Map<Texture, Integer> textureOffsetsByTexture = new HashMap<>();
+		private int lightCapacity;
+		private int lightsLength;
+		private int materialCapacity;
+		private int materialsLength;
+		private int shapeCapacity;
+		private int texelsLength;
+		private int texturesLength;
 		
 		////////////////////////////////////////////////////////////////////////////////////////////////////
 		
@@ -295,11 +665,16 @@ public final class Scene {
 		public Builder addLight(final Light light) {
 			this.lights.add(Objects.requireNonNull(light, "light == null"));
 			
+			this.lightsLength += light.size();
+			
 			return this;
 		}
 		
 		public Builder addMaterial(final Material material) {
 			this.materials.add(Objects.requireNonNull(material, "material == null"));
+			this.materialOffsets.add(Integer.valueOf(this.materialsLength));
+			
+			this.materialsLength += material.size();
 			
 			return this;
 		}
@@ -313,108 +688,140 @@ public final class Scene {
 		}
 		
 		public Builder addTexture(final Texture texture) {
-			this.textures.add(Objects.requireNonNull(texture, "texture == null"));
+			final Integer textureOffset = this.textureOffsetsByTexture.get(Objects.requireNonNull(texture, "texture == null"));
 			
-			return this;
+			if(textureOffset != null) {
+//				The texture has the same content as a texture that has already been added, so that texture is shared instead:
+				this.textureOffsets.add(textureOffset);
+			} else {
+				this.textureOffsets.add(Integer.valueOf(this.texturesLength));
+				this.textureOffsetsByTexture.put(texture, Integer.valueOf(this.texturesLength));
+				this.textures.add(texture);
+				
+				this.texelsLength += texture.getFilter() == Texture.FILTER_BILINEAR ? texture.getTexelCount() * 3 : 0;
+				this.texturesLength += texture.getIntArraySize();
+			}
+			
+			return this;
+		}
+		
+		public Builder setLightCapacity(final int lightCapacity) {
+			this.lightCapacity = Ranges.requireRange(lightCapacity, 0, Integer.MAX_VALUE);
+			
+			return this;
+		}
+		
+		public Builder setMaterialCapacity(final int materialCapacity) {
+			this.materialCapacity = Ranges.requireRange(materialCapacity, 0, Integer.MAX_VALUE);
+			
+			return this;
+		}
+		
+		public Builder setShapeCapacity(final int shapeCapacity) {
+			this.shapeCapacity = Ranges.requireRange(shapeCapacity, 0, Integer.MAX_VALUE);
+			
+			return this;
+		}
+		
+		public float getMaterialOffset(final int index) {
+//			Return the material offset of the material added by the index:th call to addMaterial(Material), without copying the other material offsets:
+			return this.materialOffsets.get(Ranges.requireRange(index, 0, this.materialOffsets.size() - 1)).intValue();
 		}
 		
 		public float[] calculateMaterialOffsets() {
-			final float[] materialOffsets = new float[this.materials.size()];
-			final float[] materials = doCreateMaterials();
+			final float[] materialOffsets = new float[this.materialOffsets.size()];
 			
-			for(int i = 0, j = 0; i < this.materials.size() && j < materials.length; i++) {
-				materialOffsets[i] = j;
-				
-				j += materials[j + Material.RELATIVE_OFFSET_OF_SIZE];
+			for(int i = 0; i < materialOffsets.length; i++) {
+				materialOffsets[i] = this.materialOffsets.get(i).intValue();
 			}
 			
 			return materialOffsets;
 		}
 		
+		public int getTextureOffset(final int index) {
+//			Return the texture offset of the texture added by the index:th call to addTexture(Texture), without copying the other texture offsets:
+			return this.textureOffsets.get(Ranges.requireRange(index, 0, this.textureOffsets.size() - 1)).intValue();
+		}
+		
 		public int[] calculateTextureOffsets() {
-			final int[] textureOffsets = new int[this.textures.size()];
-			final int[] textures = doCreateTextures();
+//			Return one texture offset per call to addTexture(Texture), where textures with the same content share the same texture offset:
+			final int[] textureOffsets = new int[this.textureOffsets.size()];
 			
-			for(int i = 0, j = 0; i < this.textures.size() && j < textures.length; i++) {
-				textureOffsets[i] = j;
-				
-				j += textures[j + Texture.RELATIVE_OFFSET_OF_SIZE];
+			for(int i = 0; i < textureOffsets.length; i++) {
+				textureOffsets[i] = this.textureOffsets.get(i).intValue();
 			}
 			
 			return textureOffsets;
 		}
 		
 		public Scene build() {
-			return new Scene(this.camera, doCreateLights(), doCreateMaterials(), doCreateShapes(), doCreateShapeIndices(), doCreateTextures(), this.lights, this.materials, this.shapes, this.textures);
+			return new Scene(this.camera, doCreateLights(), doCreateMaterials(), doCreateShapes(), doCreateTexels(this.textures, this.texelsLength), doCreateShapeIndices(), doCreateTextures(this.textures, this.texturesLength), this.lights, this.materials, this.shapes, this.textures);
 		}
 		
 		////////////////////////////////////////////////////////////////////////////////////////////////////
 		
 		private float[] doCreateLights() {
-			int length = 0;
 			int offset = 0;
 			
-			for(final Light light : this.lights) {
-				length += light.size();
-			}
+//			The capacity leaves room for lights of the largest size. A single float cannot hold a blank light, so it's never left over at the end:
+			final int length = Math.max(this.lightsLength, this.lightCapacity * PointLight.SIZE);
 			
-			final float[] array0 = new float[length];
+			final float[] array0 = new float[length == this.lightsLength + 1 ? length + 1 : length];
 			
 			for(final Light light : this.lights) {
-				final float[] array1 = light.toFloatArray();
-				
-				System.arraycopy(array1, 0, array0, offset, array1.length);
+				light.writeTo(array0, offset);
 				
-				offset += array1.length;
+				offset += light.size();
+			}
+			
+			if(offset < array0.length) {
+				doWriteBlankLight(array0, offset, array0.length - offset);
 			}
 			
 			return array0;
 		}
 		
 		private float[] doCreateMaterials() {
-			int length = 0;
 			int offset = 0;
 			
+			int maximumMaterialSize = new Material().size();
+			
 			for(final Material material : this.materials) {
-				length += material.size();
+				maximumMaterialSize = Math.max(maximumMaterialSize, material.size());
 			}
 			
-			final float[] array0 = new float[length];
+//			The capacity leaves room for materials of the largest size added so far:
+			final float[] array0 = new float[Math.max(this.materialsLength, this.materialCapacity * maximumMaterialSize)];
 			
 			for(final Material material : this.materials) {
-				final float[] array1 = material.toFloatArray();
-				
-				System.arraycopy(array1, 0, array0, offset, array1.length);
+				material.writeTo(array0, offset);
 				
-				offset += array1.length;
+				offset += material.size();
 			}
 			
 			return array0;
 		}
 		
 		private float[] doCreateShapes() {
-			int length = 0;
 			int offset = 0;
 			
-			for(final Shape shape : this.shapes) {
-				length += shape.size();
-			}
-			
-			final float[] array0 = new float[length];
+//			The capacity leaves room for shapes of the largest size:
+			final float[] array0 = new float[Math.max(this.index.get(), this.shapeCapacity * Triangle.SIZE)];
 			
 			for(final Shape shape : this.shapes) {
-				final float[] array1 = shape.toFloatArray();
+				shape.writeTo(array0, offset);
 				
-				System.arraycopy(array1, 0, array0, offset, array1.length);
-				
-				offset += array1.length;
+				offset += shape.size();
 			}
 			
 			return array0;
 		}
 		
 		private int[] doCreateShapeIndices() {
-			final int[] shapeIndices = new int[this.shapes.size()];
+			final int[] shapeIndices = new int[Math.max(this.shapes.size(), this.shapeCapacity)];
+			
+//			The shape indices are terminated by -1, if there's room for more shapes:
+			Arrays.fill(shapeIndices, this.shapes.size(), shapeIndices.length, -1);
 			
 			for(int i = 0, j = 0; i < this.shapes.size(); i++) {
 				final Shape shape = this.shapes.get(i);
@@ -426,32 +833,530 @@ public final class Scene {
 			
 			return shapeIndices;
 		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final class Allocator {
+		private final Map<Integer, Deque<Integer>> freeOffsetsBySize = new HashMap<>();
+		private final boolean hasBlankLightAtEnd;
+		private final int capacity;
+		private int length;
 		
-		private int[] doCreateTextures() {
-			int length = 0;
-			int offset = 0;
+		////////////////////////////////////////////////////////////////////////////////////////////////////
+		
+		public Allocator(final int length, final int capacity, final boolean hasBlankLightAtEnd) {
+			this.length = length;
+			this.capacity = capacity;
+			this.hasBlankLightAtEnd = hasBlankLightAtEnd;
+		}
+		
+		////////////////////////////////////////////////////////////////////////////////////////////////////
+		
+		public int allocate(final int size) {
+			final Deque<Integer> freeOffsets = this.freeOffsetsBySize.get(Integer.valueOf(size));
 			
-			for(final Texture texture : this.textures) {
-				length += texture.size();
+			if(freeOffsets != null && !freeOffsets.isEmpty()) {
+				return freeOffsets.pop().intValue();
 			}
 			
-			final int[] array0 = new int[length];
+//			A single float cannot hold a blank light, so it's never left over at the end of the lights:
+			if(this.length + size > this.capacity || this.hasBlankLightAtEnd && this.length + size == this.capacity - 1) {
+				return -1;
+			}
+			
+			final int offset = this.length;
+			
+			this.length += size;
 			
-			for(final Texture texture : this.textures) {
-				final int[] array1 = texture.toIntArray();
+			return offset;
+		}
+		
+		public int getLength() {
+			return this.length;
+		}
+		
+		public void free(final int offset, final int size) {
+			this.freeOffsetsBySize.computeIfAbsent(Integer.valueOf(size), key -> new ArrayDeque<>()).push(Integer.valueOf(offset));
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private Map<Shape, Integer> doGetShapePositions() {
+//		The positions are only looked up once the shapes are edited, so scenes that are never edited don't pay for the map:
+		if(this.shapePositions == null) {
+			this.shapePositions = new IdentityHashMap<>();
+			
+			for(int i = 0; i < this.shapesAsList.size(); i++) {
+				this.shapePositions.put(this.shapesAsList.get(i), Integer.valueOf(i));
+			}
+		}
+		
+		return this.shapePositions;
+	}
+	
+	private void doCheckOwnerThread() {
+		final Thread ownerThread = this.ownerThread;
+		
+		if(ownerThread != null && ownerThread != Thread.currentThread()) {
+			throw new IllegalStateException("The scene may only be edited by its owner thread " + ownerThread.getName());
+		}
+	}
+	
+	private void doMarkDirty(final int array, final int start, final int end) {
+		final int index = array * 2;
+		
+		if(this.dirtyRanges[index] < this.dirtyRanges[index + 1]) {
+			this.dirtyRanges[index + 0] = Math.min(this.dirtyRanges[index + 0], start);
+			this.dirtyRanges[index + 1] = Math.max(this.dirtyRanges[index + 1], end);
+		} else {
+			this.dirtyRanges[index + 0] = start;
+			this.dirtyRanges[index + 1] = end;
+		}
+	}
+	
+	private void doWriteBlankLightAtEnd() {
+		final int length = this.lightsAllocator.getLength();
+		
+		if(length < this.lightsAsArray.length) {
+			doWriteBlankLight(this.lightsAsArray, length, this.lightsAsArray.length - length);
+			doMarkDirty(ARRAY_LIGHTS, length, this.lightsAsArray.length);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static Builder doRead(final DataInput dataInput) throws IOException {
+		final Builder builder = new Builder(Camera.read(dataInput));
+		
+		final int texturesLength = Float.floatToIntBits(dataInput.readFloat());
+		
+//		The texture offsets of the materials are the offsets the textures were written at, which are mapped to the offsets of the textures in the textures array:
+		final Map<Integer, Integer> textureOffsets = new HashMap<>();
+		
+		for(int i = 0; i < texturesLength;) {
+			final Texture texture = Texture.read(dataInput);
+			
+			builder.addTexture(texture);
+			
+			textureOffsets.put(Integer.valueOf(i), builder.textureOffsets.get(builder.textureOffsets.size() - 1));
+			
+			i += texture.size();
+		}
+		
+		final int materialsLength = Float.floatToIntBits(dataInput.readFloat());
+		
+		for(int i = 0; i < materialsLength;) {
+			final Material material = Material.read(dataInput);
+			
+			material.setTextureOffsets(doMapTextureOffsets(material.getTextureOffsets(), textureOffsets));
+			
+			i += material.size();
+			
+			builder.addMaterial(material);
+		}
+		
+		final int lightsLength = Float.floatToIntBits(dataInput.readFloat());
+		
+		for(int i = 0; i < lightsLength;) {
+			final Light light = Light.read(dataInput);
+			
+			i += light.size();
+			
+			builder.addLight(light);
+		}
+		
+		final int shapesLength = Float.floatToIntBits(dataInput.readFloat());
+		
+		for(int i = 0; i < shapesLength;) {
+			final Shape shape = Shape.read(dataInput);
+			
+			i += shape.size();
+			
+			builder.addShape(shape);
+		}
+		
+		return builder;
+	}
+	
+	private static Scene doCreate(final Camera camera, final Random random, final int sphereCount, final int filter) {
+		final SceneLoadEvent sceneLoadEvent = Events.isAvailable() ? new SceneLoadEvent() : null;
+		
+		if(sceneLoadEvent != null) {
+			sceneLoadEvent.begin();
+		}
+		
+//		The textures are nearest filtered by default, as a bilinearly filtered texture also keeps three floats per texel in the texels array:
+		final Builder builder = new Builder(camera);
+//		builder.addTexture(Texture.createSolidTexture("Texture_0.jpg"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_1.png"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_2.png"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_3.png"));
+//		builder.addTexture(Texture.createDecalTexture("Texture_4.png"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_5.jpg"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_6.jpg"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_7.jpg"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_8.jpg"));
+//		builder.addTexture(Texture.createSolidTexture("Texture_9.jpg"));
+//		builder.addTexture(Texture.createNormalMapTexture("NormalMap.jpg"));
+//		builder.addTexture(Texture.createNormalMapTexture("NormalMap_1.jpg"));
+		builder.addTexture(Texture.createSolidTexture("154.JPG").toPowerOfTwo().toLayout(Texture.LAYOUT_TILED).toFilter(filter));
+		builder.addTexture(Texture.createNormalMapTexture("154_norm.JPG").toPowerOfTwo().toLayout(Texture.LAYOUT_TILED).toFilter(filter));
+		builder.addTexture(Texture.createSolidTexture("197.JPG").toPowerOfTwo().toLayout(Texture.LAYOUT_TILED).toFilter(filter));
+		builder.addTexture(Texture.createNormalMapTexture("197_norm.JPG").toPowerOfTwo().toLayout(Texture.LAYOUT_TILED).toFilter(filter));
+		
+		final int[] textureOffsets = builder.calculateTextureOffsets();
+		
+		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
+		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[3], textureOffsets[2]));
+		builder.addMaterial(Material.obsidian().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
+		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
+		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
+		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
+		builder.addMaterial(Material.blackPlastic().setSpecularPower(100.0F).setTextureOffsets(textureOffsets[1], textureOffsets[0]));
+//		builder.addMaterial(new Material().setAmbientColor(0.0F, 0.0F, 0.0F).setDiffuseColor(0.0F, 0.0F, 0.0F).setSpecularColor(1.0F, 1.0F, 1.0F).setSpecularPower(32.0F).setTextureOffsets(0));
+		
+		builder.addLight(new PointLight(0.0F, 0.0F, 0.0F, 100.0F));
+//		builder.addLight(new PointLight(200.0F, -800.0F, 400.0F, 100.0F));
+//		builder.addLight(new PointLight(600.0F, 20.0F, 600.0F, 100.0F));
+//		builder.addLight(new PointLight(600.0F, 20.0F, 400.0F, 100.0F));
+//		builder.addLight(new PointLight(400.0F, 20.0F, 600.0F, 100.0F));
+		
+		final float[] materialOffsets = builder.calculateMaterialOffsets();
+		
+		for(int i = 0; i < sphereCount; i++) {
+			builder.addShape(Sphere.random(materialOffsets[random.nextInt(materialOffsets.length)], random));
+		}
+		
+//		builder.addShape(new Plane(materialOffsets[2], 0.5F, 0.0F, 0.5F));
+		builder.addShape(new Triangle(materialOffsets[0], 2500.0F, 40.0F, 2500.0F, 1000.0F, 40.0F, 1500.0F, -1000.0F, 40.0F, -1000.0F));
+		builder.addShape(new Triangle(materialOffsets[1], -1000.0F, 40.0F, -1000.0F, 1000.0F, -2500.0F, 1500.0F, 2500.0F, 40.0F, 2500.0F));
+		
+		final Scene scene = builder.build();
+		
+		camera.setScene(scene);
+		
+		if(sceneLoadEvent != null) {
+			doCommit(sceneLoadEvent, SceneLoadEvent.SOURCE_CREATE, scene);
+		}
+		
+		return scene;
+	}
+	
+	private static Scene doReadCache(final File cacheFile) {
+		try(final DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), CACHE_BUFFER_SIZE))) {
+			if(dataInputStream.readInt() != CACHE_MAGIC || dataInputStream.readInt() != CACHE_VERSION) {
+				return null;
+			}
+			
+			final byte[] buffer = new byte[CACHE_BUFFER_SIZE];
+			
+//			No array can be longer than the cache file itself, so a corrupt length is detected before anything is allocated:
+			final int maximumLength = (int)(Math.min(cacheFile.length() / 4L, Integer.MAX_VALUE));
+			
+			final Builder builder = new Builder(Camera.read(dataInputStream));
+			
+			final List<Texture> textures = new ArrayList<>();
+			
+			int texelsLength = 0;
+			int texturesLength = 0;
+			
+//			The textures were already made unique by the Builder when the cache file was written, so they are not hashed again:
+			for(int i = 0, textureCount = dataInputStream.readInt(); i < textureCount; i++) {
+				final int type = dataInputStream.readInt();
+				final int width = dataInputStream.readInt();
+				final int height = dataInputStream.readInt();
+				final int layout = dataInputStream.readInt();
+				final int filter = dataInputStream.readInt();
+				final int mipMapLevelCount = dataInputStream.readInt();
+				
+				final Texture texture = new Texture(width, height, type, layout, filter, mipMapLevelCount, doReadInts(dataInputStream, maximumLength, buffer));
 				
-				System.arraycopy(array1, 0, array0, offset, array1.length);
+				textures.add(texture);
 				
-				offset += array1.length;
+				texelsLength += filter == Texture.FILTER_BILINEAR ? texture.getTexelCount() * 3 : 0;
+				texturesLength += texture.getIntArraySize();
 			}
 			
-			return array0;
+			for(int i = 0, materialCount = dataInputStream.readInt(); i < materialCount; i++) {
+				builder.addMaterial(Material.read(dataInputStream));
+			}
+			
+			for(int i = 0, lightCount = dataInputStream.readInt(); i < lightCount; i++) {
+				builder.addLight(Light.read(dataInputStream));
+			}
+			
+			for(int i = 0, shapeCount = dataInputStream.readInt(); i < shapeCount; i++) {
+				builder.addShape(Shape.read(dataInputStream));
+			}
+			
+			final float[] lightsAsArray = doReadFloats(dataInputStream, maximumLength, buffer);
+			final float[] materialsAsArray = doReadFloats(dataInputStream, maximumLength, buffer);
+			final float[] shapesAsArray = doReadFloats(dataInputStream, maximumLength, buffer);
+			
+			final int[] shapeIndices = doReadInts(dataInputStream, maximumLength, buffer);
+			
+//			The data of the textures is only stored once, in the textures themselves, as normal maps cannot be restored from their flattened form:
+			return new Scene(builder.camera, lightsAsArray, materialsAsArray, shapesAsArray, doCreateTexels(textures, texelsLength), shapeIndices, doCreateTextures(textures, texturesLength), builder.lights, builder.materials, builder.shapes, textures);
+		} catch(final IOException | RuntimeException e) {
+//			A truncated or otherwise corrupt cache file is treated as a cache miss, whatever it fails with, so it's rebuilt and replaced:
+			return null;
 		}
 	}
 	
-	////////////////////////////////////////////////////////////////////////////////////////////////////
+	private static String doToHexString(final byte[] bytes) {
+		final StringBuilder stringBuilder = new StringBuilder(bytes.length * 2);
+		
+		for(final byte value : bytes) {
+			stringBuilder.append(String.format("%02x", Integer.valueOf(value & 0xFF)));
+		}
+		
+		return stringBuilder.toString();
+	}
+	
+	private static byte[] doDigest(final byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch(final NoSuchAlgorithmException e) {
+//			Every implementation of the Java platform is required to support SHA-256:
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static float[] doCreateTexels(final List<Texture> textures, final int texelsLength) {
+		int offset = 0;
+		
+//		The array is never empty, so it can always be transferred to the GPU:
+		final float[] array0 = new float[Math.max(texelsLength, 1)];
+		
+		for(final Texture texture : textures) {
+			if(texture.getFilter() == Texture.FILTER_BILINEAR) {
+				texture.writeTo(array0, offset);
+				
+				offset += texture.getTexelCount() * 3;
+			}
+		}
+		
+		return array0;
+	}
+	
+	private static float[] doMapTextureOffsets(final float[] textureOffsets, final Map<Integer, Integer> textureOffsetsByTextureOffset) {
+		final float[] mappedTextureOffsets = new float[textureOffsets.length];
+		
+		for(int i = 0; i < textureOffsets.length; i++) {
+			final Integer mappedTextureOffset = textureOffsetsByTextureOffset.get(Integer.valueOf((int)(textureOffsets[i])));
+			
+			mappedTextureOffsets[i] = mappedTextureOffset != null ? mappedTextureOffset.intValue() : textureOffsets[i];
+		}
+		
+		return mappedTextureOffsets;
+	}
+	
+	private static float[] doReadFloats(final DataInput dataInput, final int maximumLength, final byte[] buffer) throws IOException {
+		final int length = dataInput.readInt();
+		
+		if(length < 0 || length > maximumLength) {
+			throw new IOException("Illegal length: " + length);
+		}
+		
+		final float[] array = new float[length];
+		
+		for(int offset = 0; offset < length;) {
+			final int count = Math.min(length - offset, buffer.length / 4);
+			
+			dataInput.readFully(buffer, 0, count * 4);
+			
+			ByteBuffer.wrap(buffer, 0, count * 4).asFloatBuffer().get(array, offset, count);
+			
+			offset += count;
+		}
+		
+		return array;
+	}
+	
+	private static int doAllocate(final Allocator allocator, final int size, final String name) {
+		final int offset = allocator.allocate(size);
+		
+		if(offset == -1) {
+			throw new IllegalStateException("There is no room for more " + name);
+		}
+		
+		return offset;
+	}
+	
+	private static int[] doCreateTextures(final List<Texture> textures, final int texturesLength) {
+		int offset = 0;
+		
+		final int[] array0 = new int[texturesLength];
+		
+		for(int i = 0, texelsOffset = 0; i < textures.size(); i++) {
+			final Texture texture = textures.get(i);
+			
+			texture.writeTo(array0, offset, texture.getFilter() == Texture.FILTER_BILINEAR ? texelsOffset : -1);
+			
+			offset += texture.getIntArraySize();
+			
+			texelsOffset += texture.getFilter() == Texture.FILTER_BILINEAR ? texture.getTexelCount() * 3 : 0;
+		}
+		
+		return array0;
+	}
+	
+	private static int[] doReadInts(final DataInput dataInput, final int maximumLength, final byte[] buffer) throws IOException {
+		final int length = dataInput.readInt();
+		
+		if(length < 0 || length > maximumLength) {
+			throw new IOException("Illegal length: " + length);
+		}
+		
+		final int[] array = new int[length];
+		
+		for(int offset = 0; offset < length;) {
+			final int count = Math.min(length - offset, buffer.length / 4);
+			
+			dataInput.readFully(buffer, 0, count * 4);
+			
+			ByteBuffer.wrap(buffer, 0, count * 4).asIntBuffer().get(array, offset, count);
+			
+			offset += count;
+		}
+		
+		return array;
+	}
+	
+	private static void doCommit(final SceneLoadEvent sceneLoadEvent, final String source, final Scene scene) {
+		sceneLoadEvent.setBytes((scene.getLightsAsArray().length + scene.getMaterialsAsArray().length + scene.getShapesAsArray().length + scene.getTexelsAsArray().length + scene.getTexturesAsArray().length) * 4L);
+		sceneLoadEvent.setShapeCount(scene.getShapesAsList().size());
+		sceneLoadEvent.setSource(source);
+		sceneLoadEvent.commit();
+	}
+	
+	private static void doPruneCache(final File cacheDirectory, final File cacheFile) {
+		final File[] cacheFiles = cacheDirectory.listFiles((directory, name) -> name.endsWith(CACHE_FILE_EXTENSION));
+		
+		if(cacheFiles == null) {
+			return;
+		}
+		
+		final Map<File, Long> lastModified = new HashMap<>();
+		
+		long size = 0L;
+		
+		for(final File file : cacheFiles) {
+			lastModified.put(file, Long.valueOf(file.lastModified()));
+			
+			size += file.length();
+		}
+		
+//		The least recently used cache files are deleted until the cache fits, but never the one that was just written:
+		Arrays.sort(cacheFiles, Comparator.comparing(file -> lastModified.get(file)));
+		
+		for(int i = 0; i < cacheFiles.length && size > CACHE_MAXIMUM_SIZE; i++) {
+			final File file = cacheFiles[i];
+			final long length = file.length();
+			
+			if(!file.equals(cacheFile) && file.delete()) {
+				size -= length;
+			}
+		}
+	}
+	
+	private static void doWriteBlankLight(final float[] lights, final int offset, final int size) {
+//		A blank light has no type, so the kernel skips over it by its size:
+		Arrays.fill(lights, offset, offset + size, 0.0F);
+		
+		lights[offset + Light.RELATIVE_OFFSET_OF_SIZE] = size;
+	}
 	
-	private static int doRandom(final int bound) {
-		return ThreadLocalRandom.current().nextInt(bound);
+	private static void doWriteCache(final Scene scene, final File cacheDirectory, final File cacheFile) {
+		File temporaryFile = null;
+		
+		try {
+			Files.createDirectories(cacheDirectory.toPath());
+			
+			temporaryFile = File.createTempFile("scene", ".tmp", cacheDirectory);
+			
+			try(final DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), CACHE_BUFFER_SIZE))) {
+				final byte[] buffer = new byte[CACHE_BUFFER_SIZE];
+				
+				dataOutputStream.writeInt(CACHE_MAGIC);
+				dataOutputStream.writeInt(CACHE_VERSION);
+				
+				scene.camera.write(dataOutputStream);
+				
+				dataOutputStream.writeInt(scene.texturesAsList.size());
+				
+				for(final Texture texture : scene.texturesAsList) {
+					dataOutputStream.writeInt(texture.getType());
+					dataOutputStream.writeInt(texture.getWidth());
+					dataOutputStream.writeInt(texture.getHeight());
+					dataOutputStream.writeInt(texture.getLayout());
+					dataOutputStream.writeInt(texture.getFilter());
+					dataOutputStream.writeInt(texture.getMipMapLevelCount());
+					
+					doWriteInts(dataOutputStream, texture.getData(), buffer);
+				}
+				
+				dataOutputStream.writeInt(scene.materialsAsList.size());
+				
+				for(final Material material : scene.materialsAsList) {
+					material.write(dataOutputStream);
+				}
+				
+				dataOutputStream.writeInt(scene.lightsAsList.size());
+				
+				for(final Light light : scene.lightsAsList) {
+					light.write(dataOutputStream);
+				}
+				
+				dataOutputStream.writeInt(scene.shapesAsList.size());
+				
+				for(final Shape shape : scene.shapesAsList) {
+					shape.write(dataOutputStream);
+				}
+				
+				doWriteFloats(dataOutputStream, scene.lightsAsArray, buffer);
+				doWriteFloats(dataOutputStream, scene.materialsAsArray, buffer);
+				doWriteFloats(dataOutputStream, scene.shapesAsArray, buffer);
+				doWriteInts(dataOutputStream, scene.shapeIndices, buffer);
+			}
+			
+//			The cache file is only moved into place when it's complete, so a viewer that loads the same scene at the same time never reads a partial cache file:
+			Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch(final IOException | UncheckedIOException e) {
+//			The scene has already been built, so failing to cache it only means that the next load has to build it again:
+			if(temporaryFile != null) {
+				temporaryFile.delete();
+			}
+		}
+	}
+	
+	private static void doWriteFloats(final DataOutput dataOutput, final float[] array, final byte[] buffer) throws IOException {
+		dataOutput.writeInt(array.length);
+		
+		for(int offset = 0; offset < array.length;) {
+			final int count = Math.min(array.length - offset, buffer.length / 4);
+			
+			ByteBuffer.wrap(buffer, 0, count * 4).asFloatBuffer().put(array, offset, count);
+			
+			dataOutput.write(buffer, 0, count * 4);
+			
+			offset += count;
+		}
+	}
+	
+	private static void doWriteInts(final DataOutput dataOutput, final int[] array, final byte[] buffer) throws IOException {
+		dataOutput.writeInt(array.length);
+		
+		for(int offset = 0; offset < array.length;) {
+			final int count = Math.min(array.length - offset, buffer.length / 4);
+			
+			ByteBuffer.wrap(buffer, 0, count * 4).asIntBuffer().put(array, offset, count);
+			
+			dataOutput.write(buffer, 0, count * 4);
+			
+			offset += count;
+		}
 	}
-}
\ No newline at end of file
+}
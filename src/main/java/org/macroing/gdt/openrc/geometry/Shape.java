@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 
 /**
- * The values in the {@code float} array created by the {@code toFloatArray()} method consists of the following:
+ * The values in the {@code float} array created by the {@code toFloatArray()} method, or written by the {@code writeTo(float[], int)} method, consists of the following:
  * <ol>
  * <li>Type</li>
  * <li>Size</li>
@@ -59,7 +59,13 @@ public abstract class Shape {
 	
 	public abstract float getType();
 	
-	public abstract float[] toFloatArray();
+	public float[] toFloatArray() {
+		final float[] array = new float[size()];
+		
+		writeTo(array, 0);
+		
+		return array;
+	}
 	
 	public final int getIndex() {
 		return this.index;
@@ -73,6 +79,8 @@ public abstract class Shape {
 	
 	public abstract void write(final DataOutput dataOutput);
 	
+	public abstract void writeTo(final float[] array, final int offset);
+	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	public static Shape read(final DataInput dataInput) {
@@ -21,6 +21,8 @@ package org.macroing.gdt.openrc.geometry;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 public final class Sphere extends Shape {
@@ -70,21 +72,6 @@ public final class Sphere extends Shape {
 		return this.z;
 	}
 	
-	@Override
-	public float[] toFloatArray() {
-		final float[] array = new float[size()];
-		
-		array[0] = getType();
-		array[1] = size();
-		array[2] = getMaterialOffset();
-		array[3] = this.x;
-		array[4] = this.y;
-		array[5] = this.z;
-		array[6] = this.radius;
-		
-		return array;
-	}
-	
 	@Override
 	public int size() {
 		return SIZE;
@@ -105,15 +92,32 @@ public final class Sphere extends Shape {
 		}
 	}
 	
+	@Override
+	public void writeTo(final float[] array, final int offset) {
+		array[offset + 0] = getType();
+		array[offset + 1] = size();
+		array[offset + 2] = getMaterialOffset();
+		array[offset + 3] = this.x;
+		array[offset + 4] = this.y;
+		array[offset + 5] = this.z;
+		array[offset + 6] = this.radius;
+	}
+	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	public static Sphere random(final float materialOffset) {
-		return new Sphere(materialOffset, 300.0F + doRandom(100.0F) - doRandom(100.0F), 12.5F, 300.0F + doRandom(300.0F) - doRandom(300.0F), 16.5F);
+		return random(materialOffset, ThreadLocalRandom.current());
+	}
+	
+	public static Sphere random(final float materialOffset, final Random random) {
+		Objects.requireNonNull(random, "random == null");
+		
+		return new Sphere(materialOffset, 300.0F + doRandom(random, 100.0F) - doRandom(random, 100.0F), 12.5F, 300.0F + doRandom(random, 300.0F) - doRandom(random, 300.0F), 16.5F);
 	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
-	private static float doRandom(final float range) {
-		return ThreadLocalRandom.current().nextFloat() * range;
+	private static float doRandom(final Random random, final float range) {
+		return random.nextFloat() * range;
 	}
 }
\ No newline at end of file
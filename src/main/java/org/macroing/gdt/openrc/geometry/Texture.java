@@ -29,45 +29,175 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
 
 import javax.imageio.ImageIO;
 
+import org.macroing.gdt.openrc.jfr.Events;
+import org.macroing.gdt.openrc.jfr.TextureDecodeEvent;
+
+/**
+ * The values in the {@code int} array created by the {@code toIntArray()} method, or written by the {@code writeTo(int[], int, int)} method, consists of the following:
+ * <ol>
+ * <li>Type</li>
+ * <li>Size</li>
+ * <li>Width</li>
+ * <li>Height</li>
+ * <li>Layout</li>
+ * <li>MipMapLevelCount</li>
+ * <li>Flags</li>
+ * <li>Filter</li>
+ * <li>TexelsOffset</li>
+ * <li>MipMapOffsets[MAXIMUM_MIP_MAP_LEVEL_COUNT]</li>
+ * <li>Padding[RELATIVE_OFFSET_OF_DATA - 9 - MAXIMUM_MIP_MAP_LEVEL_COUNT]</li>
+ * <li>Data[Size - RELATIVE_OFFSET_OF_DATA]</li>
+ * </ol>
+ * <p>
+ * The data is left out for bilinearly filtered textures, which are only sampled from the {@code float} array described below, so Size is {@code RELATIVE_OFFSET_OF_DATA} for them. Use {@code getIntArraySize()} to find the number of
+ * {@code int}s written. The {@code write(DataOutput)} method always writes the data, where Size is given by {@code size()}.
+ * <p>
+ * The header is padded and the data is padded at the end, so both are multiples of {@code ALIGNMENT} {@code int}s. A texture that starts at an aligned offset is therefore followed by a texture that also starts at an aligned offset.
+ * <p>
+ * The data consists of all mip map levels, stored contiguously. The first level is the full-resolution texture and each subsequent level has half the width and height of the previous one, but never less than {@code 1}. The mip map offsets are
+ * relative to the start of the texture.
+ * <p>
+ * With the layout {@code LAYOUT_LINEAR}, the texels of a mip map level are stored in row-major order, so the texel at X and Y in level L is found at {@code textureOffset + MipMapOffsets[L] + Y * max(Width >> L, 1) + X}.
+ * <p>
+ * With the layout {@code LAYOUT_TILED}, the texels of a mip map level are stored in tiles of {@code TILE_SIZE * TILE_SIZE} texels. The tiles are stored in row-major order, and so are the texels within each tile. The width and height of each
+ * mip map level are padded to a multiple of {@code TILE_SIZE}, by repeating the texels at the edges. A tile of 16 {@code int}s fits in a single 64-byte cache line, so texels that are close to each other vertically are also close to each other
+ * in memory. Use {@code calculateTexelIndex(int, int, int, int)} to find the index of a texel.
+ * <p>
+ * With the layout {@code LAYOUT_BLOCK_COMPRESSED}, the texels of a mip map level are padded like with {@code LAYOUT_TILED}, and each block of {@code TILE_SIZE * TILE_SIZE} texels is compressed into two {@code int}s, which is one eighth of
+ * the uncompressed size. The blocks are stored in row-major order. The first {@code int} contains two RGB565-colors, the first one in the upper 16 bits and the second one in the lower 16 bits. The second {@code int} contains a 2-bit index
+ * per texel, where the texel at X and Y within the block uses the bits starting at {@code (Y * TILE_SIZE + X) * 2}. The indices {@code 0} and {@code 1} select the two colors, and the indices {@code 2} and {@code 3} select the colors at one
+ * third and two thirds between them. Normal maps cannot be block compressed. For this layout, {@code calculateTexelIndex(int, int, int, int)} returns the index of the first {@code int} of the block containing the texel.
+ * <p>
+ * The flags are derived from the width and height. If both are powers of two, {@code FLAG_POWER_OF_TWO} is set, and texture coordinates may be wrapped using bit masks rather than remainders. Use {@code toPowerOfTwo()} to resample a
+ * texture to power-of-two dimensions.
+ * <p>
+ * With the filter {@code FILTER_NEAREST}, the closest texel is sampled. With the filter {@code FILTER_BILINEAR}, the four closest texels are sampled and interpolated. To avoid unpacking four {@code int} RGB-values per sample, bilinearly
+ * filtered textures are also stored in a separate {@code float} array, as created by the {@code toFloatArray()} method. It contains the R-, G- and B-components of each texel in the range {@code [0.0, 1.0]}, in the same order as the data.
+ * The offset of the first component of the texture in that array is stored as TexelsOffset, which is {@code -1} if the texture is not bilinearly filtered.
+ * <p>
+ * A normal map is kept as RGB-values, but it's converted to precomputed unit vectors when it's turned into arrays. In the {@code int} array, each unit vector is octahedral-encoded, with X in the upper 16 bits and Y in the lower 16
+ * bits, both mapped from {@code [-1.0, 1.0]} to {@code [0, 65535]}. In the {@code float} array, each unit vector is stored as its X-, Y- and Z-components scaled by {@code 0.5}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
 public final class Texture {
-	public static final int RELATIVE_OFFSET_OF_DATA = 4;
+	public static final int ALIGNMENT = 16;
+	public static final int FILTER_BILINEAR = 1;
+	public static final int FILTER_NEAREST = 0;
+	public static final int FLAG_POWER_OF_TWO = 1;
+	public static final int LAYOUT_BLOCK_COMPRESSED = 2;
+	public static final int LAYOUT_LINEAR = 0;
+	public static final int LAYOUT_TILED = 1;
+	public static final int MAXIMUM_MIP_MAP_LEVEL_COUNT = 16;
+	public static final int RELATIVE_OFFSET_OF_DATA = (9 + MAXIMUM_MIP_MAP_LEVEL_COUNT + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	public static final int RELATIVE_OFFSET_OF_FILTER = 7;
+	public static final int RELATIVE_OFFSET_OF_FLAGS = 6;
 	public static final int RELATIVE_OFFSET_OF_HEIGHT = 3;
+	public static final int RELATIVE_OFFSET_OF_LAYOUT = 4;
+	public static final int RELATIVE_OFFSET_OF_MIP_MAP_LEVEL_COUNT = 5;
+	public static final int RELATIVE_OFFSET_OF_MIP_MAP_OFFSETS = 9;
 	public static final int RELATIVE_OFFSET_OF_SIZE = 1;
+	public static final int RELATIVE_OFFSET_OF_TEXELS_OFFSET = 8;
 	public static final int RELATIVE_OFFSET_OF_TYPE = 0;
 	public static final int RELATIVE_OFFSET_OF_WIDTH = 2;
+	public static final int TILE_SIZE = 4;
 	public static final int TYPE_DECAL = 2;
 	public static final int TYPE_NORMAL_MAP = 3;
 	public static final int TYPE_SOLID = 1;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
-	private static final int SIZE = 1 + 1 + 1 + 1;
+	private static final int SIZE = RELATIVE_OFFSET_OF_DATA;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	private final int filter;
 	private final int height;
+	private final int layout;
+	private final int mipMapLevelCount;
 	private final int type;
 	private final int width;
 	private final int[] data;
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
-	private Texture(final int width, final int height, final int type, final int[] data) {
+	Texture(final int width, final int height, final int type, final int layout, final int filter, final int mipMapLevelCount, final int[] data) {
 		this.width = width;
 		this.height = height;
 		this.type = type;
+		this.layout = layout;
+		this.filter = filter;
+		this.mipMapLevelCount = mipMapLevelCount;
 		this.data = data;
 	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
+	@Override
+	public boolean equals(final Object object) {
+		if(object == this) {
+			return true;
+		} else if(!(object instanceof Texture)) {
+			return false;
+		} else {
+			final Texture texture = Texture.class.cast(object);
+			
+			return this.width == texture.width && this.height == texture.height && this.type == texture.type && this.layout == texture.layout && this.filter == texture.filter && this.mipMapLevelCount == texture.mipMapLevelCount && Arrays.equals(this.data, texture.data);
+		}
+	}
+	
+	public int getFilter() {
+		return this.filter;
+	}
+	
+	public int getFlags() {
+		return isPowerOfTwo() ? FLAG_POWER_OF_TWO : 0;
+	}
+	
 	public int getHeight() {
 		return this.height;
 	}
 	
+	public int getIntArraySize() {
+		return this.filter == FILTER_BILINEAR ? SIZE : size();
+	}
+	
+	public int getLayout() {
+		return this.layout;
+	}
+	
+	public int getMipMapLevelCount() {
+		return this.mipMapLevelCount;
+	}
+	
+	public int getMipMapLevelHeight(final int mipMapLevel) {
+		return Math.max(this.height >> mipMapLevel, 1);
+	}
+	
+	public int getMipMapLevelOffset(final int mipMapLevel) {
+		int mipMapLevelOffset = 0;
+		
+		for(int i = 0; i < mipMapLevel; i++) {
+			mipMapLevelOffset += doCalculateMipMapLevelSize(this.layout, getMipMapLevelWidth(i), getMipMapLevelHeight(i));
+		}
+		
+		return mipMapLevelOffset;
+	}
+	
+	public int getMipMapLevelWidth(final int mipMapLevel) {
+		return Math.max(this.width >> mipMapLevel, 1);
+	}
+	
+	public int getTexelCount() {
+		return this.layout == LAYOUT_BLOCK_COMPRESSED ? this.data.length / 2 * TILE_SIZE * TILE_SIZE : this.data.length;
+	}
+	
 	public int getType() {
 		return this.type;
 	}
@@ -76,26 +206,144 @@ public final class Texture {
 		return this.width;
 	}
 	
+	@Override
+	public int hashCode() {
+		return Objects.hash(Integer.valueOf(this.width), Integer.valueOf(this.height), Integer.valueOf(this.type), Integer.valueOf(this.layout), Integer.valueOf(this.filter), Integer.valueOf(this.mipMapLevelCount), Integer.valueOf(Arrays.hashCode(this.data)));
+	}
+	
+	public boolean isPowerOfTwo() {
+		return doIsPowerOfTwo(this.width) && doIsPowerOfTwo(this.height);
+	}
+	
 	public int size() {
-		return SIZE + this.data.length;
+		return SIZE + doAlign(this.data.length);
 	}
 	
 	public int[] getData() {
 		return this.data;
 	}
 	
-	public int[] toIntArray() {
-		final int[] array = new int[size()];
+	public Texture toFilter(final int filter) {
+		if(filter != FILTER_NEAREST && filter != FILTER_BILINEAR) {
+			throw new IllegalArgumentException(String.format("Illegal filter: %s", Integer.toString(filter)));
+		}
+		
+		return filter == this.filter ? this : new Texture(this.width, this.height, this.type, this.layout, filter, this.mipMapLevelCount, this.data);
+	}
+	
+	public Texture toLayout(final int layout) {
+		if(layout != LAYOUT_LINEAR && layout != LAYOUT_TILED && layout != LAYOUT_BLOCK_COMPRESSED) {
+			throw new IllegalArgumentException(String.format("Illegal layout: %s", Integer.toString(layout)));
+		}
+		
+		if(layout == this.layout) {
+			return this;
+		}
+		
+		if(layout == LAYOUT_BLOCK_COMPRESSED && this.type == TYPE_NORMAL_MAP) {
+			throw new IllegalStateException("A normal map cannot be block compressed");
+		}
+		
+		final int[] data = new int[doCalculateDataLength(this.width, this.height, layout, this.mipMapLevelCount)];
+		
+		for(int i = 0, sourceOffset = 0, targetOffset = 0; i < this.mipMapLevelCount; i++) {
+			final int mipMapLevelWidth = getMipMapLevelWidth(i);
+			final int mipMapLevelHeight = getMipMapLevelHeight(i);
+			final int paddedWidth = layout != LAYOUT_LINEAR ? doPadToTileSize(mipMapLevelWidth) : mipMapLevelWidth;
+			final int paddedHeight = layout != LAYOUT_LINEAR ? doPadToTileSize(mipMapLevelHeight) : mipMapLevelHeight;
+			
+			if(layout == LAYOUT_BLOCK_COMPRESSED) {
+				final int[] block = new int[TILE_SIZE * TILE_SIZE];
+				
+				for(int blockY = 0; blockY < paddedHeight; blockY += TILE_SIZE) {
+					for(int blockX = 0; blockX < paddedWidth; blockX += TILE_SIZE) {
+//						The padded texels repeat the texels at the right and bottom edges:
+						for(int j = 0; j < block.length; j++) {
+							final int sourceX = Math.min(blockX + j % TILE_SIZE, mipMapLevelWidth - 1);
+							final int sourceY = Math.min(blockY + j / TILE_SIZE, mipMapLevelHeight - 1);
+							
+							block[j] = doGetTexel(this.layout, this.data, sourceOffset, mipMapLevelWidth, sourceX, sourceY);
+						}
+						
+						doEncodeBlock(block, data, targetOffset + calculateTexelIndex(layout, mipMapLevelWidth, blockX, blockY));
+					}
+				}
+			} else {
+//				The padded texels repeat the texels at the right and bottom edges:
+				for(int y = 0; y < paddedHeight; y++) {
+					for(int x = 0; x < paddedWidth; x++) {
+						final int sourceX = Math.min(x, mipMapLevelWidth - 1);
+						final int sourceY = Math.min(y, mipMapLevelHeight - 1);
+						
+						data[targetOffset + calculateTexelIndex(layout, mipMapLevelWidth, x, y)] = doGetTexel(this.layout, this.data, sourceOffset, mipMapLevelWidth, sourceX, sourceY);
+					}
+				}
+			}
+			
+			sourceOffset += doCalculateMipMapLevelSize(this.layout, mipMapLevelWidth, mipMapLevelHeight);
+			targetOffset += doCalculateMipMapLevelSize(layout, mipMapLevelWidth, mipMapLevelHeight);
+		}
+		
+		return new Texture(this.width, this.height, this.type, layout, this.filter, this.mipMapLevelCount, data);
+	}
+	
+	public Texture toPowerOfTwo() {
+		if(isPowerOfTwo()) {
+			return this;
+		}
+		
+		final int width = doCalculateNextPowerOfTwo(this.width);
+		final int height = doCalculateNextPowerOfTwo(this.height);
+		final int mipMapLevelCount = doCalculateMipMapLevelCount(width, height);
 		
-		array[0] = getType();
-		array[1] = size();
-		array[2] = getWidth();
-		array[3] = getHeight();
+		final int[] data = new int[width * height];
 		
-		for(int i = 0; i < this.data.length; i++) {
-			array[i + 4] = this.data[i];
+//		Resample the first mip map level using bilinear filtering, where the texel centers of the source and target are aligned:
+		for(int y = 0; y < height; y++) {
+			final float sourceY = Math.max((y + 0.5F) * this.height / height - 0.5F, 0.0F);
+			final int y0 = Math.min((int)(sourceY), this.height - 1);
+			final int y1 = Math.min(y0 + 1, this.height - 1);
+			final float fractionY = sourceY - y0;
+			
+			for(int x = 0; x < width; x++) {
+				final float sourceX = Math.max((x + 0.5F) * this.width / width - 0.5F, 0.0F);
+				final int x0 = Math.min((int)(sourceX), this.width - 1);
+				final int x1 = Math.min(x0 + 1, this.width - 1);
+				final float fractionX = sourceX - x0;
+				
+				final int rGB00 = doGetTexel(this.layout, this.data, 0, this.width, x0, y0);
+				final int rGB01 = doGetTexel(this.layout, this.data, 0, this.width, x1, y0);
+				final int rGB10 = doGetTexel(this.layout, this.data, 0, this.width, x0, y1);
+				final int rGB11 = doGetTexel(this.layout, this.data, 0, this.width, x1, y1);
+				
+				final int r = doInterpolate((rGB00 >> 16) & 0xFF, (rGB01 >> 16) & 0xFF, (rGB10 >> 16) & 0xFF, (rGB11 >> 16) & 0xFF, fractionX, fractionY);
+				final int g = doInterpolate((rGB00 >> 8) & 0xFF, (rGB01 >> 8) & 0xFF, (rGB10 >> 8) & 0xFF, (rGB11 >> 8) & 0xFF, fractionX, fractionY);
+				final int b = doInterpolate((rGB00 >> 0) & 0xFF, (rGB01 >> 0) & 0xFF, (rGB10 >> 0) & 0xFF, (rGB11 >> 0) & 0xFF, fractionX, fractionY);
+				
+				data[y * width + x] = (r << 16) | (g << 8) | b;
+			}
 		}
 		
+		return new Texture(width, height, this.type, LAYOUT_LINEAR, this.filter, mipMapLevelCount, doCreateMipMaps(width, height, mipMapLevelCount, data)).toLayout(this.layout);
+	}
+	
+	public float[] toFloatArray() {
+		final float[] array = new float[getTexelCount() * 3];
+		
+		writeTo(array, 0);
+		
+		return array;
+	}
+	
+	public int[] toIntArray() {
+		return toIntArray(-1);
+	}
+	
+	public int[] toIntArray(final int texelsOffset) {
+		final int[] array = new int[getIntArraySize()];
+		
+		writeTo(array, 0, texelsOffset);
+		
 		return array;
 	}
 	
@@ -105,19 +353,95 @@ public final class Texture {
 			dataOutput.writeInt(size());
 			dataOutput.writeInt(getWidth());
 			dataOutput.writeInt(getHeight());
+			dataOutput.writeInt(getLayout());
+			dataOutput.writeInt(getMipMapLevelCount());
+			dataOutput.writeInt(getFlags());
+			dataOutput.writeInt(getFilter());
+			dataOutput.writeInt(-1);
+			
+			for(int i = 0; i < MAXIMUM_MIP_MAP_LEVEL_COUNT; i++) {
+				dataOutput.writeInt(RELATIVE_OFFSET_OF_DATA + getMipMapLevelOffset(Math.min(i, this.mipMapLevelCount - 1)));
+			}
+			
+			for(int i = 9 + MAXIMUM_MIP_MAP_LEVEL_COUNT; i < RELATIVE_OFFSET_OF_DATA; i++) {
+				dataOutput.writeInt(0);
+			}
 			
 			for(int i = 0; i < this.data.length; i++) {
 				dataOutput.writeInt(this.data[i]);
 			}
+			
+			for(int i = this.data.length; i < doAlign(this.data.length); i++) {
+				dataOutput.writeInt(0);
+			}
 		} catch(final IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 	
+	public void writeTo(final float[] array, final int offset) {
+//		The texels of a block compressed texture are decoded into the order of the tiled layout, which has the same number of texels:
+		final int[] data = this.layout == LAYOUT_BLOCK_COMPRESSED ? toLayout(LAYOUT_TILED).data : this.data;
+		
+		if(this.type == TYPE_NORMAL_MAP) {
+			final float[] normal = new float[3];
+			
+			for(int i = 0; i < data.length; i++) {
+				doDecodeNormal(data[i], normal);
+				
+				array[offset + i * 3 + 0] = normal[0] * 0.5F;
+				array[offset + i * 3 + 1] = normal[1] * 0.5F;
+				array[offset + i * 3 + 2] = normal[2] * 0.5F;
+			}
+		} else {
+			for(int i = 0; i < data.length; i++) {
+				array[offset + i * 3 + 0] = ((data[i] >> 16) & 0xFF) / 255.0F;
+				array[offset + i * 3 + 1] = ((data[i] >> 8) & 0xFF) / 255.0F;
+				array[offset + i * 3 + 2] = ((data[i] >> 0) & 0xFF) / 255.0F;
+			}
+		}
+	}
+	
+	public void writeTo(final int[] array, final int offset, final int texelsOffset) {
+		array[offset + 0] = getType();
+		array[offset + 1] = getIntArraySize();
+		array[offset + 2] = getWidth();
+		array[offset + 3] = getHeight();
+		array[offset + 4] = getLayout();
+		array[offset + 5] = getMipMapLevelCount();
+		array[offset + 6] = getFlags();
+		array[offset + 7] = getFilter();
+		array[offset + 8] = texelsOffset;
+		
+		for(int i = 0; i < MAXIMUM_MIP_MAP_LEVEL_COUNT; i++) {
+			array[offset + i + 9] = RELATIVE_OFFSET_OF_DATA + getMipMapLevelOffset(Math.min(i, this.mipMapLevelCount - 1));
+		}
+		
+//		The padding is cleared, as the array may be reused:
+		Arrays.fill(array, offset + 9 + MAXIMUM_MIP_MAP_LEVEL_COUNT, offset + RELATIVE_OFFSET_OF_DATA, 0);
+		
+		if(this.filter == FILTER_BILINEAR) {
+//			The kernel samples a bilinearly filtered texture from the float array only, so its data is not needed here:
+			return;
+		}
+		
+		if(this.type == TYPE_NORMAL_MAP) {
+			final float[] normal = new float[3];
+			
+			for(int i = 0; i < this.data.length; i++) {
+				array[offset + i + RELATIVE_OFFSET_OF_DATA] = doEncodeNormalOctahedral(doDecodeNormal(this.data[i], normal));
+			}
+		} else {
+			System.arraycopy(this.data, 0, array, offset + RELATIVE_OFFSET_OF_DATA, this.data.length);
+		}
+		
+		Arrays.fill(array, offset + RELATIVE_OFFSET_OF_DATA + this.data.length, offset + size(), 0);
+	}
+	
 	////////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	public static Texture createDecalTexture() {
-		return new Texture(1, 1, TYPE_DECAL, new int[] {255});
+		return new Texture(1, 1, TYPE_DECAL, LAYOUT_LINEAR, FILTER_NEAREST, 1, new int[] {255});
 	}
 	
 	public static Texture createDecalTexture(final InputStream inputStream) {
@@ -133,7 +457,7 @@ public final class Texture {
 	}
 	
 	public static Texture createNormalMapTexture() {
-		return new Texture(1, 1, TYPE_NORMAL_MAP, new int[] {255});
+		return new Texture(1, 1, TYPE_NORMAL_MAP, LAYOUT_LINEAR, FILTER_NEAREST, 1, new int[] {255});
 	}
 	
 	public static Texture createNormalMapTexture(final InputStream inputStream) {
@@ -149,7 +473,7 @@ public final class Texture {
 	}
 	
 	public static Texture createSolidTexture() {
-		return new Texture(1, 1, TYPE_SOLID, new int[] {255});
+		return new Texture(1, 1, TYPE_SOLID, LAYOUT_LINEAR, FILTER_NEAREST, 1, new int[] {255});
 	}
 	
 	public static Texture createSolidTexture(final InputStream inputStream) {
@@ -165,20 +489,63 @@ public final class Texture {
 		}
 	}
 	
+	public static int calculateTexelIndex(final int layout, final int width, final int x, final int y) {
+		if(layout == LAYOUT_BLOCK_COMPRESSED) {
+			final int blocksPerRow = (width + TILE_SIZE - 1) / TILE_SIZE;
+			final int blockIndex = (y / TILE_SIZE) * blocksPerRow + (x / TILE_SIZE);
+			
+			return blockIndex * 2;
+		}
+		
+		if(layout == LAYOUT_TILED) {
+			final int tilesPerRow = (width + TILE_SIZE - 1) / TILE_SIZE;
+			final int tileIndex = (y / TILE_SIZE) * tilesPerRow + (x / TILE_SIZE);
+			
+			return tileIndex * TILE_SIZE * TILE_SIZE + (y % TILE_SIZE) * TILE_SIZE + (x % TILE_SIZE);
+		}
+		
+		return y * width + x;
+	}
+	
 	public static Texture read(final DataInput dataInput) {
 		try {
 			final int type = dataInput.readInt();
 			final int size = dataInput.readInt();
 			final int width = dataInput.readInt();
 			final int height = dataInput.readInt();
+			final int layout = dataInput.readInt();
+			final int mipMapLevelCount = dataInput.readInt();
 			
-			final int[] data = new int[size - 4];
+//			The flags are derived from the width and height, so they're skipped:
+			dataInput.readInt();
 			
-			for(int i = 0; i < data.length; i++) {
-				data[i] = dataInput.readInt();
+			final int filter = dataInput.readInt();
+			
+//			The texels offset is assigned when the texture is added to a scene, so it's skipped:
+			dataInput.readInt();
+			
+			for(int i = 0; i < MAXIMUM_MIP_MAP_LEVEL_COUNT; i++) {
+//				The mip map offsets are derived from the width, height and mip map level count, so they're skipped:
+				dataInput.readInt();
+			}
+			
+			for(int i = 9 + MAXIMUM_MIP_MAP_LEVEL_COUNT; i < RELATIVE_OFFSET_OF_DATA; i++) {
+//				The padding of the header is skipped:
+				dataInput.readInt();
+			}
+			
+			final int[] data = new int[doCalculateDataLength(width, height, layout, mipMapLevelCount)];
+			
+			for(int i = 0; i < size - SIZE; i++) {
+//				The padding at the end of the data is skipped:
+				final int value = dataInput.readInt();
+				
+				if(i < data.length) {
+					data[i] = value;
+				}
 			}
 			
-			return new Texture(width, height, type, data);
+			return new Texture(width, height, type, layout, filter, mipMapLevelCount, data);
 		} catch(final IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -219,14 +586,255 @@ public final class Texture {
 		return data;
 	}
 	
+	private static float[] doDecodeNormal(final int rGB, final float[] normal) {
+		final float x = ((rGB >> 16) & 0xFF) / 255.0F * 2.0F - 1.0F;
+		final float y = ((rGB >> 8) & 0xFF) / 255.0F * 2.0F - 1.0F;
+		final float z = ((rGB >> 0) & 0xFF) / 255.0F * 2.0F - 1.0F;
+		
+		final float length = (float)(Math.sqrt(x * x + y * y + z * z));
+		
+		normal[0] = length > 0.0F ? x / length : 0.0F;
+		normal[1] = length > 0.0F ? y / length : 0.0F;
+		normal[2] = length > 0.0F ? z / length : 1.0F;
+		
+		return normal;
+	}
+	
+	private static int doEncodeNormalOctahedral(final float[] normal) {
+		final float length = Math.abs(normal[0]) + Math.abs(normal[1]) + Math.abs(normal[2]);
+		
+		float x = normal[0] / length;
+		float y = normal[1] / length;
+		
+//		Fold the lower hemisphere over the diagonals:
+		if(normal[2] < 0.0F) {
+			final float foldedX = (1.0F - Math.abs(y)) * (x >= 0.0F ? 1.0F : -1.0F);
+			final float foldedY = (1.0F - Math.abs(x)) * (y >= 0.0F ? 1.0F : -1.0F);
+			
+			x = foldedX;
+			y = foldedY;
+		}
+		
+		final int encodedX = Math.round((Math.min(Math.max(x, -1.0F), 1.0F) * 0.5F + 0.5F) * 65535.0F);
+		final int encodedY = Math.round((Math.min(Math.max(y, -1.0F), 1.0F) * 0.5F + 0.5F) * 65535.0F);
+		
+		return (encodedX << 16) | encodedY;
+	}
+	
+	private static int doDecodeBlockColor(final int colors, final int index) {
+		final int color0 = (colors >> 16) & 0xFFFF;
+		final int color1 = (colors >> 0) & 0xFFFF;
+		
+//		Expand the RGB565-components to 8 bits, by repeating their most significant bits:
+		final int r0 = (((color0 >> 11) & 0x1F) << 3) | (((color0 >> 11) & 0x1F) >> 2);
+		final int g0 = (((color0 >> 5) & 0x3F) << 2) | (((color0 >> 5) & 0x3F) >> 4);
+		final int b0 = (((color0 >> 0) & 0x1F) << 3) | (((color0 >> 0) & 0x1F) >> 2);
+		final int r1 = (((color1 >> 11) & 0x1F) << 3) | (((color1 >> 11) & 0x1F) >> 2);
+		final int g1 = (((color1 >> 5) & 0x3F) << 2) | (((color1 >> 5) & 0x3F) >> 4);
+		final int b1 = (((color1 >> 0) & 0x1F) << 3) | (((color1 >> 0) & 0x1F) >> 2);
+		
+//		The weight of the second color is 0, 3, 1 or 2 thirds for the indices 0, 1, 2 and 3:
+		final int weight = index == 0 ? 0 : index == 1 ? 3 : index - 1;
+		
+		final int r = (r0 * (3 - weight) + r1 * weight) / 3;
+		final int g = (g0 * (3 - weight) + g1 * weight) / 3;
+		final int b = (b0 * (3 - weight) + b1 * weight) / 3;
+		
+		return (r << 16) | (g << 8) | b;
+	}
+	
+	private static int doGetTexel(final int layout, final int[] data, final int offset, final int width, final int x, final int y) {
+		final int index = offset + calculateTexelIndex(layout, width, x, y);
+		
+		if(layout == LAYOUT_BLOCK_COMPRESSED) {
+			return doDecodeBlockColor(data[index], (data[index + 1] >> (((y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE) * 2)) & 3);
+		}
+		
+		return data[index];
+	}
+	
+	private static int doToRGB565(final int r, final int g, final int b) {
+		return ((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3);
+	}
+	
+	private static void doEncodeBlock(final int[] block, final int[] data, final int offset) {
+		int minimumR = 255;
+		int minimumG = 255;
+		int minimumB = 255;
+		int maximumR = 0;
+		int maximumG = 0;
+		int maximumB = 0;
+		
+		for(final int rGB : block) {
+			minimumR = Math.min(minimumR, (rGB >> 16) & 0xFF);
+			minimumG = Math.min(minimumG, (rGB >> 8) & 0xFF);
+			minimumB = Math.min(minimumB, (rGB >> 0) & 0xFF);
+			maximumR = Math.max(maximumR, (rGB >> 16) & 0xFF);
+			maximumG = Math.max(maximumG, (rGB >> 8) & 0xFF);
+			maximumB = Math.max(maximumB, (rGB >> 0) & 0xFF);
+		}
+		
+//		Inset the bounding box of the colors by 1/16 of its extent, which reduces the error of the colors in between:
+		final int insetR = (maximumR - minimumR) >> 4;
+		final int insetG = (maximumG - minimumG) >> 4;
+		final int insetB = (maximumB - minimumB) >> 4;
+		
+		final int colors = (doToRGB565(maximumR - insetR, maximumG - insetG, maximumB - insetB) << 16) | doToRGB565(minimumR + insetR, minimumG + insetG, minimumB + insetB);
+		
+		final int[] palette = new int[4];
+		
+		for(int i = 0; i < palette.length; i++) {
+			palette[i] = doDecodeBlockColor(colors, i);
+		}
+		
+		int indices = 0;
+		
+//		Select the color of the palette that is closest to each texel:
+		for(int i = 0; i < block.length; i++) {
+			int closestIndex = 0;
+			int closestDistanceSquared = Integer.MAX_VALUE;
+			
+			for(int j = 0; j < palette.length; j++) {
+				final int deltaR = ((block[i] >> 16) & 0xFF) - ((palette[j] >> 16) & 0xFF);
+				final int deltaG = ((block[i] >> 8) & 0xFF) - ((palette[j] >> 8) & 0xFF);
+				final int deltaB = ((block[i] >> 0) & 0xFF) - ((palette[j] >> 0) & 0xFF);
+				final int distanceSquared = deltaR * deltaR + deltaG * deltaG + deltaB * deltaB;
+				
+				if(distanceSquared < closestDistanceSquared) {
+					closestIndex = j;
+					closestDistanceSquared = distanceSquared;
+				}
+			}
+			
+			indices |= closestIndex << (i * 2);
+		}
+		
+		data[offset + 0] = colors;
+		data[offset + 1] = indices;
+	}
+	
+	private static int doAlign(final int length) {
+		return (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+	
+	private static int doCalculateDataLength(final int width, final int height, final int layout, final int mipMapLevelCount) {
+		int length = 0;
+		
+		for(int i = 0; i < mipMapLevelCount; i++) {
+			length += doCalculateMipMapLevelSize(layout, Math.max(width >> i, 1), Math.max(height >> i, 1));
+		}
+		
+		return length;
+	}
+	
+	private static boolean doIsPowerOfTwo(final int length) {
+		return length > 0 && (length & (length - 1)) == 0;
+	}
+	
+	private static int doCalculateNextPowerOfTwo(final int length) {
+		return doIsPowerOfTwo(length) ? length : Integer.highestOneBit(length) << 1;
+	}
+	
+	private static int doInterpolate(final int value00, final int value01, final int value10, final int value11, final float fractionX, final float fractionY) {
+		final float value0 = value00 + (value01 - value00) * fractionX;
+		final float value1 = value10 + (value11 - value10) * fractionX;
+		
+		return Math.min(Math.max((int)(value0 + (value1 - value0) * fractionY + 0.5F), 0), 255);
+	}
+	
+	private static int doCalculateMipMapLevelCount(final int width, final int height) {
+		int mipMapLevelCount = 1;
+		
+		for(int currentWidth = width, currentHeight = height; (currentWidth > 1 || currentHeight > 1) && mipMapLevelCount < MAXIMUM_MIP_MAP_LEVEL_COUNT; mipMapLevelCount++) {
+			currentWidth = Math.max(currentWidth >> 1, 1);
+			currentHeight = Math.max(currentHeight >> 1, 1);
+		}
+		
+		return mipMapLevelCount;
+	}
+	
+	private static int doCalculateMipMapLevelSize(final int layout, final int mipMapLevelWidth, final int mipMapLevelHeight) {
+		if(layout == LAYOUT_BLOCK_COMPRESSED) {
+			return doPadToTileSize(mipMapLevelWidth) / TILE_SIZE * doPadToTileSize(mipMapLevelHeight) / TILE_SIZE * 2;
+		}
+		
+		return layout == LAYOUT_TILED ? doPadToTileSize(mipMapLevelWidth) * doPadToTileSize(mipMapLevelHeight) : mipMapLevelWidth * mipMapLevelHeight;
+	}
+	
+	private static int doPadToTileSize(final int length) {
+		return (length + TILE_SIZE - 1) / TILE_SIZE * TILE_SIZE;
+	}
+	
+	private static int[] doCreateMipMaps(final int width, final int height, final int mipMapLevelCount, final int[] data) {
+		int length = 0;
+		
+		for(int i = 0; i < mipMapLevelCount; i++) {
+			length += Math.max(width >> i, 1) * Math.max(height >> i, 1);
+		}
+		
+		final int[] mipMaps = new int[length];
+		
+		System.arraycopy(data, 0, mipMaps, 0, width * height);
+		
+		for(int i = 1, sourceOffset = 0, targetOffset = width * height; i < mipMapLevelCount; i++) {
+			final int sourceWidth = Math.max(width >> (i - 1), 1);
+			final int sourceHeight = Math.max(height >> (i - 1), 1);
+			final int targetWidth = Math.max(width >> i, 1);
+			final int targetHeight = Math.max(height >> i, 1);
+			
+//			Downsample the previous level using a 2x2 box filter, where the edges are clamped for odd dimensions:
+			for(int y = 0; y < targetHeight; y++) {
+				final int y0 = Math.min(y * 2 + 0, sourceHeight - 1);
+				final int y1 = Math.min(y * 2 + 1, sourceHeight - 1);
+				
+				for(int x = 0; x < targetWidth; x++) {
+					final int x0 = Math.min(x * 2 + 0, sourceWidth - 1);
+					final int x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+					
+					final int rGB00 = mipMaps[sourceOffset + y0 * sourceWidth + x0];
+					final int rGB01 = mipMaps[sourceOffset + y0 * sourceWidth + x1];
+					final int rGB10 = mipMaps[sourceOffset + y1 * sourceWidth + x0];
+					final int rGB11 = mipMaps[sourceOffset + y1 * sourceWidth + x1];
+					
+					final int r = (((rGB00 >> 16) & 0xFF) + ((rGB01 >> 16) & 0xFF) + ((rGB10 >> 16) & 0xFF) + ((rGB11 >> 16) & 0xFF) + 2) >> 2;
+					final int g = (((rGB00 >> 8) & 0xFF) + ((rGB01 >> 8) & 0xFF) + ((rGB10 >> 8) & 0xFF) + ((rGB11 >> 8) & 0xFF) + 2) >> 2;
+					final int b = (((rGB00 >> 0) & 0xFF) + ((rGB01 >> 0) & 0xFF) + ((rGB10 >> 0) & 0xFF) + ((rGB11 >> 0) & 0xFF) + 2) >> 2;
+					
+					mipMaps[targetOffset + y * targetWidth + x] = (r << 16) | (g << 8) | b;
+				}
+			}
+			
+			sourceOffset = targetOffset;
+			targetOffset += targetWidth * targetHeight;
+		}
+		
+		return mipMaps;
+	}
+	
 	private static Texture doCreateTexture(final int type, final InputStream inputStream) {
+		final TextureDecodeEvent textureDecodeEvent = Events.isAvailable() ? new TextureDecodeEvent() : null;
+		
+		if(textureDecodeEvent != null) {
+			textureDecodeEvent.begin();
+		}
+		
 		final BufferedImage bufferedImage = doCreateBufferedImageFrom(inputStream);
 		
 		final int width = bufferedImage.getWidth();
 		final int height = bufferedImage.getHeight();
+		final int mipMapLevelCount = doCalculateMipMapLevelCount(width, height);
+		
+		final int[] data = doCreateMipMaps(width, height, mipMapLevelCount, doGetDataFrom(bufferedImage));
 		
-		final int[] data = doGetDataFrom(bufferedImage);
+		if(textureDecodeEvent != null) {
+			textureDecodeEvent.setBytes(data.length * 4L);
+			textureDecodeEvent.setHeight(height);
+			textureDecodeEvent.setMipMapLevelCount(mipMapLevelCount);
+			textureDecodeEvent.setType(type);
+			textureDecodeEvent.setWidth(width);
+			textureDecodeEvent.commit();
+		}
 		
-		return new Texture(width, height, type, data);
+		return new Texture(width, height, type, LAYOUT_LINEAR, FILTER_NEAREST, mipMapLevelCount, data);
 	}
 }
\ No newline at end of file
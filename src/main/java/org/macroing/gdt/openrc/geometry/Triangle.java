@@ -90,27 +90,6 @@ public final class Triangle extends Shape {
 		return TYPE;
 	}
 	
-	@Override
-	public float[] toFloatArray() {
-		return new float[] {
-			getType(),
-			size(),
-			getMaterialOffset(),
-			this.aX,
-			this.aY,
-			this.aZ,
-			this.bX,
-			this.bY,
-			this.bZ,
-			this.cX,
-			this.cY,
-			this.cZ,
-			this.surfaceNormalX,
-			this.surfaceNormalY,
-			this.surfaceNormalZ
-		};
-	}
-	
 	@Override
 	public int size() {
 		return SIZE;
@@ -138,4 +117,23 @@ public final class Triangle extends Shape {
 			throw new UncheckedIOException(e);
 		}
 	}
+	
+	@Override
+	public void writeTo(final float[] array, final int offset) {
+		array[offset + 0] = getType();
+		array[offset + 1] = size();
+		array[offset + 2] = getMaterialOffset();
+		array[offset + 3] = this.aX;
+		array[offset + 4] = this.aY;
+		array[offset + 5] = this.aZ;
+		array[offset + 6] = this.bX;
+		array[offset + 7] = this.bY;
+		array[offset + 8] = this.bZ;
+		array[offset + 9] = this.cX;
+		array[offset + 10] = this.cY;
+		array[offset + 11] = this.cZ;
+		array[offset + 12] = this.surfaceNormalX;
+		array[offset + 13] = this.surfaceNormalY;
+		array[offset + 14] = this.surfaceNormalZ;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.jfr;
+
+/**
+ * A class that consists exclusively of static methods that performs various operations on the Java Flight Recorder events of OpenRC.
+ * <p>
+ * The events in this package extend {@code jdk.jfr.Event}, which is only present in Java 8 update 262 or later. Callers should test {@link #isAvailable()} before an event is created, so that older Java 8 runtimes never load an event class.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class Events {
+	private static final boolean IS_AVAILABLE = doIsAvailable();
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private Events() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns {@code true} if, and only if, the Java Flight Recorder API is present in this Java runtime, {@code false} otherwise.
+	 * <p>
+	 * Whether the events are actually recorded is decided by the Java Flight Recorder itself. When no recording is running, a committed event costs next to nothing.
+	 * 
+	 * @return {@code true} if, and only if, the Java Flight Recorder API is present in this Java runtime, {@code false} otherwise
+	 */
+	public static boolean isAvailable() {
+		return IS_AVAILABLE;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static boolean doIsAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			
+			return true;
+		} catch(final ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+}
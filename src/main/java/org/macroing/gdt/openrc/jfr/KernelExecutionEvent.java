@@ -0,0 +1,66 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A {@code KernelExecutionEvent} is a Java Flight Recorder event that spans the execution of the {@code Kernel}, including its post-processing pass.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+@Category({"OpenRC", "Kernel"})
+@Description("An execution of the Kernel, including its post-processing pass if enabled")
+@Label("Kernel Execution")
+@Name("org.macroing.gdt.openrc.KernelExecution")
+public final class KernelExecutionEvent extends Event {
+	@Label("Execution Mode")
+	private String executionMode;
+	
+	@Label("Post-Processing")
+	private boolean isPostProcessing;
+	
+	@Label("Range Size")
+	private int rangeSize;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public KernelExecutionEvent() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public void setExecutionMode(final String executionMode) {
+		this.executionMode = executionMode;
+	}
+	
+	public void setPostProcessing(final boolean isPostProcessing) {
+		this.isPostProcessing = isPostProcessing;
+	}
+	
+	public void setRangeSize(final int rangeSize) {
+		this.rangeSize = rangeSize;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A {@code KernelTransferEvent} is a Java Flight Recorder event that spans a call to {@code Kernel.put} or {@code Kernel.get}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+@Category({"OpenRC", "Kernel"})
+@Description("An array transferred to or from the device by Kernel.put or Kernel.get")
+@Label("Kernel Transfer")
+@Name("org.macroing.gdt.openrc.KernelTransfer")
+public final class KernelTransferEvent extends Event {
+	public static final String DIRECTION_GET = "get";
+	public static final String DIRECTION_PUT = "put";
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final EventType EVENT_TYPE = EventType.getEventType(KernelTransferEvent.class);
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	@Label("Array")
+	private String array;
+	
+	@Label("Direction")
+	private String direction;
+	
+	@DataAmount
+	@Label("Bytes")
+	private long bytes;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public KernelTransferEvent() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public void setArray(final String array) {
+		this.array = array;
+	}
+	
+	public void setBytes(final long bytes) {
+		this.bytes = bytes;
+	}
+	
+	public void setDirection(final String direction) {
+		this.direction = direction;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns {@code true} if, and only if, {@code KernelTransferEvent}s are enabled in a running recording, {@code false} otherwise.
+	 * <p>
+	 * The transfers happen several times per frame, so this method is tested before a {@code KernelTransferEvent} is created.
+	 * 
+	 * @return {@code true} if, and only if, {@code KernelTransferEvent}s are enabled in a running recording, {@code false} otherwise
+	 */
+	public static boolean isTypeEnabled() {
+		return EVENT_TYPE.isEnabled();
+	}
+}
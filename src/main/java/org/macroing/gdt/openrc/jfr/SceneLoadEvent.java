@@ -0,0 +1,74 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A {@code SceneLoadEvent} is a Java Flight Recorder event that spans the creation or reading of a {@code Scene}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+@Category({"OpenRC", "Scene"})
+@Description("A scene created in code or read from a file")
+@Label("Scene Load")
+@Name("org.macroing.gdt.openrc.SceneLoad")
+public final class SceneLoadEvent extends Event {
+	public static final String SOURCE_CACHE = "cache";
+	public static final String SOURCE_CREATE = "create";
+	public static final String SOURCE_READ = "read";
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	@Label("Source")
+	private String source;
+	
+	@Label("Shape Count")
+	private int shapeCount;
+	
+	@DataAmount
+	@Label("Bytes")
+	private long bytes;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public SceneLoadEvent() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public void setBytes(final long bytes) {
+		this.bytes = bytes;
+	}
+	
+	public void setShapeCount(final int shapeCount) {
+		this.shapeCount = shapeCount;
+	}
+	
+	public void setSource(final String source) {
+		this.source = source;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A {@code TextureDecodeEvent} is a Java Flight Recorder event that spans the decoding of an image into a {@code Texture}, including its mip maps.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+@Category({"OpenRC", "Scene"})
+@Description("An image decoded into a texture, including the generation of its mip maps")
+@Label("Texture Decode")
+@Name("org.macroing.gdt.openrc.TextureDecode")
+public final class TextureDecodeEvent extends Event {
+	@Label("Height")
+	private int height;
+	
+	@Label("Mip Map Level Count")
+	private int mipMapLevelCount;
+	
+	@Label("Type")
+	private int type;
+	
+	@Label("Width")
+	private int width;
+	
+	@DataAmount
+	@Label("Bytes")
+	private long bytes;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public TextureDecodeEvent() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	public void setBytes(final long bytes) {
+		this.bytes = bytes;
+	}
+	
+	public void setHeight(final int height) {
+		this.height = height;
+	}
+	
+	public void setMipMapLevelCount(final int mipMapLevelCount) {
+		this.mipMapLevelCount = mipMapLevelCount;
+	}
+	
+	public void setType(final int type) {
+		this.type = type;
+	}
+	
+	public void setWidth(final int width) {
+		this.width = width;
+	}
+}
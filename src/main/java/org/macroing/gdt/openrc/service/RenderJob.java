@@ -0,0 +1,165 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+import org.macroing.gdt.openrc.TileRenderer;
+import org.macroing.gdt.openrc.geometry.Camera;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Ranges;
+
+/**
+ * A {@code RenderJob} describes an image to be rendered by a {@link RenderService}.
+ * <p>
+ * The {@code Scene} and the {@code Camera} are copied when the {@code RenderJob} is constructed, so changing them afterwards has no effect on the {@code RenderJob}.
+ * <p>
+ * The priority is a non-negative number, where a lower number is more urgent. {@code PRIORITY_INTERACTIVE} is meant for previews that someone is waiting for, and {@code PRIORITY_OFFLINE} for everything else.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class RenderJob {
+	/**
+	 * The priority of interactive previews.
+	 */
+	public static final int PRIORITY_INTERACTIVE = 0;
+	
+	/**
+	 * The priority of offline renders.
+	 */
+	public static final int PRIORITY_OFFLINE = 10;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final byte[] scene;
+	private final float[] camera;
+	private final int height;
+	private final int priority;
+	private final int sampleCount;
+	private final int width;
+	private final String sceneHash;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code RenderJob}.
+	 * 
+	 * @param scene the {@code Scene} to render
+	 * @param camera the {@code Camera} to render {@code scene} from
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param sampleCount the number of samples per pixel
+	 * @param priority the priority, where a lower number is more urgent
+	 * @throws IllegalArgumentException thrown if, and only if, either {@code width} or {@code height} are less than {@code 1}, {@code sampleCount} is less than {@code 1} or greater than
+	 * {@code TileRenderer.MAXIMUM_SAMPLE_COUNT}, or {@code priority} is less than {@code 0}
+	 * @throws NullPointerException thrown if, and only if, either {@code scene} or {@code camera} are {@code null}
+	 */
+	public RenderJob(final Scene scene, final Camera camera, final int width, final int height, final int sampleCount, final int priority) {
+		this.scene = Objects.requireNonNull(scene, "scene == null").toByteArray();
+		this.sceneHash = doHash(this.scene);
+		this.camera = Objects.requireNonNull(camera, "camera == null").getArray().clone();
+		this.width = Ranges.requireRange(width, 1, Integer.MAX_VALUE);
+		this.height = Ranges.requireRange(height, 1, Integer.MAX_VALUE);
+		this.sampleCount = Ranges.requireRange(sampleCount, 1, TileRenderer.MAXIMUM_SAMPLE_COUNT);
+		this.priority = Ranges.requireRange(priority, 0, Integer.MAX_VALUE);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns a copy of the {@code Camera} to render from.
+	 * 
+	 * @return a copy of the {@code Camera} to render from
+	 */
+	public Camera getCamera() {
+		final Camera camera = new Camera();
+		
+		System.arraycopy(this.camera, 0, camera.getArray(), 0, Camera.SIZE);
+		
+		return camera;
+	}
+	
+	/**
+	 * Returns the height of the image.
+	 * 
+	 * @return the height of the image
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+	
+	/**
+	 * Returns the priority, where a lower number is more urgent.
+	 * 
+	 * @return the priority, where a lower number is more urgent
+	 */
+	public int getPriority() {
+		return this.priority;
+	}
+	
+	/**
+	 * Returns the number of samples per pixel.
+	 * 
+	 * @return the number of samples per pixel
+	 */
+	public int getSampleCount() {
+		return this.sampleCount;
+	}
+	
+	/**
+	 * Returns the width of the image.
+	 * 
+	 * @return the width of the image
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	byte[] getSceneBytes() {
+		return this.scene;
+	}
+	
+	String getSceneHash() {
+		return this.sceneHash;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static String doHash(final byte[] bytes) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			
+			final StringBuilder stringBuilder = new StringBuilder(digest.length * 2);
+			
+			for(final byte value : digest) {
+				stringBuilder.append(String.format("%02x", Integer.valueOf(value & 0xFF)));
+			}
+			
+			return stringBuilder.toString();
+		} catch(final NoSuchAlgorithmException e) {
+//			Every implementation of the Java platform is required to support SHA-256:
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.macroing.gdt.openrc.MetricsServer;
+import org.macroing.gdt.openrc.TileRenderer;
+import org.macroing.gdt.openrc.geometry.Scene;
+import org.macroing.gdt.openrc.util.Images;
+import org.macroing.gdt.openrc.util.Ranges;
+
+import com.amd.aparapi.Kernel.EXECUTION_MODE;
+
+/**
+ * A {@code RenderService} renders {@link RenderJob}s on a number of backends, such as one for the GPU and one for the CPU.
+ * <p>
+ * Each backend is a thread with its own {@link TileRenderer}, and renders one tile at a time. Whenever a backend is done with a tile, it takes the next tile of the most urgent {@code RenderJob}. So an interactive preview that is
+ * submitted while a long offline render is running preempts it at the next tile, rather than waiting for it to finish. Among {@code RenderJob}s of the same priority, the tiles are handed out in turn, so a large
+ * {@code RenderJob} cannot starve a small one that was submitted later.
+ * <p>
+ * Creating a {@code TileRenderer} is costly, especially for the GPU, so each backend keeps the {@code TileRenderer}s of the last {@code MAXIMUM_TILE_RENDERER_COUNT} {@code Scene}s it rendered. The {@code Scene}s are
+ * identified by a hash that is computed once per {@code RenderJob}. So {@code RenderJob}s of different {@code Scene}s that take turns, or an interactive preview that preempts an offline render, do not cause a new
+ * {@code TileRenderer} to be created for every tile.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class RenderService {
+	/**
+	 * The maximum number of {@link TileRenderer}s, one per {@code Scene}, that each backend keeps.
+	 */
+	public static final int MAXIMUM_TILE_RENDERER_COUNT = 3;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final AtomicInteger queuedJobCount = new AtomicInteger();
+	private final AtomicInteger queuedTileCount = new AtomicInteger();
+	private final AtomicLong completedJobCount = new AtomicLong();
+	private final Condition condition;
+	private final List<RenderTask> renderTasks = new ArrayList<>();
+	private final List<Thread> threads = new ArrayList<>();
+	private final Lock lock = new ReentrantLock();
+	private boolean isShutdown;
+	private long schedulingCount;
+	private long sequence;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Constructs a new {@code RenderService} with one backend per element in {@code executionModes}, and starts them.
+	 * 
+	 * @param executionModes the {@code EXECUTION_MODE}s of the backends, such as {@code GPU} and {@code JTP}
+	 * @throws IllegalArgumentException thrown if, and only if, {@code executionModes} is empty
+	 * @throws NullPointerException thrown if, and only if, either {@code executionModes} or any of its elements are {@code null}
+	 */
+	public RenderService(final List<EXECUTION_MODE> executionModes) {
+		Ranges.requireRange(executionModes.size(), 1, Integer.MAX_VALUE);
+		
+		this.condition = this.lock.newCondition();
+		
+		for(int i = 0; i < executionModes.size(); i++) {
+			final EXECUTION_MODE executionMode = Objects.requireNonNull(executionModes.get(i), "executionModes.get(" + i + ") == null");
+			
+			final
+			Thread thread = new Thread(() -> doRunBackend(executionMode), "OpenRC Render Backend " + i + " (" + executionMode + ")");
+			thread.setDaemon(true);
+			
+			this.threads.add(thread);
+		}
+		
+		for(final Thread thread : this.threads) {
+			thread.start();
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Returns the number of {@link RenderJob}s that have tiles that are not yet being rendered.
+	 * <p>
+	 * The count is updated whenever a {@code RenderJob} is submitted or a tile is handed out to a backend, so a {@code RenderJob} that has been cancelled is counted until then. It is read without locking.
+	 * 
+	 * @return the number of {@code RenderJob}s that have tiles that are not yet being rendered
+	 */
+	public int getQueuedJobCount() {
+		return this.queuedJobCount.get();
+	}
+	
+	/**
+	 * Returns the number of tiles that are not yet being rendered.
+	 * <p>
+	 * The count is updated like the one returned by {@link #getQueuedJobCount()}.
+	 * 
+	 * @return the number of tiles that are not yet being rendered
+	 */
+	public int getQueuedTileCount() {
+		return this.queuedTileCount.get();
+	}
+	
+	/**
+	 * Returns the number of {@link RenderJob}s that have completed.
+	 * 
+	 * @return the number of {@code RenderJob}s that have completed
+	 */
+	public long getCompletedJobCount() {
+		return this.completedJobCount.get();
+	}
+	
+	/**
+	 * Submits {@code renderJob} to this {@code RenderService}.
+	 * 
+	 * @param renderJob the {@code RenderJob} to submit
+	 * @return a {@code RenderTask} for the result
+	 * @throws IllegalStateException thrown if, and only if, this {@code RenderService} has been shut down
+	 * @throws NullPointerException thrown if, and only if, {@code renderJob} is {@code null}
+	 */
+	public RenderTask submit(final RenderJob renderJob) {
+		Objects.requireNonNull(renderJob, "renderJob == null");
+		
+		this.lock.lock();
+		
+		try {
+			if(this.isShutdown) {
+				throw new IllegalStateException("RenderService is shut down");
+			}
+			
+			final RenderTask renderTask = new RenderTask(renderJob, this.sequence++);
+			
+			this.renderTasks.add(renderTask);
+			
+			doUpdateQueuedCounts();
+			
+			this.condition.signalAll();
+			
+			return renderTask;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Adds the number of queued {@link RenderJob}s and tiles, and the number of completed {@code RenderJob}s, to {@code metricsServer}.
+	 * 
+	 * @param metricsServer the {@code MetricsServer} to add the metrics to
+	 * @throws NullPointerException thrown if, and only if, {@code metricsServer} is {@code null}
+	 */
+	public void addMetrics(final MetricsServer metricsServer) {
+		metricsServer.addGauge("openrc_render_service_queued_jobs", "The number of render jobs that have tiles that are not yet being rendered.", () -> getQueuedJobCount());
+		metricsServer.addGauge("openrc_render_service_queued_tiles", "The number of tiles that are not yet being rendered.", () -> getQueuedTileCount());
+		metricsServer.addCounter("openrc_render_service_completed_jobs_total", "The number of render jobs that have completed.", () -> getCompletedJobCount());
+	}
+	
+	/**
+	 * Shuts down this {@code RenderService}.
+	 * <p>
+	 * The {@link RenderTask}s that are not done are cancelled, and this method waits for the tiles that are being rendered to complete.
+	 */
+	public void shutdown() {
+		this.lock.lock();
+		
+		try {
+			this.isShutdown = true;
+			
+			for(final RenderTask renderTask : this.renderTasks) {
+				renderTask.cancel(false);
+			}
+			
+			this.renderTasks.clear();
+			
+			doUpdateQueuedCounts();
+			
+			this.condition.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+		
+		for(final Thread thread : this.threads) {
+			try {
+				thread.join();
+			} catch(final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				
+				return;
+			}
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * The entry-point of the {@code RenderService}, which renders a single {@link RenderJob} without a window.
+	 * <p>
+	 * The arguments are the {@link Scene} file, as written by {@link Scene#write(File)}, the width and height of the image, the number of samples per pixel and the PNG file to write the image to. The image is rendered from the
+	 * {@code Camera} of the {@code Scene}.
+	 * <p>
+	 * The following system properties are supported:
+	 * <ul>
+	 * <li>{@link MetricsServer#PROPERTY_PORT} - the port to serve the metrics of the {@code RenderService} at, if set.</li>
+	 * <li>{@code org.macroing.gdt.openrc.service.modes} - the comma-separated execution modes of the backends, such as {@code GPU,JTP}. The default is {@code GPU}.</li>
+	 * </ul>
+	 * 
+	 * @param args the arguments
+	 * @throws UncheckedIOException thrown if, and only if, the image could not be written
+	 */
+	@SuppressWarnings("try")
+	public static void main(final String[] args) {
+		if(args.length != 5) {
+			System.err.println("Usage: java org.macroing.gdt.openrc.service.RenderService <scene file> <width> <height> <samples> <output png>");
+			
+			System.exit(1);
+		}
+		
+		final List<EXECUTION_MODE> executionModes = new ArrayList<>();
+		
+		for(final String executionMode : System.getProperty("org.macroing.gdt.openrc.service.modes", "GPU").split(",")) {
+			executionModes.add(EXECUTION_MODE.valueOf(executionMode.trim()));
+		}
+		
+		final Scene scene = Scene.read(new File(args[0]));
+		
+		final int width = Integer.parseInt(args[1]);
+		final int height = Integer.parseInt(args[2]);
+		final int sampleCount = Integer.parseInt(args[3]);
+		
+		final RenderService renderService = new RenderService(executionModes);
+		
+		final long startNanos = System.nanoTime();
+		
+		final int[] image;
+		
+		try(final MetricsServer metricsServer = MetricsServer.startFromSystemProperty(renderService::addMetrics)) {
+			image = renderService.submit(new RenderJob(scene, scene.getCamera(), width, height, sampleCount, RenderJob.PRIORITY_OFFLINE)).get();
+		} catch(final ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			
+			throw new IllegalStateException(e);
+		} finally {
+			renderService.shutdown();
+		}
+		
+		System.out.printf("Rendered %dx%d pixels with %d samples per pixel in %.2f seconds%n", Integer.valueOf(width), Integer.valueOf(height), Integer.valueOf(sampleCount), Double.valueOf((System.nanoTime() - startNanos) / 1000000000.0D));
+		
+		Images.writePNG(image, width, height, new File(args[4]));
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private Tile doNext() {
+		this.lock.lock();
+		
+		try {
+			while(true) {
+				if(this.isShutdown) {
+					return null;
+				}
+				
+				doUpdateQueuedCounts();
+				
+				RenderTask next = null;
+				
+//				The most urgent RenderTask is the one with the lowest priority. Ties are broken by the one that was scheduled the longest time ago, and then by the one that was submitted first:
+				for(final RenderTask renderTask : this.renderTasks) {
+					if(next == null || doCompare(renderTask, next) < 0) {
+						next = renderTask;
+					}
+				}
+				
+				if(next != null) {
+					next.setLastScheduled(++this.schedulingCount);
+					
+					final Tile tile = new Tile(next, next.claimTile());
+					
+					doUpdateQueuedCounts();
+					
+					return tile;
+				}
+				
+				this.condition.awaitUninterruptibly();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	private void doRunBackend(final EXECUTION_MODE executionMode) {
+//		The TileRenderers by the hash of their Scene, from the least recently used to the most recently used:
+		final Map<String, TileRenderer> tileRenderers = new LinkedHashMap<>(MAXIMUM_TILE_RENDERER_COUNT * 2, 0.75F, true);
+		
+		try {
+			for(Tile tile = doNext(); tile != null; tile = doNext()) {
+				final RenderTask renderTask = tile.renderTask;
+				final RenderJob renderJob = renderTask.getRenderJob();
+				
+				try {
+					if(renderTask.isCancelled()) {
+						throw new CancellationException();
+					}
+					
+					TileRenderer tileRenderer = tileRenderers.get(renderJob.getSceneHash());
+					
+					if(tileRenderer == null) {
+						if(tileRenderers.size() == MAXIMUM_TILE_RENDERER_COUNT) {
+							final Iterator<TileRenderer> iterator = tileRenderers.values().iterator();
+							
+							iterator.next().dispose();
+							iterator.remove();
+						}
+						
+						tileRenderer = new TileRenderer(Scene.read(new DataInputStream(new ByteArrayInputStream(renderJob.getSceneBytes()))), executionMode);
+						
+						tileRenderers.put(renderJob.getSceneHash(), tileRenderer);
+					}
+					
+					tileRenderer.setCamera(renderJob.getCamera());
+					tileRenderer.render(renderJob.getWidth(), renderJob.getHeight(), renderTask.getTileX(tile.index), renderTask.getTileY(tile.index), renderJob.getSampleCount(), renderTask.getImage(), renderTask.getImageOffset(tile.index), renderJob.getWidth());
+					
+					if(renderTask.completeTile()) {
+						this.completedJobCount.incrementAndGet();
+					}
+				} catch(final CancellationException e) {
+//					The RenderTask was cancelled, so the tile is skipped.
+				} catch(final RuntimeException e) {
+					renderTask.fail(e);
+				} catch(final Error e) {
+//					The Error stops this backend, so the RenderTask is failed first. Otherwise it would never be done and get() would wait forever:
+					renderTask.fail(e);
+					
+					throw e;
+				}
+			}
+		} finally {
+			for(final TileRenderer tileRenderer : tileRenderers.values()) {
+				tileRenderer.dispose();
+			}
+		}
+	}
+	
+//	The queued counts are published through atomic variables, so they can be read without locking and without removing the RenderTasks that are done. This method is called while holding the lock:
+	private void doUpdateQueuedCounts() {
+		this.renderTasks.removeIf(renderTask -> !renderTask.hasUnclaimedTiles());
+		
+		int queuedTileCount = 0;
+		
+		for(final RenderTask renderTask : this.renderTasks) {
+			queuedTileCount += renderTask.getUnclaimedTileCount();
+		}
+		
+		this.queuedJobCount.set(this.renderTasks.size());
+		this.queuedTileCount.set(queuedTileCount);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static int doCompare(final RenderTask a, final RenderTask b) {
+		if(a.getRenderJob().getPriority() != b.getRenderJob().getPriority()) {
+			return Integer.compare(a.getRenderJob().getPriority(), b.getRenderJob().getPriority());
+		}
+		
+		if(a.getLastScheduled() != b.getLastScheduled()) {
+			return Long.compare(a.getLastScheduled(), b.getLastScheduled());
+		}
+		
+		return Long.compare(a.getSequence(), b.getSequence());
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private static final class Tile {
+		public final RenderTask renderTask;
+		public final int index;
+		
+		public Tile(final RenderTask renderTask, final int index) {
+			this.renderTask = renderTask;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.macroing.gdt.openrc.Constants;
+
+/**
+ * A {@code RenderTask} is the pending result of a {@link RenderJob} submitted to a {@link RenderService}.
+ * <p>
+ * The result is the RGB-values of the pixels, from the top left to the bottom right. A {@code RenderTask} can be cancelled at any time. Tiles that are being rendered when it is cancelled are completed, but no further tiles are
+ * rendered.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class RenderTask implements Future<int[]> {
+	private final AtomicInteger remainingTileCount;
+	private final CompletableFuture<int[]> completableFuture = new CompletableFuture<>();
+	private final RenderJob renderJob;
+	private final int tileCount;
+	private final int tileCountX;
+	private final int tileHeight;
+	private final int tileWidth;
+	private final int[] image;
+	private final long sequence;
+	private int nextTile;
+	private long lastScheduled;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	RenderTask(final RenderJob renderJob, final long sequence) {
+		this.renderJob = renderJob;
+		this.sequence = sequence;
+		this.tileWidth = Constants.WIDTH / Constants.WIDTH_SCALE;
+		this.tileHeight = Constants.HEIGHT / Constants.HEIGHT_SCALE;
+		this.tileCountX = (renderJob.getWidth() + this.tileWidth - 1) / this.tileWidth;
+		this.tileCount = this.tileCountX * ((renderJob.getHeight() + this.tileHeight - 1) / this.tileHeight);
+		this.remainingTileCount = new AtomicInteger(this.tileCount);
+		this.image = new int[renderJob.getWidth() * renderJob.getHeight()];
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Cancels this {@code RenderTask}, unless it is already done.
+	 * 
+	 * @param mayInterruptIfRunning ignored, as the tiles that are being rendered are always completed
+	 * @return {@code true} if, and only if, this {@code RenderTask} was cancelled
+	 */
+	@Override
+	public boolean cancel(final boolean mayInterruptIfRunning) {
+		return this.completableFuture.cancel(mayInterruptIfRunning);
+	}
+	
+	/**
+	 * Returns {@code true} if, and only if, this {@code RenderTask} was cancelled.
+	 * 
+	 * @return {@code true} if, and only if, this {@code RenderTask} was cancelled
+	 */
+	@Override
+	public boolean isCancelled() {
+		return this.completableFuture.isCancelled();
+	}
+	
+	/**
+	 * Returns {@code true} if, and only if, this {@code RenderTask} completed, failed or was cancelled.
+	 * 
+	 * @return {@code true} if, and only if, this {@code RenderTask} completed, failed or was cancelled
+	 */
+	@Override
+	public boolean isDone() {
+		return this.completableFuture.isDone();
+	}
+	
+	/**
+	 * Returns the fraction of the tiles that have been rendered, between {@code 0.0D} and {@code 1.0D}.
+	 * 
+	 * @return the fraction of the tiles that have been rendered, between {@code 0.0D} and {@code 1.0D}
+	 */
+	public double getProgress() {
+		return (double)(this.tileCount - this.remainingTileCount.get()) / this.tileCount;
+	}
+	
+	/**
+	 * Waits for this {@code RenderTask} to complete and returns the RGB-values of the pixels.
+	 * 
+	 * @return the RGB-values of the pixels
+	 * @throws ExecutionException thrown if, and only if, the rendering failed
+	 * @throws InterruptedException thrown if, and only if, the current thread was interrupted while waiting
+	 */
+	@Override
+	public int[] get() throws ExecutionException, InterruptedException {
+		return this.completableFuture.get();
+	}
+	
+	/**
+	 * Waits at most {@code timeout} for this {@code RenderTask} to complete and returns the RGB-values of the pixels.
+	 * 
+	 * @param timeout the maximum time to wait
+	 * @param unit the {@code TimeUnit} of {@code timeout}
+	 * @return the RGB-values of the pixels
+	 * @throws ExecutionException thrown if, and only if, the rendering failed
+	 * @throws InterruptedException thrown if, and only if, the current thread was interrupted while waiting
+	 * @throws TimeoutException thrown if, and only if, this {@code RenderTask} did not complete in time
+	 */
+	@Override
+	public int[] get(final long timeout, final TimeUnit unit) throws ExecutionException, InterruptedException, TimeoutException {
+		return this.completableFuture.get(timeout, unit);
+	}
+	
+	/**
+	 * Returns the {@link RenderJob} of this {@code RenderTask}.
+	 * 
+	 * @return the {@code RenderJob} of this {@code RenderTask}
+	 */
+	public RenderJob getRenderJob() {
+		return this.renderJob;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+//	The methods below, and the fields nextTile, lastScheduled and sequence, are only used by the RenderService while it holds its lock, except for completeTile and fail, which are called by its backends:
+	
+	boolean completeTile() {
+		return this.remainingTileCount.decrementAndGet() == 0 && this.completableFuture.complete(this.image);
+	}
+	
+	boolean hasUnclaimedTiles() {
+		return this.nextTile < this.tileCount && !isDone();
+	}
+	
+	int claimTile() {
+		return this.nextTile++;
+	}
+	
+	int getImageOffset(final int tile) {
+		return getTileY(tile) * this.renderJob.getWidth() + getTileX(tile);
+	}
+	
+	int getTileX(final int tile) {
+		return tile % this.tileCountX * this.tileWidth;
+	}
+	
+	int getTileY(final int tile) {
+		return tile / this.tileCountX * this.tileHeight;
+	}
+	
+	int getUnclaimedTileCount() {
+		return this.tileCount - this.nextTile;
+	}
+	
+	int[] getImage() {
+		return this.image;
+	}
+	
+	long getLastScheduled() {
+		return this.lastScheduled;
+	}
+	
+	long getSequence() {
+		return this.sequence;
+	}
+	
+	void fail(final Throwable throwable) {
+		this.completableFuture.completeExceptionally(throwable);
+	}
+	
+	void setLastScheduled(final long lastScheduled) {
+		this.lastScheduled = lastScheduled;
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A class that consists exclusively of static methods that performs various operations on images.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class Images {
+	private Images() {
+		
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Writes the RGB-values in {@code rGB} as a PNG image of size {@code width} x {@code height} to {@code file}.
+	 * <p>
+	 * Each RGB-value is packed as {@code 0xRRGGBB}, row by row from the top left corner.
+	 * 
+	 * @param rGB the RGB-values to write
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param file the {@code File} to write to
+	 * @throws IllegalArgumentException thrown if, and only if, {@code rGB} does not contain {@code width * height} RGB-values
+	 * @throws NullPointerException thrown if, and only if, either {@code rGB} or {@code file} are {@code null}
+	 * @throws UncheckedIOException thrown if, and only if, an I/O error occurs or no PNG writer is available
+	 */
+	public static void writePNG(final int[] rGB, final int width, final int height, final File file) {
+		Ranges.requireRange(rGB.length, width * height, width * height);
+		
+		final
+		BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		bufferedImage.getRaster().setDataElements(0, 0, width, height, rGB);
+		
+		try {
+			if(!ImageIO.write(bufferedImage, "png", file)) {
+				throw new IOException("No PNG writer is available");
+			}
+		} catch(final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
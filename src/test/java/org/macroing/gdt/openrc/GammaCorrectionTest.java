@@ -0,0 +1,89 @@
+/**
+ * Copyright 2009 - 2021 J&#246;rgen Lundgren
+ * 
+ * This file is part of org.macroing.gdt.openrc.
+ * 
+ * org.macroing.gdt.openrc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * org.macroing.gdt.openrc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.macroing.gdt.openrc. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.macroing.gdt.openrc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Verifies that the gamma correction modes {@code GAMMA_CORRECTION_MODE_LOOKUP_TABLE} and {@code GAMMA_CORRECTION_MODE_APPROXIMATION} are at most one 8-bit level away from {@code GAMMA_CORRECTION_MODE_EXACT}.
+ * 
+ * @since 1.0.0
+ * @author J&#246;rgen Lundgren
+ */
+public final class GammaCorrectionTest {
+	private static final int MAXIMUM_ERROR = 1;
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private final AbstractRayCasterKernel abstractRayCasterKernel = new AbstractRayCasterKernel() {
+		@Override
+		public void run() {
+//			Do nothing here.
+		}
+	};
+	
+	private final int[] gammaCorrectionTable = AbstractRayCasterKernel.createGammaCorrectionTable();
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	@Test
+	public void testApproximation() {
+		doTestAgainstExact(AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_APPROXIMATION);
+	}
+	
+	@Test
+	public void testClamping() {
+		for(final int gammaCorrectionMode : new int[] {AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_EXACT, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_APPROXIMATION}) {
+			assertEquals(0, this.abstractRayCasterKernel.correctGamma(-1.0F, gammaCorrectionMode, this.gammaCorrectionTable));
+			assertEquals(0, this.abstractRayCasterKernel.correctGamma(0.0F, gammaCorrectionMode, this.gammaCorrectionTable));
+			assertEquals(255, this.abstractRayCasterKernel.correctGamma(1.0F, gammaCorrectionMode, this.gammaCorrectionTable));
+			assertEquals(255, this.abstractRayCasterKernel.correctGamma(2.0F, gammaCorrectionMode, this.gammaCorrectionTable));
+		}
+	}
+	
+	@Test
+	public void testLookupTable() {
+		doTestAgainstExact(AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_LOOKUP_TABLE);
+	}
+	
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	private void doTestAgainstExact(final int gammaCorrectionMode) {
+//		The values are spaced evenly, which covers the bright end of the range, and by their bit patterns, which covers the steep part of the curve near black:
+		final int count = 1 << 20;
+		
+		for(int i = 0; i <= count; i++) {
+			doTestAgainstExact(gammaCorrectionMode, (float)(i) / count);
+		}
+		
+		for(int bits = 0; bits <= Float.floatToIntBits(1.0F); bits += 509) {
+			doTestAgainstExact(gammaCorrectionMode, Float.intBitsToFloat(bits));
+		}
+	}
+	
+	private void doTestAgainstExact(final int gammaCorrectionMode, final float value) {
+		final int expected = this.abstractRayCasterKernel.correctGamma(value, AbstractRayCasterKernel.GAMMA_CORRECTION_MODE_EXACT, this.gammaCorrectionTable);
+		final int actual = this.abstractRayCasterKernel.correctGamma(value, gammaCorrectionMode, this.gammaCorrectionTable);
+		
+		assertTrue(String.format("correctGamma(%s) is %s, but %s is expected", Float.toString(value), Integer.toString(actual), Integer.toString(expected)), Math.abs(actual - expected) <= MAXIMUM_ERROR);
+	}
+}